@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the loader benchmarks with GC and allocation profiling enabled.
+ * <p>
+ * Accepts the usual JMH command line options, e.g. a benchmark name pattern, or {@code -p journals=10000} to
+ * restrict data sizes.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class BenchmarkMain {
+
+    private BenchmarkMain() {
+        //never called
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                       .parent(new CommandLineOptions(args))
+                       .addProfiler(GCProfiler.class)
+                       .build()).run();
+    }
+}
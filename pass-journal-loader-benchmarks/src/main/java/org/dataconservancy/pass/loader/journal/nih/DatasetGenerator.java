@@ -0,0 +1,537 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+
+/**
+ * Generates large, deterministic synthetic datasets: a PMC type A .csv file, a J_Medline.txt file, an NLM Catalog XML
+ * export, and an N-Triples dump of a repository's journals container, all describing the same universe of journals.
+ * <p>
+ * Everything about journal {@code i} is derived from the seed and {@code i} alone, so each file is written in a
+ * single streaming pass with constant memory, and the same seed always produces the same files. The rates below
+ * control how the files overlap and how messy they are:
+ * </p>
+ * <dl>
+ * <dt>{@code repositoryFraction}, {@code pmcFraction}, {@code medlineFraction}</dt>
+ * <dd>Fraction of journals present in the repository, the PMC list, and Medline (and the NLM Catalog)</dd>
+ * <dt>{@code endedFraction}</dt>
+ * <dd>Fraction of PMC journals whose participation has ended</dd>
+ * <dt>{@code staleParticipationRate}</dt>
+ * <dd>Fraction of repository journals marked PMC type A that are not on the PMC list</dd>
+ * <dt>{@code issnCollisionRate}</dt>
+ * <dd>Fraction of journals whose print ISSN is shared with a nearby, different journal</dd>
+ * <dt>{@code nameVariantRate}</dt>
+ * <dd>Fraction of journals whose name in the source files differs from the repository's</dd>
+ * <dt>{@code quoteRate}</dt>
+ * <dd>Fraction of journals with embedded quotes in their name</dd>
+ * <dt>{@code missingFieldRate}</dt>
+ * <dd>Chance that each of the print ISSN, online ISSN and NLMTA is missing</dd>
+ * <dt>{@code untypedIssnRate}</dt>
+ * <dd>Fraction of repository journals whose ISSNs lack a {@code Print:}/{@code Online:} prefix, as in older
+ * loads</dd>
+ * </dl>
+ * <p>
+ * ISSNs are unique for up to five million journals, beyond which they begin to repeat.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class DatasetGenerator {
+
+    static final String CONTAINER = "http://localhost:8080/fcrepo/rest/journals/";
+
+    private static final String BOUNDARY = "--------------------------------------------------------";
+
+    private static final String XSD_STRING = "^^<http://www.w3.org/2001/XMLSchema#string> .\n";
+
+    private static final String[] PREFIXES = {"Journal of", "Annals of", "Archives of", "Reviews in", "Advances in",
+        "Bulletin of", "Proceedings in", "Letters in", "Studies in", "Frontiers of", "Topics in", "Progress in",
+        "Research in", "Perspectives in", "Reports in", "Seminars in"};
+
+    private static final String[] PREFIX_ABBRS = {"J", "Ann", "Arch", "Rev", "Adv", "Bull", "Proc", "Lett", "Stud",
+        "Front", "Top", "Prog", "Res", "Perspect", "Rep", "Semin"};
+
+    private static final String[] ADJECTIVES = {"Clinical", "Molecular", "Experimental", "Applied", "Comparative",
+        "Environmental", "Pediatric", "Geriatric", "Veterinary", "Surgical", "Medical", "Cellular", "Structural",
+        "Numerical", "Theoretical", "Translational", "Integrative", "Developmental", "Behavioral", "Chemical",
+        "Physical", "Nuclear", "Tropical", "Occupational", "Preventive", "Forensic", "Regenerative", "Evolutionary",
+        "Quantitative", "Digital", "Global", "Rural"};
+
+    private static final String[] TOPICS = {"Oncology", "Cardiology", "Neurology", "Immunology", "Genetics",
+        "Biology", "Chemistry", "Physics", "Pharmacology", "Psychiatry", "Dermatology", "Nephrology", "Hepatology",
+        "Endocrinology", "Virology", "Microbiology", "Epidemiology", "Radiology", "Pathology", "Toxicology",
+        "Nutrition", "Nursing", "Dentistry", "Ophthalmology", "Urology", "Hematology", "Rheumatology",
+        "Gastroenterology", "Anesthesiology", "Orthopedics", "Obstetrics", "Gynecology", "Pediatrics", "Gerontology",
+        "Ecology", "Zoology", "Botany", "Mycology", "Parasitology", "Entomology", "Biochemistry", "Biophysics",
+        "Bioinformatics", "Neuroscience", "Psychology", "Sociology", "Economics", "Informatics", "Statistics",
+        "Engineering", "Materials", "Robotics", "Imaging", "Surgery", "Medicine", "Rehabilitation", "Sleep", "Pain",
+        "Allergy", "Infection", "Transplantation", "Vaccines", "Metabolism", "Aging"};
+
+    private final int journals;
+
+    private final long seed;
+
+    private double repositoryFraction = 0.8;
+
+    private double pmcFraction = 0.2;
+
+    private double medlineFraction = 0.9;
+
+    private double endedFraction = 0.1;
+
+    private double staleParticipationRate = 0.01;
+
+    private double issnCollisionRate = 0.001;
+
+    private double nameVariantRate = 0.05;
+
+    private double quoteRate = 0.005;
+
+    private double missingFieldRate = 0.02;
+
+    private double untypedIssnRate = 0.3;
+
+    /**
+     * @param journals number of journals in the universe
+     * @param seed     random seed
+     */
+    public DatasetGenerator(int journals, long seed) {
+        this.journals = journals;
+        this.seed = seed;
+    }
+
+    /**
+     * Generate the three files into a directory, configured by system properties: {@code journals}, {@code seed},
+     * {@code out} (the directory), and any of the rates by name, e.g. {@code -DpmcFraction=0.5}
+     *
+     * @param args unused
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        final DatasetGenerator generator = new DatasetGenerator(
+            Integer.parseInt(System.getProperty("journals", "1000000")),
+            Long.parseLong(System.getProperty("seed", "0")));
+        generator.configure(System::getProperty);
+
+        final Path out = Paths.get(System.getProperty("out", "."));
+        generator.writeAll(out);
+    }
+
+    /**
+     * Set any rates which are present in the given configuration
+     *
+     * @param config looks up a rate by name, or returns null
+     */
+    void configure(Function<String, String> config) {
+        repositoryFraction = rate(config, "repositoryFraction", repositoryFraction);
+        pmcFraction = rate(config, "pmcFraction", pmcFraction);
+        medlineFraction = rate(config, "medlineFraction", medlineFraction);
+        endedFraction = rate(config, "endedFraction", endedFraction);
+        staleParticipationRate = rate(config, "staleParticipationRate", staleParticipationRate);
+        issnCollisionRate = rate(config, "issnCollisionRate", issnCollisionRate);
+        nameVariantRate = rate(config, "nameVariantRate", nameVariantRate);
+        quoteRate = rate(config, "quoteRate", quoteRate);
+        missingFieldRate = rate(config, "missingFieldRate", missingFieldRate);
+        untypedIssnRate = rate(config, "untypedIssnRate", untypedIssnRate);
+    }
+
+    public void setRepositoryFraction(double repositoryFraction) {
+        this.repositoryFraction = repositoryFraction;
+    }
+
+    public void setPmcFraction(double pmcFraction) {
+        this.pmcFraction = pmcFraction;
+    }
+
+    public void setMedlineFraction(double medlineFraction) {
+        this.medlineFraction = medlineFraction;
+    }
+
+    public void setEndedFraction(double endedFraction) {
+        this.endedFraction = endedFraction;
+    }
+
+    public void setStaleParticipationRate(double staleParticipationRate) {
+        this.staleParticipationRate = staleParticipationRate;
+    }
+
+    public void setIssnCollisionRate(double issnCollisionRate) {
+        this.issnCollisionRate = issnCollisionRate;
+    }
+
+    public void setNameVariantRate(double nameVariantRate) {
+        this.nameVariantRate = nameVariantRate;
+    }
+
+    public void setQuoteRate(double quoteRate) {
+        this.quoteRate = quoteRate;
+    }
+
+    public void setMissingFieldRate(double missingFieldRate) {
+        this.missingFieldRate = missingFieldRate;
+    }
+
+    public void setUntypedIssnRate(double untypedIssnRate) {
+        this.untypedIssnRate = untypedIssnRate;
+    }
+
+    int size() {
+        return journals;
+    }
+
+    /**
+     * Write {@code pmc.csv}, {@code medline.txt}, {@code nlmcatalog.xml} and {@code journals.nt} into the given
+     * directory
+     *
+     * @param dir output directory, created if needed
+     * @throws IOException if a file cannot be written
+     */
+    public void writeAll(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        try (OutputStream out = Files.newOutputStream(dir.resolve("pmc.csv"))) {
+            writePmc(out);
+        }
+        try (OutputStream out = Files.newOutputStream(dir.resolve("medline.txt"))) {
+            writeMedline(out);
+        }
+        try (OutputStream out = Files.newOutputStream(dir.resolve("nlmcatalog.xml"))) {
+            writeNlmCatalog(out);
+        }
+        try (OutputStream out = Files.newOutputStream(dir.resolve("journals.nt"))) {
+            writeRepository(out, CONTAINER);
+        }
+    }
+
+    /**
+     * Write the PMC type A .csv file: name, NLMTA, print ISSN, online ISSN, start date, end date
+     *
+     * @param out destination, not closed
+     * @throws IOException if writing fails
+     */
+    public void writePmc(OutputStream out) throws IOException {
+        final Writer w = writer(out);
+        for (int i = 0; i < journals; i++) {
+            final GeneratedJournal j = journal(i);
+            if (!j.inPmc) {
+                continue;
+            }
+            w.write(csv(j.sourceName));
+            w.write(',');
+            w.write(csv(j.nlmta));
+            w.write(',');
+            w.write(orEmpty(j.printIssn));
+            w.write(',');
+            w.write(orEmpty(j.onlineIssn));
+            w.write(",Jul 2011,");
+            if (j.ended) {
+                w.write("Feb 2016");
+            }
+            w.write('\n');
+        }
+        w.flush();
+    }
+
+    /**
+     * Write the Medline journal file
+     *
+     * @param out destination, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeMedline(OutputStream out) throws IOException {
+        final Writer w = writer(out);
+        for (int i = 0; i < journals; i++) {
+            final GeneratedJournal j = journal(i);
+            if (!j.inMedline) {
+                continue;
+            }
+            w.write(BOUNDARY);
+            w.write("\nJrId: " + i);
+            w.write("\nJournalTitle: " + j.sourceName);
+            w.write("\nMedAbbr: " + orEmpty(j.nlmta));
+            w.write("\nISSN (Print): " + orEmpty(j.printIssn));
+            w.write("\nISSN (Online): " + orEmpty(j.onlineIssn));
+            w.write("\nIsoAbbr: " + orEmpty(j.nlmta));
+            w.write("\nNlmId: " + (100000000 + i));
+            w.write('\n');
+        }
+        w.write(BOUNDARY);
+        w.write('\n');
+        w.flush();
+    }
+
+    /**
+     * Write an NLM Catalog XML export of the journals in Medline
+     *
+     * @param out destination, not closed
+     * @throws IOException if writing fails
+     */
+    public void writeNlmCatalog(OutputStream out) throws IOException {
+        final Writer w = writer(out);
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<NLMCatalogRecordSet>\n");
+        for (int i = 0; i < journals; i++) {
+            final GeneratedJournal j = journal(i);
+            if (!j.inMedline) {
+                continue;
+            }
+            w.write("<NLMCatalogRecord Owner=\"NLM\" Status=\"Completed\">\n");
+            w.write("  <NlmUniqueID>" + (100000000 + i) + "</NlmUniqueID>\n");
+            w.write("  <TitleMain>\n    <Title Owner=\"NCBI\" Sort=\"N\">" + xml(j.sourceName) +
+                    ".</Title>\n  </TitleMain>\n");
+            if (j.nlmta != null) {
+                w.write("  <MedlineTA>" + xml(j.nlmta) + "</MedlineTA>\n");
+            }
+            if (j.printIssn != null) {
+                w.write("  <ISSN IssnType=\"Print\" ValidYN=\"Y\">" + j.printIssn + "</ISSN>\n");
+            }
+            if (j.onlineIssn != null) {
+                w.write("  <ISSN IssnType=\"Electronic\" ValidYN=\"Y\">" + j.onlineIssn + "</ISSN>\n");
+            }
+            w.write("</NLMCatalogRecord>\n");
+        }
+        w.write("</NLMCatalogRecordSet>\n");
+        w.flush();
+    }
+
+    /**
+     * Write an N-Triples dump of the journals in the repository, as returned by Fedora for the journals container
+     *
+     * @param out       destination, not closed
+     * @param container URI of the journals container; journal {@code i} is at {@code container + i}
+     * @throws IOException if writing fails
+     */
+    public void writeRepository(OutputStream out, String container) throws IOException {
+        final Writer w = writer(out);
+        for (int i = 0; i < journals; i++) {
+            final GeneratedJournal j = journal(i);
+            if (!j.inRepository) {
+                continue;
+            }
+            final String subject = "<" + container + i + "> ";
+            triple(w, subject, BatchJournalFinder.NAMES, j.name);
+            if (j.nlmta != null) {
+                triple(w, subject, BatchJournalFinder.NLMTAS, j.nlmta);
+            }
+            if (j.printIssn != null) {
+                triple(w, subject, BatchJournalFinder.ISSNS, j.untypedIssns ? j.printIssn : "Print:" + j.printIssn);
+            }
+            if (j.onlineIssn != null) {
+                triple(w, subject, BatchJournalFinder.ISSNS,
+                       j.untypedIssns ? j.onlineIssn : "Online:" + j.onlineIssn);
+            }
+            if (j.repositoryParticipation) {
+                triple(w, subject, BatchJournalFinder.PMC_PARTICIPATION, PmcParticipation.A.name());
+            }
+        }
+        w.flush();
+    }
+
+    /**
+     * @param i index of a journal, from zero to the number of journals
+     * @return everything generated about that journal
+     */
+    GeneratedJournal journal(int i) {
+        final SplittableRandom random = new SplittableRandom(seed ^ (i * 0x9E3779B97F4A7C15L));
+        final GeneratedJournal j = new GeneratedJournal();
+
+        j.index = i;
+        j.inRepository = random.nextDouble() < repositoryFraction;
+        j.inPmc = random.nextDouble() < pmcFraction;
+        j.inMedline = random.nextDouble() < medlineFraction;
+        j.ended = j.inPmc && random.nextDouble() < endedFraction;
+        j.repositoryParticipation = (j.inPmc && !j.ended) || random.nextDouble() < staleParticipationRate;
+        j.untypedIssns = random.nextDouble() < untypedIssnRate;
+
+        final int combinations = PREFIXES.length * ADJECTIVES.length * TOPICS.length;
+        final int prefix = i % PREFIXES.length;
+        final int adjective = (i / PREFIXES.length) % ADJECTIVES.length;
+        final int topic = (i / (PREFIXES.length * ADJECTIVES.length)) % TOPICS.length;
+        final int series = i / combinations;
+
+        final String quote = random.nextDouble() < quoteRate ? "\"" : "";
+        j.name = PREFIXES[prefix] + " " + quote + ADJECTIVES[adjective] + quote + " " + TOPICS[topic] +
+                 (series > 0 ? " Series " + series : "");
+        j.sourceName = random.nextDouble() < nameVariantRate ? variant(j.name, random.nextInt(4)) : j.name;
+
+        j.nlmta = random.nextDouble() < missingFieldRate ? null :
+                  PREFIX_ABBRS[prefix] + " " + abbreviate(ADJECTIVES[adjective], 4) + " " +
+                  abbreviate(TOPICS[topic], 6) + (series > 0 ? " Ser " + series : "");
+
+        final int collideWith = i > 0 && random.nextDouble() < issnCollisionRate ?
+                                i - 1 - random.nextInt(Math.min(i, 1000)) : i;
+        j.printIssn = random.nextDouble() < missingFieldRate ? null : issn(2L * collideWith);
+        j.onlineIssn = random.nextDouble() < missingFieldRate ? null : issn(2L * i + 1);
+
+        return j;
+    }
+
+    /**
+     * Everything generated about one journal
+     */
+    static final class GeneratedJournal {
+
+        int index;
+
+        /* Name in the repository */
+        String name;
+
+        /* Name in the PMC and Medline files */
+        String sourceName;
+
+        String nlmta;
+
+        String printIssn;
+
+        String onlineIssn;
+
+        boolean inRepository;
+
+        boolean inPmc;
+
+        boolean inMedline;
+
+        boolean ended;
+
+        boolean repositoryParticipation;
+
+        boolean untypedIssns;
+
+        /**
+         * @return the journal as the PMC reader would parse it
+         */
+        Journal toPmcJournal() {
+            final Journal j = new Journal();
+            j.setJournalName(sourceName);
+            j.setNlmta(nlmta == null ? "" : nlmta);
+            if (printIssn != null) {
+                j.getIssns().add("Print:" + printIssn);
+            }
+            if (onlineIssn != null) {
+                j.getIssns().add("Online:" + onlineIssn);
+            }
+            if (!ended) {
+                j.setPmcParticipation(PmcParticipation.A);
+            }
+            return j;
+        }
+
+        /**
+         * @return the journal as stored in the repository, at its URI in {@link #CONTAINER}
+         */
+        Journal toRepositoryJournal() {
+            final Journal j = new Journal();
+            j.setId(URI.create(CONTAINER + index));
+            j.setJournalName(name);
+            j.setNlmta(nlmta);
+            if (printIssn != null) {
+                j.getIssns().add(untypedIssns ? printIssn : "Print:" + printIssn);
+            }
+            if (onlineIssn != null) {
+                j.getIssns().add(untypedIssns ? onlineIssn : "Online:" + onlineIssn);
+            }
+            if (repositoryParticipation) {
+                j.setPmcParticipation(PmcParticipation.A);
+            }
+            return j;
+        }
+    }
+
+    /*
+     * Scatter ISSN numbers over the seven digit space, and add the check digit
+     */
+    static String issn(long n) {
+        final long number = (n * 7654321L + 1234567L) % 10_000_000L;
+        final String digits = String.format("%07d", number);
+
+        int sum = 0;
+        for (int d = 0; d < 7; d++) {
+            sum += (digits.charAt(d) - '0') * (8 - d);
+        }
+        final int check = (11 - sum % 11) % 11;
+
+        return digits.substring(0, 4) + "-" + digits.substring(4) + (check == 10 ? "X" : String.valueOf(check));
+    }
+
+    private static String variant(String name, int kind) {
+        switch (kind) {
+            case 0:
+                return "The " + name;
+            case 1:
+                return name.toLowerCase();
+            case 2:
+                return name.replace(" of ", " of the ");
+            default:
+                return name + " (Online)";
+        }
+    }
+
+    private static String abbreviate(String word, int length) {
+        return word.length() > length ? word.substring(0, length) : word;
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf('"') >= 0 || value.indexOf(',') >= 0) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void triple(Writer w, String subject, String predicate, String literal) throws IOException {
+        w.write(subject);
+        w.write('<');
+        w.write(predicate);
+        w.write("> \"");
+        w.write(literal.replace("\\", "\\\\").replace("\"", "\\\""));
+        w.write('"');
+        w.write(XSD_STRING);
+    }
+
+    private static String xml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, UTF_8), 1 << 16);
+    }
+
+    private static double rate(Function<String, String> config, String name, double value) {
+        final String configured = config.apply(name);
+        return configured != null ? Double.parseDouble(configured) : value;
+    }
+}
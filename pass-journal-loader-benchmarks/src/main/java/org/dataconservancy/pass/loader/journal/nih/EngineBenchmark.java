@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.dataconservancy.pass.model.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link LoaderEngine} against an in-memory repository with no latency.
+ * <p>
+ * Incoming journals are a generated PMC list. The repository holds half of the generated journals, so about half
+ * of the incoming journals are matched and compared with the repository's copy, and half are created.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-DLOG.org.dataconservancy=WARN")
+public class EngineBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int journals;
+
+    @Param({"1", "4"})
+    int threads;
+
+    byte[] repositoryDump;
+
+    byte[] pmc;
+
+    SimulatedJournalRepository repository;
+
+    BatchJournalFinder finder;
+
+    List<Journal> incoming;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        LogUtil.adjustLogLevels();
+        final DatasetGenerator generator = new DatasetGenerator(journals, 0);
+        generator.setRepositoryFraction(0.5);
+        generator.setPmcFraction(1);
+
+        final ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        generator.writeRepository(dump, DatasetGenerator.CONTAINER);
+        repositoryDump = dump.toByteArray();
+
+        final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        generator.writePmc(csv);
+        pmc = csv.toByteArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws Exception {
+        repository = new SimulatedJournalRepository(0);
+        repository.load(new ByteArrayInputStream(repositoryDump));
+        finder = new BatchJournalFinder();
+        finder.load(new ByteArrayInputStream(repositoryDump));
+        incoming = new NihTypeAReader().readJournals(new ByteArrayInputStream(pmc), UTF_8)
+                                       .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void load() {
+        try (LoaderEngine engine = new LoaderEngine(repository, finder)) {
+            engine.setNumThreads(threads);
+            engine.load(incoming.stream(), true);
+        }
+    }
+}
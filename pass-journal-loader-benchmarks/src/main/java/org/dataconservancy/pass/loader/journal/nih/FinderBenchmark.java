@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+import org.dataconservancy.pass.model.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of {@link BatchJournalFinder} lookups and additions against an index of the given number of journals.
+ * <p>
+ * Found journals are remembered by the finder, so repeated lookups of the same journal exercise the same scoring
+ * work but return {@code SKIP}, as duplicates do in a real load.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FinderBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int journals;
+
+    DatasetGenerator generator;
+
+    BatchJournalFinder finder;
+
+    List<Journal> lookups;
+
+    int next;
+
+    int added;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new DatasetGenerator(Integer.MAX_VALUE, 0);
+        finder = new BatchJournalFinder();
+        for (int i = 0; i < journals; i++) {
+            finder.add(generator.journal(i).toRepositoryJournal());
+        }
+
+        lookups = new ArrayList<>();
+        for (int i = 0; i < Math.min(journals, 10000); i++) {
+            lookups.add(generator.journal(i).toPmcJournal());
+        }
+        added = journals;
+    }
+
+    @Benchmark
+    public String find() {
+        final Journal j = lookups.get(next++ % lookups.size());
+        return finder.find(j.getNlmta(), j.getJournalName(), j.getIssns());
+    }
+
+    @Benchmark
+    public String findMissing() {
+        return finder.find("No such NLMTA", "No such journal", Collections.singletonList("Print:9999-999X"));
+    }
+
+    @Benchmark
+    public void add() {
+        finder.add(generator.journal(added++).toRepositoryJournal());
+    }
+
+    /**
+     * Time to build the index from an N-Triples dump of the journals container
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public static class Load {
+
+        @Param({"10000", "100000"})
+        int journals;
+
+        byte[] ntriples;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            final DatasetGenerator generator = new DatasetGenerator(journals, 0);
+            generator.setRepositoryFraction(1);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.writeRepository(out, DatasetGenerator.CONTAINER);
+            ntriples = out.toByteArray();
+        }
+
+        @Benchmark
+        public BatchJournalFinder load() throws Exception {
+            final BatchJournalFinder finder = new BatchJournalFinder();
+            finder.load(new ByteArrayInputStream(ntriples));
+            return finder;
+        }
+    }
+
+    /**
+     * Time to find clusters of likely duplicates in an N-Triples dump of the journals container
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public static class Clusters {
+
+        @Param({"100000", "1000000"})
+        int journals;
+
+        byte[] ntriples;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            final DatasetGenerator generator = new DatasetGenerator(journals, 0);
+            generator.setRepositoryFraction(1);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.writeRepository(out, DatasetGenerator.CONTAINER);
+            ntriples = out.toByteArray();
+        }
+
+        @Benchmark
+        public int clusters() throws Exception {
+            final DuplicateClusters clusters = new DuplicateClusters(EnumSet.allOf(Field.class));
+            BatchJournalFinder.read(new ByteArrayInputStream(ntriples), clusters);
+            return clusters.clusters(2).size();
+        }
+    }
+}
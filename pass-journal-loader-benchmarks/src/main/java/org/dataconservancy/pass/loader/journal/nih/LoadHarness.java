@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * End-to-end load test of the loader executable, against a {@link StubFedoraServer} in the same JVM.
+ * <p>
+ * Generates PMC and Medline files and a matching repository, runs {@link Main} against them, and reports records
+ * per second, request latency percentiles, and peak heap use. Needs no network access or Docker. Configured by
+ * system properties:
+ * </p>
+ * <dl>
+ * <dt>{@code journals}</dt>
+ * <dd>Number of generated journals, defaults to 100000</dd>
+ * <dt>{@code seed}</dt>
+ * <dd>Random seed for generated data</dd>
+ * <dt>{@code stub.latency}</dt>
+ * <dd>Latency distribution of each stub Fedora request, see {@link LatencyDistribution}</dd>
+ * <dt>{@code stub.threads}</dt>
+ * <dd>Number of threads serving stub Fedora requests, defaults to 16</dd>
+ * </dl>
+ * <p>
+ * Other properties, such as {@code threads}, {@code dryRun} or {@code directHttp}, are passed through to the loader,
+ * and rates such as {@code pmcFraction} to the {@link DatasetGenerator}.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class LoadHarness {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadHarness.class);
+
+    private LoadHarness() {
+        //never called
+    }
+
+    public static void main(String[] args) throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(Integer.getInteger("journals", 100000),
+                                                                Long.getLong("seed", 0));
+        generator.configure(System::getProperty);
+
+        final Path dir = Files.createTempDirectory("journal-load");
+        final Path pmc = dir.resolve("pmc.csv");
+        final Path medline = dir.resolve("medline.txt");
+
+        try (StubFedoraServer fedora = new StubFedoraServer(generator)) {
+            write(pmc, generator::writePmc);
+            write(medline, generator::writeMedline);
+
+            long records = 0;
+            for (int i = 0; i < generator.size(); i++) {
+                final DatasetGenerator.GeneratedJournal j = generator.journal(i);
+                records += (j.inPmc ? 1 : 0) + (j.inMedline ? 1 : 0);
+            }
+
+            fedora.setLatency(LatencyDistribution.parse(System.getProperty("stub.latency")));
+            fedora.start(Integer.getInteger("stub.threads", 16));
+
+            System.setProperty("pass.fedora.baseurl", fedora.baseUrl());
+            System.setProperty("pmc", pmc.toString());
+            System.setProperty("medline", medline.toString());
+
+            final HeapSampler heap = new HeapSampler();
+            heap.start();
+            final long start = System.nanoTime();
+
+            Main.main(new String[0]);
+
+            final long elapsed = System.nanoTime() - start;
+            heap.stop();
+
+            LOG.info("Loaded {} records from {} generated journals in {} ms: {} records/s", records,
+                     generator.size(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                     records * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsed));
+            for (final Map.Entry<String, LatencyHistogram> times : new TreeMap<>(fedora.times()).entrySet()) {
+                LOG.info("{} requests: {}", times.getKey(), times.getValue().summary());
+            }
+            LOG.info("Container dump: {} KB sent", fedora.containerBytes() / 1024);
+            LOG.info("Peak heap used: {} MB", heap.peak() / (1024 * 1024));
+        } finally {
+            Files.deleteIfExists(pmc);
+            Files.deleteIfExists(medline);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static void write(Path file, Content content) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            content.writeTo(out);
+        }
+    }
+
+    /**
+     * Samples heap use every few milliseconds, and remembers the largest
+     */
+    private static class HeapSampler {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        private final AtomicLong peak = new AtomicLong();
+
+        private final AtomicBoolean running = new AtomicBoolean(true);
+
+        private final Thread thread = new Thread(() -> {
+            while (running.get()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+
+        void start() {
+            System.gc();
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+
+        long peak() {
+            return peak.get();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the {@link JournalLookupService}, served on localhost from an index of a generated repository.
+ * <p>
+ * Concurrent clients send lookups for randomly chosen generated journals, by ISSN, NLMTA and name, and the harness
+ * reports lookups per second and request latency percentiles, as seen by the clients. The time taken by the index
+ * itself, without HTTP, is reported too. Configured by system properties:
+ * </p>
+ * <dl>
+ * <dt>{@code journals}</dt>
+ * <dd>Number of generated journals, defaults to 100000</dd>
+ * <dt>{@code seed}</dt>
+ * <dd>Random seed for generated data</dd>
+ * <dt>{@code lookup.clients}</dt>
+ * <dd>Number of concurrent clients, defaults to 8</dd>
+ * <dt>{@code lookup.requests}</dt>
+ * <dd>Number of requests sent by each client, defaults to 20000</dd>
+ * <dt>{@code lookup.batch}</dt>
+ * <dd>Number of lookups in each request; if more than one, lookups are sent as batches. Defaults to 1</dd>
+ * <dt>{@code lookup.threads}</dt>
+ * <dd>Number of threads answering requests, defaults to the number of processors</dd>
+ * </dl>
+ *
+ * @author apb@jhu.edu
+ */
+public class LookupHarness {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LookupHarness.class);
+
+    private LookupHarness() {
+        //never called
+    }
+
+    public static void main(String[] args) throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(Integer.getInteger("journals", 100000),
+                                                                Long.getLong("seed", 0));
+        generator.configure(System::getProperty);
+
+        final int clients = Integer.getInteger("lookup.clients", 8);
+        final int requests = Integer.getInteger("lookup.requests", 20000);
+        final int batch = Integer.getInteger("lookup.batch", 1);
+
+        final ByteArrayOutputStream repository = new ByteArrayOutputStream();
+        generator.writeRepository(repository, DatasetGenerator.CONTAINER);
+        final byte[] dump = repository.toByteArray();
+
+        try (JournalLookupService service = new JournalLookupService(() -> {
+            final BatchJournalFinder finder = new BatchJournalFinder();
+            finder.load(new ByteArrayInputStream(dump));
+            return finder;
+        })) {
+            service.start(new InetSocketAddress("localhost", 0),
+                          Integer.getInteger("lookup.threads", Runtime.getRuntime().availableProcessors()), 0);
+            final String url = "http://localhost:" + service.port() + JournalLookupService.LOOKUP_PATH;
+
+            final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final LatencyHistogram times = new LatencyHistogram();
+            final AtomicLong matched = new AtomicLong();
+
+            // Warm up the server and client
+            run(http, url, generator, 1, Math.min(requests, 2000), batch, new LatencyHistogram(), new AtomicLong());
+
+            final long started = System.nanoTime();
+            run(http, url, generator, clients, requests, batch, times, matched);
+            final long elapsed = System.nanoTime() - started;
+
+            final long lookups = (long) clients * requests * batch;
+            LOG.info("{} lookups ({} matched) from {} clients in {} ms: {} lookups/s", lookups, matched.get(),
+                     clients, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                     lookups * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsed));
+            LOG.info("Requests of {} lookups: {}", batch, times.summary());
+
+            final LatencyHistogram index = new LatencyHistogram();
+            final SplittableRandom random = new SplittableRandom(clients);
+            for (int i = 0; i < requests; i++) {
+                final DatasetGenerator.GeneratedJournal j = generator.journal(random.nextInt(generator.size()));
+                final List<String> issns = new ArrayList<>(2);
+                if (j.printIssn != null) {
+                    issns.add("Print:" + j.printIssn);
+                }
+                if (j.onlineIssn != null) {
+                    issns.add("Online:" + j.onlineIssn);
+                }
+                final long start = System.nanoTime();
+                service.lookup(j.nlmta, j.sourceName, issns, BatchJournalFinder.MINIMUM_QUALIFYING_SCORE);
+                index.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            LOG.info("Index lookups: {}", index.summary());
+        }
+    }
+
+    private static void run(HttpClient http, String url, DatasetGenerator generator, int clients, int requests,
+                            int batch, LatencyHistogram times, AtomicLong matched) throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            final List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                final SplittableRandom random = new SplittableRandom(c);
+                done.add(pool.submit(() -> {
+                    for (int r = 0; r < requests; r++) {
+                        final HttpRequest request;
+                        if (batch > 1) {
+                            final StringBuilder body = new StringBuilder();
+                            for (int i = 0; i < batch; i++) {
+                                body.append(query(generator.journal(random.nextInt(generator.size())))).append('\n');
+                            }
+                            request = HttpRequest.newBuilder(URI.create(url))
+                                                 .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                                                 .build();
+                        } else {
+                            request = HttpRequest.newBuilder(URI.create(
+                                url + "?" + query(generator.journal(random.nextInt(generator.size()))))).build();
+                        }
+
+                        final long sent = System.nanoTime();
+                        final HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                        times.record(System.nanoTime() - sent, TimeUnit.NANOSECONDS);
+
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Lookup failed: " + response.body());
+                        }
+                        for (int i = response.body().indexOf("\"uri\""); i >= 0;
+                             i = response.body().indexOf("\"uri\"", i + 1)) {
+                            matched.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /* A lookup for a generated journal, as the PMC file describes it */
+    private static String query(DatasetGenerator.GeneratedJournal j) {
+        final StringBuilder query = new StringBuilder("name=").append(URLEncoder.encode(j.sourceName, UTF_8));
+        if (j.nlmta != null) {
+            query.append("&nlmta=").append(URLEncoder.encode(j.nlmta, UTF_8));
+        }
+        if (j.printIssn != null) {
+            query.append("&issn=Print:").append(j.printIssn);
+        }
+        if (j.onlineIssn != null) {
+            query.append("&issn=Online:").append(j.onlineIssn);
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parse throughput of the Medline, NLM Catalog and PMC readers, from an in-memory generated file of the given number
+ * of journals.
+ * Readers of files read the same content from a temporary file.
+ *
+ * @author apb@jhu.edu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int journals;
+
+    byte[] medline;
+
+    byte[] pmc;
+
+    byte[] nlmCatalog;
+
+    Path medlineFile;
+
+    Path pmcFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(journals, 0);
+        generator.setPmcFraction(1);
+        generator.setMedlineFraction(1);
+
+        final ByteArrayOutputStream medlineOut = new ByteArrayOutputStream();
+        generator.writeMedline(medlineOut);
+        medline = medlineOut.toByteArray();
+        medlineFile = Files.createTempFile("medline", ".txt");
+        Files.write(medlineFile, medline);
+
+        final ByteArrayOutputStream pmcOut = new ByteArrayOutputStream();
+        generator.writePmc(pmcOut);
+        pmc = pmcOut.toByteArray();
+
+        final ByteArrayOutputStream nlmCatalogOut = new ByteArrayOutputStream();
+        generator.writeNlmCatalog(nlmCatalogOut);
+        nlmCatalog = nlmCatalogOut.toByteArray();
+        pmcFile = Files.createTempFile("pmc", ".csv");
+        Files.write(pmcFile, pmc);
+    }
+
+    @Benchmark
+    public void medlineReader(Blackhole bh) {
+        new MedlineReader().readJournals(new ByteArrayInputStream(medline), UTF_8).forEach(bh::consume);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(medlineFile);
+        Files.deleteIfExists(pmcFile);
+    }
+
+    @Benchmark
+    public void mappedMedlineReader(Blackhole bh) throws Exception {
+        new MappedMedlineReader().readJournals(medlineFile).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void mappedMedlineRecords(Blackhole bh) throws Exception {
+        new MappedMedlineReader().readRecords(medlineFile).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void parallelMappedMedlineReader(Blackhole bh) throws Exception {
+        final MappedMedlineReader reader = new MappedMedlineReader();
+        reader.setParallel(true);
+        reader.readJournals(medlineFile).forEachOrdered(bh::consume);
+    }
+
+    @Benchmark
+    public void nlmCatalogReader(Blackhole bh) {
+        new NlmCatalogReader().readJournals(new ByteArrayInputStream(nlmCatalog), UTF_8).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void nihTypeAReader(Blackhole bh) {
+        new NihTypeAReader().readJournals(new ByteArrayInputStream(pmc), UTF_8).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void mappedNihTypeAReader(Blackhole bh) throws Exception {
+        new MappedNihTypeAReader().readJournals(pmcFile).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void mappedNihTypeARecords(Blackhole bh) throws Exception {
+        new MappedNihTypeAReader().readRecords(pmcFile).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void parallelMappedNihTypeAReader(Blackhole bh) throws Exception {
+        final MappedNihTypeAReader reader = new MappedNihTypeAReader();
+        reader.setParallel(true);
+        reader.readJournals(pmcFile).forEachOrdered(bh::consume);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * A minimal in-JVM stand-in for Fedora, implementing only what the loader uses.
+ * <p>
+ * Serves the journals container as N-Triples, gzip compressed if the client accepts it, and creates (including
+ * conditional {@code PUT}s with {@code If-None-Match: *}), reads and updates individual journals as compacted JSON-LD.
+ * Journals of a {@link DatasetGenerator} are the initial contents of the container; they are generated on request
+ * rather than stored, so a container of millions of journals costs no memory. Created and updated journals are held
+ * in memory, but are not added to the container listing, which is only read at the start of a run.
+ * </p>
+ * <p>
+ * Every request waits for a latency drawn from a configurable distribution, and the time taken to serve each kind
+ * of request is recorded.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class StubFedoraServer implements AutoCloseable {
+
+    static final String BASE_PATH = "/fcrepo/rest/";
+
+    private static final String CONTAINER = "journals";
+
+    private static final String CONTEXT =
+        "https://oa-pass.github.io/pass-data-model/src/main/resources/context-3.2.jsonld";
+
+    private static final String CONTAINS = "http://www.w3.org/ns/ldp#contains";
+
+    private final DatasetGenerator generator;
+
+    private final Map<String, byte[]> resources = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final Random random = new Random(0);
+
+    private final Map<String, LatencyHistogram> times = new ConcurrentHashMap<>();
+
+    private final AtomicLong containerBytes = new AtomicLong();
+
+    private LatencyDistribution latency = LatencyDistribution.NONE;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * @param generator generates the initial contents of the journals container
+     */
+    public StubFedoraServer(DatasetGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * @param latency latency added to every request
+     */
+    void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Start serving on an ephemeral port on localhost
+     *
+     * @param threads number of threads serving requests
+     * @throws IOException if the server cannot be started
+     */
+    public void start(int threads) throws IOException {
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(BASE_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return Fedora base URL, with a trailing slash
+     */
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    /**
+     * @return URI prefix of journals in the container, e.g. to pass to a {@link DatasetGenerator}
+     */
+    public String containerUrl() {
+        return baseUrl() + CONTAINER + "/";
+    }
+
+    /**
+     * @return time taken to serve each kind of request
+     */
+    Map<String, LatencyHistogram> times() {
+        return times;
+    }
+
+    /**
+     * @return bytes sent in response to container requests, after any compression
+     */
+    long containerBytes() {
+        return containerBytes.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        final long start = System.nanoTime();
+        final String method = ex.getRequestMethod();
+        final String path = ex.getRequestURI().getPath().substring(BASE_PATH.length());
+        String operation = method;
+
+        try {
+            final byte[] body = readAll(ex.getRequestBody());
+            pause(latency.sample(random));
+
+            if (path.equals(CONTAINER) || path.equals(CONTAINER + "/")) {
+                if (method.equals("POST")) {
+                    final String id = "created-" + nextId.incrementAndGet();
+                    resources.put(id, body);
+                    ex.getResponseHeaders().set("Location", containerUrl() + id);
+                    ex.sendResponseHeaders(201, -1);
+                } else if (method.equals("GET") || method.equals("HEAD")) {
+                    operation = "GET container";
+                    sendContainer(ex, method.equals("HEAD"));
+                } else {
+                    ex.sendResponseHeaders(405, -1);
+                }
+            } else if (path.startsWith(CONTAINER + "/")) {
+                final String id = path.substring(CONTAINER.length() + 1);
+                switch (method) {
+                    case "GET":
+                    case "HEAD":
+                        sendResource(ex, id, method.equals("HEAD"));
+                        break;
+                    case "PUT":
+                        if ("*".equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                            //create only if absent
+                            if (generated(id) != null || resources.putIfAbsent(id, body) != null) {
+                                ex.sendResponseHeaders(412, -1);
+                            } else {
+                                ex.sendResponseHeaders(201, -1);
+                            }
+                        } else {
+                            resources.put(id, body);
+                            ex.sendResponseHeaders(204, -1);
+                        }
+                        break;
+                    case "PATCH":
+                        ex.sendResponseHeaders(204, -1);
+                        break;
+                    case "DELETE":
+                        resources.remove(id);
+                        ex.sendResponseHeaders(204, -1);
+                        break;
+                    default:
+                        ex.sendResponseHeaders(405, -1);
+                }
+            } else if (path.isEmpty()) {
+                ex.sendResponseHeaders(200, -1);
+            } else {
+                ex.sendResponseHeaders(404, -1);
+            }
+        } finally {
+            ex.close();
+            times.computeIfAbsent(operation, op -> new LatencyHistogram())
+                 .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void sendContainer(HttpExchange ex, boolean headOnly) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/n-triples");
+        if (headOnly) {
+            ex.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        final String acceptEncoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        ex.sendResponseHeaders(200, 0);
+
+        final OutputStream counted = new FilterOutputStream(ex.getResponseBody()) {
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                containerBytes.addAndGet(len);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                containerBytes.incrementAndGet();
+            }
+        };
+        final GZIPOutputStream compressed = gzip ? new GZIPOutputStream(counted, 1 << 16) : null;
+        final OutputStream body = gzip ? compressed : counted;
+
+        final String prefer = ex.getRequestHeaders().getFirst("Prefer");
+        if (prefer != null && prefer.contains("PreferContainment")) {
+            final Writer w = new BufferedWriter(new OutputStreamWriter(body, UTF_8), 1 << 16);
+            for (int i = 0; i < generator.size(); i++) {
+                if (generator.journal(i).inRepository) {
+                    w.write("<" + baseUrl() + CONTAINER + "> <" + CONTAINS + "> <" + containerUrl() + i + "> .\n");
+                }
+            }
+            w.flush();
+        } else {
+            generator.writeRepository(body, containerUrl());
+        }
+        if (compressed != null) {
+            compressed.finish();
+        }
+        body.flush();
+    }
+
+    private void sendResource(HttpExchange ex, String id, boolean headOnly) throws IOException {
+        byte[] body = resources.get(id);
+        if (body == null) {
+            body = generated(id);
+        }
+
+        if (body == null) {
+            ex.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        final String accept = ex.getRequestHeaders().getFirst("Accept");
+        if (accept != null && !accept.contains("application/ld+json") && !accept.contains("*/*")) {
+            ex.sendResponseHeaders(406, -1);
+            return;
+        }
+
+        ex.getResponseHeaders().set("Content-Type", "application/ld+json");
+        ex.getResponseHeaders().set("ETag", "W/\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"");
+        if (headOnly) {
+            ex.sendResponseHeaders(200, -1);
+        } else {
+            ex.sendResponseHeaders(200, body.length);
+            ex.getResponseBody().write(body);
+        }
+    }
+
+    private byte[] generated(String id) {
+        final int index;
+        try {
+            index = Integer.parseInt(id);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+
+        if (index < 0 || index >= generator.size() || !generator.journal(index).inRepository) {
+            return null;
+        }
+
+        final Journal j = generator.journal(index).toRepositoryJournal();
+        final StringBuilder json = new StringBuilder("{\"@id\":");
+        string(json, containerUrl() + index);
+        json.append(",\"@type\":\"Journal\",\"journalName\":");
+        string(json, j.getJournalName());
+        if (j.getNlmta() != null) {
+            json.append(",\"nlmta\":");
+            string(json, j.getNlmta());
+        }
+        json.append(",\"issns\":[");
+        for (int i = 0; i < j.getIssns().size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            string(json, j.getIssns().get(i));
+        }
+        json.append(']');
+        if (j.getPmcParticipation() != null) {
+            json.append(",\"pmcParticipation\":");
+            string(json, j.getPmcParticipation().name());
+        }
+        json.append(",\"@context\":");
+        string(json, CONTEXT);
+        json.append('}');
+
+        return json.toString().getBytes(UTF_8);
+    }
+
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void pause(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class DatasetGeneratorTest {
+
+    @Test
+    public void deterministicTest() throws Exception {
+        assertArrayEquals(medline(new DatasetGenerator(1000, 42)), medline(new DatasetGenerator(1000, 42)));
+    }
+
+    @Test
+    public void pmcRoundTripTest() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(2000, 1);
+        generator.setQuoteRate(0.2);
+        generator.setMissingFieldRate(0.2);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writePmc(out);
+
+        final List<Journal> parsed = new NihTypeAReader()
+            .readJournals(new ByteArrayInputStream(out.toByteArray()), UTF_8)
+            .collect(Collectors.toList());
+        final List<Journal> expected = IntStream.range(0, generator.size())
+                                                .mapToObj(generator::journal)
+                                                .filter(j -> j.inPmc)
+                                                .map(DatasetGenerator.GeneratedJournal::toPmcJournal)
+                                                .collect(Collectors.toList());
+
+        assertEquals(expected.size(), parsed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getJournalName(), parsed.get(i).getJournalName());
+            assertEquals(expected.get(i).getNlmta(), parsed.get(i).getNlmta());
+            assertEquals(expected.get(i).getIssns(), parsed.get(i).getIssns());
+            assertEquals(expected.get(i).getPmcParticipation(), parsed.get(i).getPmcParticipation());
+        }
+    }
+
+    @Test
+    public void medlineRoundTripTest() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(2000, 1);
+
+        final long expected = IntStream.range(0, generator.size()).filter(i -> generator.journal(i).inMedline).count();
+        final long parsed = new MedlineReader()
+            .readJournals(new ByteArrayInputStream(medline(generator)), UTF_8)
+            .count();
+
+        assertEquals(expected, parsed);
+    }
+
+    @Test
+    public void nlmCatalogMatchesMedlineTest() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(2000, 1);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writeNlmCatalog(out);
+
+        final List<Journal> catalog = new NlmCatalogReader()
+            .readJournals(new ByteArrayInputStream(out.toByteArray()), UTF_8)
+            .collect(Collectors.toList());
+        final List<Journal> medline = new MedlineReader()
+            .readJournals(new ByteArrayInputStream(medline(generator)), UTF_8)
+            .collect(Collectors.toList());
+
+        assertEquals(medline.size(), catalog.size());
+        for (int i = 0; i < medline.size(); i++) {
+            assertEquals(medline.get(i).getJournalName(), catalog.get(i).getJournalName());
+            assertEquals(medline.get(i).getIssns(), catalog.get(i).getIssns());
+        }
+    }
+
+    @Test
+    public void repositoryMatchesSourcesTest() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(2000, 1);
+        generator.setIssnCollisionRate(0);
+        generator.setMissingFieldRate(0);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writeRepository(out, DatasetGenerator.CONTAINER);
+
+        final BatchJournalFinder finder = new BatchJournalFinder();
+        finder.load(new ByteArrayInputStream(out.toByteArray()));
+
+        for (int i = 0; i < generator.size(); i++) {
+            final DatasetGenerator.GeneratedJournal generated = generator.journal(i);
+            final Journal j = generated.toPmcJournal();
+            final String found = finder.find(j.getNlmta(), j.getJournalName(), j.getIssns());
+            if (generated.inRepository) {
+                assertEquals(DatasetGenerator.CONTAINER + i, found);
+            }
+        }
+    }
+
+    @Test
+    public void distinctKeysTest() {
+        final DatasetGenerator generator = new DatasetGenerator(100000, 0);
+        generator.setMissingFieldRate(0);
+        generator.setIssnCollisionRate(0);
+
+        final Set<String> names = new HashSet<>();
+        final Set<String> nlmtas = new HashSet<>();
+        final Set<String> issns = new HashSet<>();
+        for (int i = 0; i < generator.size(); i++) {
+            final DatasetGenerator.GeneratedJournal j = generator.journal(i);
+            assertTrue(names.add(j.name.replace("\"", "")));
+            assertTrue(nlmtas.add(j.nlmta));
+            assertTrue(issns.add(j.printIssn));
+            assertTrue(issns.add(j.onlineIssn));
+        }
+    }
+
+    private static byte[] medline(DatasetGenerator generator) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.writeMedline(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import org.dataconservancy.pass.client.adapter.PassJsonAdapterBasic;
+import org.dataconservancy.pass.model.Journal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class StubFedoraServerTest {
+
+    private DatasetGenerator generator;
+
+    private StubFedoraServer toTest;
+
+    @Before
+    public void setUp() throws Exception {
+        generator = new DatasetGenerator(1000, 0);
+        generator.setIssnCollisionRate(0);
+        generator.setMissingFieldRate(0);
+
+        toTest = new StubFedoraServer(generator);
+        toTest.start(2);
+    }
+
+    @After
+    public void tearDown() {
+        toTest.close();
+    }
+
+    @Test
+    public void containerTest() throws Exception {
+        final BatchJournalFinder finder = new BatchJournalFinder(toTest.baseUrl() + "journals");
+
+        for (int i = 0; i < generator.size(); i++) {
+            final DatasetGenerator.GeneratedJournal generated = generator.journal(i);
+            if (generated.inRepository) {
+                final Journal j = generated.toPmcJournal();
+                assertEquals(toTest.containerUrl() + i, finder.find(j.getNlmta(), j.getJournalName(), j.getIssns()));
+            }
+        }
+    }
+
+    @Test
+    public void readGeneratedJournalTest() throws Exception {
+        int i = 0;
+        while (!generator.journal(i).inRepository) {
+            i++;
+        }
+
+        final HttpURLConnection get = open(toTest.containerUrl() + i, "GET");
+        assertEquals(200, get.getResponseCode());
+
+        final String json = read(get.getInputStream());
+        assertTrue(json.contains("\"journalName\":\"" + generator.journal(i).name + "\""));
+    }
+
+    @Test
+    public void createAndUpdateTest() throws Exception {
+        final HttpURLConnection post = open(toTest.containerUrl(), "POST");
+        send(post, "{\"journalName\":\"created\"}");
+        assertEquals(201, post.getResponseCode());
+
+        final String location = post.getHeaderField("Location");
+        assertNotNull(location);
+
+        final HttpURLConnection put = open(location, "PUT");
+        send(put, "{\"journalName\":\"updated\"}");
+        assertEquals(204, put.getResponseCode());
+
+        final HttpURLConnection get = open(location, "GET");
+        assertEquals("{\"journalName\":\"updated\"}", read(get.getInputStream()));
+
+        assertEquals(404, open(toTest.containerUrl() + "nope", "GET").getResponseCode());
+    }
+
+    @Test
+    public void createIfAbsentTest() throws Exception {
+        final String url = toTest.containerUrl() + "issn-0000-0001";
+
+        final HttpURLConnection first = open(url, "PUT");
+        first.setRequestProperty("If-None-Match", "*");
+        send(first, "{\"journalName\":\"first\"}");
+        assertEquals(201, first.getResponseCode());
+
+        final HttpURLConnection second = open(url, "PUT");
+        second.setRequestProperty("If-None-Match", "*");
+        send(second, "{\"journalName\":\"second\"}");
+        assertEquals(412, second.getResponseCode());
+
+        assertEquals("{\"journalName\":\"first\"}", read(open(url, "GET").getInputStream()));
+    }
+
+    @Test
+    public void compressedContainerTest() throws Exception {
+        final String plain = read(open(toTest.baseUrl() + "journals", "GET").getInputStream());
+        final long plainBytes = toTest.containerBytes();
+
+        final HttpURLConnection get = open(toTest.baseUrl() + "journals", "GET");
+        get.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        assertEquals("gzip", get.getHeaderField("Content-Encoding"));
+        assertEquals(plain, read(new GZIPInputStream(get.getInputStream())));
+
+        final long compressedBytes = toTest.containerBytes() - plainBytes;
+        assertEquals(plain.getBytes(UTF_8).length, plainBytes);
+        assertTrue(compressedBytes * 5 < plainBytes);
+    }
+
+    @Test
+    public void fedoraRepositoryTest() throws Exception {
+        final FedoraJournalRepository repository = new FedoraJournalRepository(toTest.baseUrl() + "journals");
+        final PassJsonAdapterBasic json = new PassJsonAdapterBasic();
+
+        final Journal j = new Journal();
+        j.setJournalName("created");
+        final URI created = repository.create(j);
+        assertTrue(created.toString().startsWith(toTest.containerUrl()));
+
+        j.setId(created);
+        j.setJournalName("updated");
+        repository.update(j);
+        assertEquals(new String(json.toJson(j, true), UTF_8),
+                     read(open(created.toString(), "GET").getInputStream()));
+
+        final URI named = repository.journalUri("issn-0000-0002");
+        assertEquals(URI.create(toTest.containerUrl() + "issn-0000-0002"), named);
+        assertTrue(repository.createIfAbsent(named, j));
+        assertFalse(repository.createIfAbsent(named, j));
+
+        assertNull(repository.read(URI.create(toTest.containerUrl() + "nope")));
+
+        int existing = 0;
+        while (!generator.journal(existing).inRepository) {
+            existing++;
+        }
+        final Journal expected = generator.journal(existing).toRepositoryJournal();
+        final URI uri = URI.create(toTest.containerUrl() + existing);
+        final Journal read = repository.read(uri);
+        assertEquals(uri, read.getId());
+        assertEquals(expected.getJournalName(), read.getJournalName());
+        assertEquals(expected.getNlmta(), read.getNlmta());
+        assertEquals(expected.getIssns(), read.getIssns());
+    }
+
+    private static HttpURLConnection open(String url, String method) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static void send(HttpURLConnection connection, String body) throws Exception {
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/ld+json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(UTF_8));
+        }
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (InputStream body = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            body.transferTo(out);
+            return new String(out.toByteArray(), UTF_8);
+        }
+    }
+}
@@ -29,17 +29,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.entity.DecompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.dataconservancy.pass.client.fedora.FedoraConfig;
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
 import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,68 +50,187 @@ public class BatchJournalFinder implements JournalFinder {
 
     private Logger LOG = LoggerFactory.getLogger(BatchJournalFinder.class);
 
-    private Map<String, Set<String>> issnMap = new HashMap<>();
+    private final JournalIndex index;
 
-    private Map<String, Set<String>> nlmtaMap = new HashMap<>();
+    private Set<String> foundUris = new HashSet<>();
 
-    private Map<String, Set<String>> nameMap = new HashMap<>();
+    /* Journals with type A PMC participation */
+    private Set<String> pmcParticipants = new HashSet<>();
 
-    private Set<String> foundUris = new HashSet<>();
+    /* Journals found to be deleted, whose postings could not be removed as changes are not tracked */
+    private final Set<String> forgotten = ConcurrentHashMap.newKeySet();
+
+    /* Postings of each journal, if changes are tracked */
+    private Map<String, Set<Posting>> postingsByUri;
 
-    private static final String ISSNS = "http://oapass.org/ns/pass#issn";
+    static final String ISSNS = "http://oapass.org/ns/pass#issn";
 
-    private static final String NLMTAS = "http://oapass.org/ns/pass#nlmta";
+    static final String NLMTAS = "http://oapass.org/ns/pass#nlmta";
 
-    private static final String NAMES = "http://oapass.org/ns/pass#journalName";
+    static final String NAMES = "http://oapass.org/ns/pass#journalName";
+
+    static final String PMC_PARTICIPATION = "http://oapass.org/ns/pass#pmcParticipation";
+
+    /* Score a journal must reach to be considered a match */
+    static final int MINIMUM_QUALIFYING_SCORE = 2;
 
     void load(InputStream ntriples) throws IOException {
+        final LoaderEvents.IndexBuild event = new LoaderEvents.IndexBuild();
+        event.begin();
+
+        read(ntriples, (field, key, uri) -> {
+            index.add(field, key, uri);
+            if (postingsByUri != null) {
+                postingsByUri.computeIfAbsent(uri, u -> new HashSet<>()).add(new Posting(field, key));
+            }
+        }, pmcParticipants::add);
+        index.loaded();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.index = index.getClass().getSimpleName();
+            event.issns = index.size(Field.ISSN);
+            event.nlmtas = index.size(Field.NLMTA);
+            event.names = index.size(Field.NAME);
+            event.commit();
+        }
+    }
+
+    /**
+     * Receives postings read from N-Triples
+     */
+    interface PostingSink {
+
+        void add(Field field, String key, String uri);
+    }
+
+    /**
+     * Read the postings in an N-Triples dump of the journals container, without indexing them.
+     *
+     * @param ntriples dump of the journals container, closed when read
+     * @param sink     receives each posting
+     * @throws IOException if the dump cannot be read
+     */
+    static void read(InputStream ntriples, PostingSink sink) throws IOException {
+        read(ntriples, sink, uri -> { });
+    }
+
+    private static void read(InputStream ntriples, PostingSink sink, Consumer<String> pmcParticipants)
+        throws IOException {
         try (InputStream in = ntriples) {
             final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                final String[] spo = line.split("\\s+");
+                //scan for the subject and predicate, rather than splitting the whole line
+                final int subjectEnd = endOfToken(line, 0);
+                final int predicateStart = startOfToken(line, subjectEnd);
+                final String predicate = ntripleUri(line.substring(predicateStart, endOfToken(line, predicateStart)));
 
-                final String uri = ntripleUri(spo[0]);
-                final String predicate = ntripleUri(spo[1]);
+                if (predicate == null) {
+                    continue;
+                }
 
-                assert predicate != null;
+                final String uri = ntripleUri(line.substring(0, subjectEnd));
+
+                //spaces inside quotes mess up tokens - need to operate on line
                 if (predicate.equals(ISSNS)) {
-                    final String issn = ntripLiteral(spo[2]);
-                    if (!issnMap.containsKey(issn)) {
-                        issnMap.put(issn, new HashSet<>());
-                    }
-                    issnMap.get(issn).add(uri);
+                    final String issn = ntripLiteral(line);
+                    sink.add(Field.ISSN, issn, uri);
                 }
 
                 if (predicate.equals(NLMTAS)) {
-                    final String nlmta = ntripLiteral(
-                        line);//spaces inside quotes mess split up - need to operate on line
-                    if (!nlmtaMap.containsKey(nlmta)) {
-                        nlmtaMap.put(nlmta, new HashSet<>());
-                    }
-                    nlmtaMap.get(nlmta).add(uri);
+                    final String nlmta = ntripLiteral(line);
+                    sink.add(Field.NLMTA, nlmta, uri);
                 }
 
                 if (predicate.equals(NAMES)) {
-                    final String name = ntripLiteral(
-                        line);//spaces inside quotes mess split up - need to operate on line
-                    if (!nameMap.containsKey(name)) {
-                        nameMap.put(name, new HashSet<>());
-                    }
-                    nameMap.get(name).add(uri);
+                    final String name = ntripLiteral(line);
+                    sink.add(Field.NAME, name, uri);
+                }
+
+                if (predicate.equals(PMC_PARTICIPATION) && PmcParticipation.A.name().equals(ntripLiteral(line))) {
+                    pmcParticipants.accept(uri);
                 }
 
             }
         }
     }
 
+    private static int endOfToken(String line, int from) {
+        int i = from;
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int startOfToken(String line, int from) {
+        int i = from;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
     BatchJournalFinder() {
+        this(new HeapJournalIndex());
+    }
 
+    BatchJournalFinder(JournalIndex index) {
+        this.index = index;
     }
 
     BatchJournalFinder(String journalContainer) throws Exception {
+        this(journalContainer, new HeapJournalIndex());
+    }
+
+    BatchJournalFinder(String journalContainer, JournalIndex index) throws Exception {
+        this(journalContainer, index, false);
+    }
+
+    /**
+     * @param journalContainer URL of the repository's journals container
+     * @param index            index to load the container's journals into
+     * @param trackChanges     whether to track changes to journals, see {@link #trackChanges()}
+     * @throws Exception if the container cannot be read
+     */
+    BatchJournalFinder(String journalContainer, JournalIndex index, boolean trackChanges) throws Exception {
+        this(index);
+
+        if (trackChanges) {
+            trackChanges();
+        }
 
         LOG.info("Analyzing journals in " + journalContainer);
 
+        try (CloseableHttpResponse response = download(journalContainer)) {
+            load(response.getEntity().getContent());
+        }
+
+        LOG.info("Found {} existing ISSNs", index.size(Field.ISSN));
+        LOG.info("Found {} existing NLMTAs", index.size(Field.NLMTA));
+        LOG.info("Found {} existing NAMES", index.size(Field.NAME));
+    }
+
+    /**
+     * Bring the index in line with the journals container, see {@link #resync(InputStream)}.
+     *
+     * @param journalContainer URL of the repository's journals container
+     * @throws IOException if the container cannot be read
+     */
+    void resync(String journalContainer) throws IOException {
+        try (CloseableHttpResponse response = download(journalContainer)) {
+            resync(response.getEntity().getContent());
+        }
+    }
+
+    /**
+     * Request the container dump over the shared {@link HttpTransport}, compressed if the server supports it.
+     *
+     * @param journalContainer URL of the repository's journals container
+     * @return response whose entity is an N-Triples dump of the container, decompressed as it is read
+     * @throws IOException if the container cannot be read
+     */
+    static CloseableHttpResponse download(String journalContainer) throws IOException {
         final HttpGet get = new HttpGet(journalContainer);
         get.setHeader("Accept", "application/n-triples");
         get.setHeader("Prefer",
@@ -121,25 +238,38 @@ public class BatchJournalFinder implements JournalFinder {
                       ".info/definitions/v4/repository#EmbedResources\"; omit=\"http://fedora" +
                       ".info/definitions/v4/repository#ServerManaged\"");
 
-        try (CloseableHttpResponse response = getHttpClient().execute(get)) {
-            load(response.getEntity().getContent());
+        final LoaderEvents.ContainerFetch event = new LoaderEvents.ContainerFetch();
+        event.begin();
+        final CloseableHttpResponse response = HttpTransport.client().execute(get);
+        event.end();
+        if (event.shouldCommit()) {
+            event.container = journalContainer;
+            event.status = response.getStatusLine().getStatusCode();
+            event.compressed = response.getEntity() instanceof DecompressingEntity;
+            event.commit();
         }
+        return response;
+    }
 
-        LOG.info("Found {} existing ISSNs", issnMap.size());
-        LOG.info("Found {} existing NLMTAs", nlmtaMap.size());
-        LOG.info("Found {} existing NAMES", nameMap.size());
+    /**
+     * @param field an indexed field
+     * @return number of distinct values of the field in the index
+     */
+    int size(Field field) {
+        return index.size(field);
     }
 
     /**
-     * @param nlmta the NLMTA supplied in out incoming journal data
+     * Score journals in the index against incoming journal data: one point for each matching ISSN, and one each for a
+     * matching NLMTA and name. Unlike {@link #find(String, String, List)}, this does not claim a journal, and does not
+     * lock; it is safe to call from many threads as long as the index is not being modified.
+     *
+     * @param nlmta the NLMTA
      * @param name  the journal name
      * @param issns the list of issns
-     * @return the URI string of the matching journal if found, null if nothing is found
-     * or a directive to SKIP processing on this journal if the matching journal
-     * has already been processed
+     * @return the score of each journal URI with any points
      */
-    @Override
-    public synchronized String find(String nlmta, String name, List<String> issns) {
+    Map<String, Integer> score(String nlmta, String name, List<String> issns) {
         Set<String> nlmtaUriSet = getUrisByNlmta(nlmta);
         Set<String> nameUriSet = getUrisByName(name);
 
@@ -177,9 +307,81 @@ public class BatchJournalFinder implements JournalFinder {
             }
         }
 
+        if (!forgotten.isEmpty()) {
+            uriScores.keySet().removeAll(forgotten);
+        }
+
+        return uriScores;
+    }
+
+    @Override
+    public synchronized Integer score(String uri, String nlmta, String name, List<String> issns) {
+        return score(nlmta, name, issns).get(uri);
+    }
+
+    @Override
+    public synchronized Set<String> bestMatches(String nlmta, String name, List<String> issns) {
+        final Map<String, Integer> uriScores = score(nlmta, name, issns);
+        if (uriScores.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final int highScore = Collections.max(uriScores.values());
+        if (highScore < MINIMUM_QUALIFYING_SCORE) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> best = new HashSet<>();
+        uriScores.forEach((uri, score) -> {
+            if (score == highScore) {
+                best.add(uri);
+            }
+        });
+        return best;
+    }
+
+    /**
+     * Score a single journal against incoming journal data, by the same rules as the index.
+     *
+     * @param j     the journal
+     * @param nlmta the NLMTA
+     * @param name  the journal name
+     * @param issns the list of issns
+     * @return the score, zero if nothing matches
+     */
+    static int score(Journal j, String nlmta, String name, List<String> issns) {
+        final List<String> journalIssns = j.getIssns() != null ? j.getIssns() : Collections.emptyList();
+        int score = 0;
+        for (final String issn : issns) {
+            final String[] parts = issn.split(":");
+            if (journalIssns.contains(issn) || (parts.length == 2 && journalIssns.contains(parts[1]))) {
+                score++;
+            }
+        }
+        if (nlmta != null && nlmta.length() > 0 && nlmta.equals(j.getNlmta())) {
+            score++;
+        }
+        if (name != null && name.length() > 0 && name.equals(j.getJournalName())) {
+            score++;
+        }
+        return score;
+    }
+
+    /**
+     * @param nlmta the NLMTA supplied in out incoming journal data
+     * @param name  the journal name
+     * @param issns the list of issns
+     * @return the URI string of the matching journal if found, null if nothing is found
+     * or a directive to SKIP processing on this journal if the matching journal
+     * has already been processed
+     */
+    @Override
+    public synchronized String find(String nlmta, String name, List<String> issns) {
+        Map<String, Integer> uriScores = score(nlmta, name, issns);
+
         if (uriScores.size() > 0) { //we have a possible uri - find out if it is matchy enough
             Integer highScore = Collections.max(uriScores.values());
-            int minimumQualifyingScore = 2;
+            int minimumQualifyingScore = MINIMUM_QUALIFYING_SCORE;
             List<String> sortedUris = new ArrayList<>();
 
             for (int i = highScore; i >= minimumQualifyingScore; i--) {
@@ -209,49 +411,39 @@ public class BatchJournalFinder implements JournalFinder {
         return null;
     }
 
-    private synchronized Set<String> getUrisByIssn(String issn) {
-        if (issnMap.containsKey(issn)) {
-            return issnMap.get(issn);
+    private Set<String> getUrisByIssn(String issn) {
+        final Set<String> uris = index.get(Field.ISSN, issn);
+        if (uris != null) {
+            return uris;
         }
 
         String[] parts = issn.split(":");
 
         if (parts.length == 2) {
-            return issnMap.get(parts[1]);
+            return index.get(Field.ISSN, parts[1]);
         }
 
         return null;
 
     }
 
-    private synchronized Set<String> getUrisByNlmta(String nlmta) {
-        if (nlmta != null && nlmta.length() > 0 && nlmtaMap.containsKey(nlmta)) {
-            return nlmtaMap.get(nlmta);
+    private Set<String> getUrisByNlmta(String nlmta) {
+        if (nlmta != null && nlmta.length() > 0) {
+            return index.get(Field.NLMTA, nlmta);
         }
 
         return null;
     }
 
-    private synchronized Set<String> getUrisByName(String name) {
-        if (name != null && name.length() > 0 && nameMap.containsKey(name)) {
-            return nameMap.get(name);
+    private Set<String> getUrisByName(String name) {
+        if (name != null && name.length() > 0) {
+            return index.get(Field.NAME, name);
         }
 
         return null;
     }
 
-    private static CloseableHttpClient getHttpClient() {
-        final CredentialsProvider provider = new BasicCredentialsProvider();
-        final UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(FedoraConfig.getUserName(),
-                                                                                        FedoraConfig.getPassword());
-        provider.setCredentials(AuthScope.ANY, credentials);
-
-        return HttpClientBuilder.create()
-                                .setDefaultCredentialsProvider(provider)
-                                .build();
-    }
-
-    private static String ntripleUri(String token) {
+    static String ntripleUri(String token) {
         final int s = token.indexOf("<");
         final int f = token.indexOf(">");
         if (s != -1 && f != -1) {
@@ -261,7 +453,7 @@ public class BatchJournalFinder implements JournalFinder {
         return null;
     }
 
-    private static String ntripLiteral(String token) {
+    static String ntripLiteral(String token) {
         final int s = token.indexOf("\"");
         final int f = token.lastIndexOf("\"");//deal with journal names containing quotes
         if (s != -1 && f != -1) {
@@ -271,6 +463,11 @@ public class BatchJournalFinder implements JournalFinder {
         return null;
     }
 
+    @Override
+    public synchronized void reset() {
+        foundUris = new HashSet<>();
+    }
+
     @Override
     public synchronized void add(Journal j) {
 
@@ -279,29 +476,196 @@ public class BatchJournalFinder implements JournalFinder {
         String nlmta = j.getNlmta();
         if (nlmta != null && nlmta.length() > 0) {
             LOG.debug("Adding nlmta " + nlmta);
-            if (!nlmtaMap.containsKey(nlmta)) {
-                nlmtaMap.put(nlmta, new HashSet<>());
-            }
-            nlmtaMap.get(nlmta).add(uri);
+            index.add(Field.NLMTA, nlmta, uri);
         }
 
         for (final String issn : j.getIssns()) {
             LOG.debug("Adding issn " + issn);
-            if (!issnMap.containsKey(issn)) {
-                issnMap.put(issn, new HashSet<>());
-            }
-            issnMap.get(issn).add(uri);
+            index.add(Field.ISSN, issn, uri);
         }
 
         String name = j.getJournalName();
         if (name != null && name.length() > 0) {
             LOG.debug("Adding name " + name);
-            if (!nameMap.containsKey(j.getJournalName())) {
-                nameMap.put(name, new HashSet<>());
-            }
-            nameMap.get(name).add(uri);
+            index.add(Field.NAME, name, uri);
+        }
+
+        if (postingsByUri != null) {
+            postingsByUri.put(uri, union(postingsByUri.get(uri), postings(nlmta, name, j.getIssns())));
+        }
+
+        if (j.getPmcParticipation() == PmcParticipation.A) {
+            pmcParticipants.add(uri);
+        } else {
+            pmcParticipants.remove(uri);
         }
 
         foundUris.add(uri);
+        forgotten.remove(uri);
+    }
+
+    @Override
+    public synchronized void forget(String uri) {
+        if (postingsByUri != null) {
+            remove(uri);
+        } else {
+            forgotten.add(uri);
+            pmcParticipants.remove(uri);
+        }
+    }
+
+    @Override
+    public synchronized Set<String> pmcParticipants() {
+        return new HashSet<>(pmcParticipants);
+    }
+
+    /**
+     * Keep track of the postings of each journal, so that journals can later be replaced or removed as the
+     * repository changes. Must be called before the repository's journals are loaded. The postings are kept on the
+     * heap whatever the index, so tracking costs memory in proportion to the number of journals.
+     */
+    synchronized void trackChanges() {
+        if (postingsByUri == null) {
+            postingsByUri = new HashMap<>();
+        }
+    }
+
+    /**
+     * Replace everything indexed for a journal, e.g. when it is created or updated in the repository. Replacing a
+     * journal with the same data again has no effect.
+     *
+     * @param uri              the journal's URI
+     * @param nlmta            the journal's NLMTA
+     * @param name             the journal's name
+     * @param issns            the journal's ISSNs
+     * @param pmcParticipation the journal's PMC participation, null if none
+     */
+    synchronized void replace(String uri, String nlmta, String name, List<String> issns,
+                              PmcParticipation pmcParticipation) {
+        apply(uri, postings(nlmta, name, issns));
+        forgotten.remove(uri);
+        if (pmcParticipation == PmcParticipation.A) {
+            pmcParticipants.add(uri);
+        } else {
+            pmcParticipants.remove(uri);
+        }
+    }
+
+    /**
+     * Remove everything indexed for a journal, e.g. when it is deleted from the repository. Removing a journal that
+     * is not indexed has no effect.
+     *
+     * @param uri the journal's URI
+     */
+    synchronized void remove(String uri) {
+        apply(uri, Collections.emptySet());
+        pmcParticipants.remove(uri);
+    }
+
+    /**
+     * Bring the index in line with a full N-Triples dump of the journals container, changing only the journals that
+     * differ.
+     *
+     * @param ntriples dump of the journals container
+     * @throws IOException if the dump cannot be read
+     */
+    synchronized void resync(InputStream ntriples) throws IOException {
+        checkTracking();
+
+        final Map<String, Set<Posting>> current = new HashMap<>();
+        final Set<String> participants = new HashSet<>();
+        read(ntriples, (field, key, uri) -> current.computeIfAbsent(uri, u -> new HashSet<>())
+                                                   .add(new Posting(field, key)), participants::add);
+        pmcParticipants = participants;
+
+        for (final String uri : new ArrayList<>(postingsByUri.keySet())) {
+            if (!current.containsKey(uri)) {
+                apply(uri, Collections.emptySet());
+            }
+        }
+        for (final Map.Entry<String, Set<Posting>> journal : current.entrySet()) {
+            apply(journal.getKey(), journal.getValue());
+        }
+    }
+
+    /* Make the given postings the journal's only postings */
+    private void apply(String uri, Set<Posting> postings) {
+        checkTracking();
+
+        final Set<Posting> old = postingsByUri.getOrDefault(uri, Collections.emptySet());
+        for (final Posting p : old) {
+            if (!postings.contains(p)) {
+                index.remove(p.field, p.key, uri);
+            }
+        }
+        for (final Posting p : postings) {
+            if (!old.contains(p)) {
+                index.add(p.field, p.key, uri);
+            }
+        }
+
+        if (postings.isEmpty()) {
+            postingsByUri.remove(uri);
+        } else {
+            postingsByUri.put(uri, postings);
+        }
+    }
+
+    private void checkTracking() {
+        if (postingsByUri == null) {
+            throw new IllegalStateException("Changes to journals are not being tracked");
+        }
+    }
+
+    private static Set<Posting> postings(String nlmta, String name, List<String> issns) {
+        final Set<Posting> postings = new HashSet<>();
+        if (nlmta != null && nlmta.length() > 0) {
+            postings.add(new Posting(Field.NLMTA, nlmta));
+        }
+        if (issns != null) {
+            for (final String issn : issns) {
+                postings.add(new Posting(Field.ISSN, issn));
+            }
+        }
+        if (name != null && name.length() > 0) {
+            postings.add(new Posting(Field.NAME, name));
+        }
+        return postings;
+    }
+
+    private static Set<Posting> union(Set<Posting> a, Set<Posting> b) {
+        if (a == null) {
+            return b;
+        }
+        final Set<Posting> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    /* An identifier of a journal */
+    private static final class Posting {
+
+        final Field field;
+
+        final String key;
+
+        Posting(Field field, String key) {
+            this.field = field;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Posting)) {
+                return false;
+            }
+            final Posting p = (Posting) o;
+            return field == p.field && key.equals(p.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return field.hashCode() * 31 + key.hashCode();
+        }
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+
+/**
+ * Immutable journal record, as produced by the readers.
+ * <p>
+ * Holds only what matching needs: name, NLMTA, ISSNs packed into an array, and whether the journal is active in PMC.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class CompactJournalRecord implements JournalRecord {
+
+    private static final String[] NO_ISSNS = new String[0];
+
+    private final String name;
+
+    private final String nlmta;
+
+    private final String[] issns;
+
+    private final boolean active;
+
+    private CompactJournalRecord(String name, String nlmta, String[] issns, boolean active) {
+        this.name = name;
+        this.nlmta = nlmta;
+        this.issns = issns;
+        this.active = active;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String nlmta() {
+        return nlmta;
+    }
+
+    @Override
+    public List<String> issns() {
+        return new Issns(issns);
+    }
+
+    @Override
+    public Journal journal() {
+        final Journal j = new Journal();
+        j.setJournalName(name);
+        j.setNlmta(nlmta);
+        j.getIssns().addAll(Arrays.asList(issns));
+        if (active) {
+            j.setPmcParticipation(PmcParticipation.A);
+        }
+        return j;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord [name=" + name + ", nlmta=" + nlmta + ", issns=" + Arrays.toString(issns) + ", active=" +
+               active + "]";
+    }
+
+    /* Read-only view of the packed ISSNs */
+    private static final class Issns extends AbstractList<String> implements RandomAccess {
+
+        private final String[] issns;
+
+        Issns(String[] issns) {
+            this.issns = issns;
+        }
+
+        @Override
+        public String get(int index) {
+            return issns[index];
+        }
+
+        @Override
+        public int size() {
+            return issns.length;
+        }
+    }
+
+    /**
+     * Accumulates the fields of a record as it is parsed. A builder may be reused; {@link #build()} resets it.
+     */
+    static final class Builder {
+
+        private String name;
+
+        private String nlmta;
+
+        private String[] issns = new String[4];
+
+        private int numIssns;
+
+        private boolean active;
+
+        Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        String name() {
+            return name;
+        }
+
+        Builder nlmta(String nlmta) {
+            this.nlmta = nlmta;
+            return this;
+        }
+
+        Builder issn(String issn) {
+            if (numIssns == issns.length) {
+                issns = Arrays.copyOf(issns, numIssns * 2);
+            }
+            issns[numIssns++] = issn;
+            return this;
+        }
+
+        Builder active(boolean active) {
+            this.active = active;
+            return this;
+        }
+
+        /**
+         * Build a record from the accumulated fields, and reset the builder.
+         *
+         * @return the record
+         */
+        CompactJournalRecord build() {
+            final CompactJournalRecord record = new CompactJournalRecord(name, nlmta,
+                                                                         numIssns == 0 ? NO_ISSNS :
+                                                                         Arrays.copyOf(issns, numIssns), active);
+            reset();
+            return record;
+        }
+
+        /**
+         * Discard the accumulated fields.
+         */
+        void reset() {
+            name = null;
+            nlmta = null;
+            Arrays.fill(issns, 0, numIssns, null);
+            numIssns = 0;
+            active = false;
+        }
+    }
+}
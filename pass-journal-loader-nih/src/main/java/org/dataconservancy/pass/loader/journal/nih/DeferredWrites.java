@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.dataconservancy.pass.loader.journal.nih.FileJournalChangeSource.escape;
+import static org.dataconservancy.pass.loader.journal.nih.FileJournalChangeSource.fields;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.dataconservancy.pass.loader.journal.nih.WriteScheduler.Priority;
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file of writes a run deferred because its deadline passed, for the next run to make first.
+ * <p>
+ * One write per line, with tab separated fields, escaped as in {@link FileJournalChangeSource}:
+ * </p>
+ *
+ * <pre>
+ * &lt;priority&gt; LOAD  &lt;PMC|OTHER&gt; &lt;name&gt; &lt;nlmta&gt; &lt;issn&gt;,&lt;issn&gt; &lt;A|&gt;
+ * &lt;priority&gt; CLEAR &lt;uri&gt;
+ * </pre>
+ * <p>
+ * A {@code LOAD} is a journal record, from a PMC or other source, that is matched again when it is loaded; a
+ * {@code CLEAR} clears the PMC participation of a journal dropped from the PMC list.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class DeferredWrites {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeferredWrites.class);
+
+    private DeferredWrites() {
+        //never called
+    }
+
+    /**
+     * A deferred write
+     */
+    static final class Entry {
+
+        final Priority priority;
+
+        /* Record to load, or null for a clear */
+        final Journal journal;
+
+        final boolean hasPmcParticipation;
+
+        /* Journal whose participation is to be cleared, or null for a load */
+        final String clearUri;
+
+        private Entry(Priority priority, Journal journal, boolean hasPmcParticipation, String clearUri) {
+            this.priority = priority;
+            this.journal = journal;
+            this.hasPmcParticipation = hasPmcParticipation;
+            this.clearUri = clearUri;
+        }
+
+        /**
+         * @param priority            priority of the write
+         * @param journal             the journal record, without a URI
+         * @param hasPmcParticipation whether the record came from a PMC source
+         * @return entry loading the record again
+         */
+        static Entry load(Priority priority, Journal journal, boolean hasPmcParticipation) {
+            return new Entry(priority, journal, hasPmcParticipation, null);
+        }
+
+        /**
+         * @param uri journal to clear
+         * @return entry clearing the journal's PMC participation
+         */
+        static Entry clear(String uri) {
+            return new Entry(Priority.PARTICIPATION, null, true, uri);
+        }
+
+        String format() {
+            if (clearUri != null) {
+                return priority + "\tCLEAR\t" + escape(clearUri);
+            }
+            return priority + "\tLOAD\t" + (hasPmcParticipation ? "PMC" : "OTHER") + "\t" +
+                   escape(journal.getJournalName()) + "\t" + escape(journal.getNlmta()) + "\t" +
+                   escape(String.join(",", journal.getIssns())) + "\t" +
+                   (journal.getPmcParticipation() != null ? journal.getPmcParticipation().name() : "");
+        }
+
+        static Entry parse(String line) throws IOException {
+            final List<String> fields = fields(line);
+            try {
+                final Priority priority = Priority.valueOf(fields.get(0));
+                if (fields.size() == 3 && fields.get(1).equals("CLEAR")) {
+                    return new Entry(priority, null, true, fields.get(2));
+                } else if (fields.size() == 7 && fields.get(1).equals("LOAD")) {
+                    final Journal j = new Journal();
+                    j.setJournalName(emptyToNull(fields.get(3)));
+                    j.setNlmta(emptyToNull(fields.get(4)));
+                    if (!fields.get(5).isEmpty()) {
+                        j.getIssns().addAll(Arrays.asList(fields.get(5).split(",")));
+                    }
+                    if (!fields.get(6).isEmpty()) {
+                        j.setPmcParticipation(PmcParticipation.valueOf(fields.get(6)));
+                    }
+                    return new Entry(priority, j, fields.get(2).equals("PMC"), null);
+                }
+            } catch (final IllegalArgumentException e) {
+                throw new IOException("Invalid deferred write: " + line, e);
+            }
+            throw new IOException("Invalid deferred write: " + line);
+        }
+    }
+
+    /**
+     * Read deferred writes. Lines that cannot be parsed are skipped.
+     *
+     * @param file the file
+     * @return the writes, in file order; none if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    static List<Entry> read(Path file) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    entries.add(Entry.parse(line));
+                } catch (final IOException e) {
+                    LOG.warn("Skipping bad line in {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Replace the file with the given writes, or delete it if there are none. The file is replaced atomically, so
+     * it always holds either the old or the new writes.
+     *
+     * @param file    the file
+     * @param entries the writes
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, Collection<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        final Path dir = file.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, UTF_8)) {
+                for (final Entry entry : entries) {
+                    writer.write(entry.format());
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+
+/**
+ * Finds clusters of journals that are likely duplicates of one another, because they share ISSNs, NLMTAs or names,
+ * directly or through other journals. ISSNs are compared without their {@code Print:} or {@code Online:} type.
+ * <p>
+ * Postings are fed in one at a time, and journals sharing a key are merged with union-find (union by size, with path
+ * halving), so clustering takes near-linear time in the number of postings. Journals are numbered as they are first
+ * seen. To keep millions of journals to a few primitive arrays, URIs and keys are looked up by 64-bit hash rather
+ * than kept as strings, except for the keys that are shared; the chance of two distinct values colliding is
+ * negligible.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class DuplicateClusters implements BatchJournalFinder.PostingSink {
+
+    private final Set<Field> fields;
+
+    private final LongIntMap ids = new LongIntMap();
+
+    private String[] uris = new String[1024];
+
+    private int[] parent = new int[1024];
+
+    private int[] size = new int[1024];
+
+    /* First journal seen with each key, by field */
+    private final Map<Field, LongIntMap> firstByKey = new EnumMap<>(Field.class);
+
+    /* Keys that linked journals, in the order they did so, with the first journal to hold each */
+    private final List<String> sharedKeys = new ArrayList<>();
+
+    private int[] sharedBy = new int[64];
+
+    private String lastUri;
+
+    private int lastId;
+
+    /**
+     * A cluster of likely duplicate journals
+     */
+    static final class Cluster {
+
+        final List<String> uris = new ArrayList<>();
+
+        final List<String> keys = new ArrayList<>();
+    }
+
+    /**
+     * @param fields fields whose shared values link journals
+     */
+    DuplicateClusters(Set<Field> fields) {
+        this.fields = fields;
+        for (final Field field : fields) {
+            firstByKey.put(field, new LongIntMap());
+        }
+    }
+
+    @Override
+    public void add(Field field, String key, String uri) {
+        if (!fields.contains(field)) {
+            return;
+        }
+
+        //ISSNs link journals whatever their type, as the finder matches them
+        final String shared = field == Field.ISSN ? bareIssn(key) : key;
+        final int id = id(uri);
+        final int first = firstByKey.get(field).putIfAbsent(LongIntMap.hash(shared), id);
+        if (first != LongIntMap.ABSENT && first != id && union(first, id)) {
+            if (sharedKeys.size() == sharedBy.length) {
+                sharedBy = Arrays.copyOf(sharedBy, sharedBy.length * 2);
+            }
+            sharedBy[sharedKeys.size()] = first;
+            sharedKeys.add(field + " " + shared);
+        }
+    }
+
+    /**
+     * @return number of distinct journals seen
+     */
+    int journals() {
+        return ids.size();
+    }
+
+    /**
+     * Compute the clusters, largest first. Clusters of the same size are in the order their first journal was seen.
+     *
+     * @param minSize smallest cluster to return
+     * @return the clusters
+     */
+    List<Cluster> clusters(int minSize) {
+        final Map<Integer, Cluster> byRoot = new HashMap<>();
+        final List<Cluster> clusters = new ArrayList<>();
+
+        for (int i = 0; i < ids.size(); i++) {
+            final int root = find(i);
+            if (size[root] >= minSize) {
+                byRoot.computeIfAbsent(root, r -> {
+                    final Cluster c = new Cluster();
+                    clusters.add(c);
+                    return c;
+                }).uris.add(uris[i]);
+            }
+        }
+
+        for (int i = 0; i < sharedKeys.size(); i++) {
+            final Cluster cluster = byRoot.get(find(sharedBy[i]));
+            if (cluster != null) {
+                cluster.keys.add(sharedKeys.get(i));
+            }
+        }
+
+        clusters.sort(Comparator.comparingInt((Cluster c) -> c.uris.size()).reversed());
+        return clusters;
+    }
+
+    /**
+     * Write clusters as JSON lines, largest first, e.g.
+     * {@code {"size":2,"uris":["...","..."],"keys":["ISSN 1234-5678"]}}. The keys are those that first linked
+     * journals in the cluster; a cluster may share more.
+     *
+     * @param out     where to write
+     * @param minSize smallest cluster to write
+     * @return number of clusters written
+     * @throws IOException if the clusters cannot be written
+     */
+    int write(Writer out, int minSize) throws IOException {
+        final List<Cluster> clusters = clusters(minSize);
+        final StringBuilder json = new StringBuilder();
+        for (final Cluster cluster : clusters) {
+            json.setLength(0);
+            json.append("{\"size\":").append(cluster.uris.size()).append(",\"uris\":");
+            array(json, cluster.uris);
+            json.append(",\"keys\":");
+            array(json, cluster.keys);
+            json.append("}\n");
+            out.append(json);
+        }
+        out.flush();
+        return clusters.size();
+    }
+
+    private static void array(StringBuilder json, List<String> values) {
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            JournalLookupService.string(json, values.get(i));
+        }
+        json.append(']');
+    }
+
+    private static String bareIssn(String issn) {
+        final int colon = issn.indexOf(':');
+        return colon >= 0 ? issn.substring(colon + 1) : issn;
+    }
+
+    private int id(String uri) {
+        //postings of a journal usually arrive together
+        if (uri.equals(lastUri)) {
+            return lastId;
+        }
+        lastUri = uri;
+        lastId = number(uri);
+        return lastId;
+    }
+
+    private int number(String uri) {
+        final int id = ids.size();
+        final int existing = ids.putIfAbsent(LongIntMap.hash(uri), id);
+        if (existing != LongIntMap.ABSENT) {
+            return existing;
+        }
+
+        if (id == parent.length) {
+            final int capacity = id * 2;
+            uris = Arrays.copyOf(uris, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+        uris[id] = uri;
+        parent[id] = id;
+        size[id] = 1;
+        return id;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /* Merge the clusters of two journals, returning false if they were already in the same cluster */
+    private boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (size[rootA] < size[rootB]) {
+            final int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.dataconservancy.pass.client.adapter.PassJsonAdapterBasic;
+import org.dataconservancy.pass.client.fedora.FedoraConfig;
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * Performs journal operations with JSON-LD requests straight to Fedora, over the shared {@link HttpTransport}, so
+ * that they use the same pooled, kept alive connections as the rest of the loader.
+ *
+ * @author apb@jhu.edu
+ */
+public class FedoraJournalRepository implements JournalRepository {
+
+    private static final ContentType JSON_LD = ContentType.create("application/ld+json");
+
+    /* Compacted against the PASS context, the form the JSON adapter reads */
+    private static final String ACCEPT_COMPACTED =
+        "application/ld+json; profile=\"http://www.w3.org/ns/json-ld#compacted\"";
+
+    private static final String OMIT_SERVER_MANAGED =
+        "return=representation; omit=\"http://fedora.info/definitions/v4/repository#ServerManaged\"";
+
+    private final PassJsonAdapterBasic json = new PassJsonAdapterBasic();
+
+    private final String container;
+
+    public FedoraJournalRepository() {
+        this(FedoraConfig.getBaseUrl() + "journals");
+    }
+
+    /**
+     * @param container URL of the journals container
+     */
+    FedoraJournalRepository(String container) {
+        this.container = container;
+    }
+
+    @Override
+    public URI create(Journal j) {
+        final HttpPost post = new HttpPost(container);
+        post.setEntity(new ByteArrayEntity(json.toJson(j, true), JSON_LD));
+
+        return execute(post, "create journal in " + container, response -> {
+            final Header location = response.getFirstHeader("Location");
+            if (response.getStatusLine().getStatusCode() != 201 || location == null) {
+                throw new RuntimeException("Could not create journal in " + container + ": " +
+                                           response.getStatusLine());
+            }
+            return URI.create(location.getValue());
+        });
+    }
+
+    @Override
+    public Journal read(URI uri) {
+        final HttpGet get = new HttpGet(uri);
+        get.setHeader("Accept", ACCEPT_COMPACTED);
+        get.setHeader("Prefer", OMIT_SERVER_MANAGED);
+
+        return execute(get, "read journal " + uri, response -> {
+            final int status = response.getStatusLine().getStatusCode();
+            if (status == 404 || status == 410) {
+                return null;
+            } else if (status != 200) {
+                throw new RuntimeException("Could not read journal " + uri + ": " + response.getStatusLine());
+            }
+            final Journal j = json.toModel(EntityUtils.toByteArray(response.getEntity()), Journal.class);
+            j.setId(uri);
+            return j;
+        });
+    }
+
+    @Override
+    public void update(Journal j) {
+        final HttpPut put = new HttpPut(j.getId());
+        put.setHeader("Prefer", "handling=lenient; received=\"minimal\"");
+        put.setEntity(new ByteArrayEntity(json.toJson(j, true), JSON_LD));
+
+        execute(put, "update journal " + j.getId(), response -> {
+            final int status = response.getStatusLine().getStatusCode();
+            if (status != 204 && status != 200) {
+                throw new RuntimeException("Could not update journal " + j.getId() + ": " + response.getStatusLine());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public URI journalUri(String name) {
+        return URI.create(container + "/" + name);
+    }
+
+    @Override
+    public boolean createIfAbsent(URI uri, Journal j) {
+        final Journal toCreate = new Journal(j);
+        toCreate.setId(uri);
+
+        final HttpPut put = new HttpPut(uri);
+        put.setHeader("If-None-Match", "*");
+        put.setEntity(new ByteArrayEntity(json.toJson(toCreate, true), JSON_LD));
+
+        return execute(put, "create journal at " + uri, response -> {
+            final int status = response.getStatusLine().getStatusCode();
+            if (status == 201 || status == 204) {
+                return true;
+            } else if (status == 412) {
+                return false;
+            }
+            throw new RuntimeException("Could not create journal at " + uri + ": " + response.getStatusLine());
+        });
+    }
+
+    /* Handles a response, before its connection is returned to the pool */
+    private interface Handler<T> {
+
+        T handle(HttpResponse response) throws IOException;
+    }
+
+    /* Executes a request, consuming whatever of the response the handler leaves so the connection can be reused */
+    private static <T> T execute(HttpUriRequest request, String description, Handler<T> handler) {
+        try (CloseableHttpResponse response = HttpTransport.client().execute(request)) {
+            try {
+                return handler.handle(response);
+            } finally {
+                EntityUtils.consume(response.getEntity());
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not " + description, e);
+        }
+    }
+}
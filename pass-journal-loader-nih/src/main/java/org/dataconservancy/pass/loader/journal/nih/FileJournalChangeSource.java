@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dataconservancy.pass.model.PmcParticipation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads journal changes appended to a file, as a stand-in for a message broker.
+ * <p>
+ * Each line is one change, with tab separated fields: sequence number, type ({@code CREATED}, {@code UPDATED} or
+ * {@code DELETED}), URI, name, NLMTA, comma separated ISSNs, and PMC participation. Empty fields are null; lines
+ * without the last field, written before it was added, have no PMC participation. Tabs, newlines and
+ * backslashes within fields are escaped with a backslash, see {@link #format(JournalChange)}. The file is followed as
+ * it grows, like {@code tail -f}; if it is truncated, it is read again from the start.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class FileJournalChangeSource implements JournalChangeSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileJournalChangeSource.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    private final Path file;
+
+    private FileChannel channel;
+
+    private long position;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+
+    private final Deque<JournalChange> ready = new ArrayDeque<>();
+
+    /**
+     * @param file file of changes, which need not exist yet
+     */
+    FileJournalChangeSource(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized JournalChange next(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (ready.isEmpty()) {
+            read();
+            if (!ready.isEmpty()) {
+                break;
+            }
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            Thread.sleep(Math.min(remaining, POLL_MILLIS));
+        }
+        return ready.poll();
+    }
+
+    /* Parse any complete lines appended since the last read */
+    private void read() throws IOException {
+        if (channel == null) {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (final NoSuchFileException e) {
+                return;
+            }
+        }
+
+        if (channel.size() < position) {
+            LOG.warn("{} was truncated, reading it again from the start", file);
+            position = 0;
+            partial.reset();
+        }
+
+        for (int n = channel.read(buffer, position); n > 0; n = channel.read(buffer, position)) {
+            position += n;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    final String line = new String(partial.toByteArray(), UTF_8);
+                    partial.reset();
+                    if (!line.trim().isEmpty()) {
+                        parseInto(line);
+                    }
+                } else {
+                    partial.write(b);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    /* A bad line is skipped; the gap it leaves in the sequence triggers a resync */
+    private void parseInto(String line) {
+        try {
+            ready.add(parse(line));
+        } catch (final IOException e) {
+            LOG.warn("Skipping bad line in {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a line of the file.
+     *
+     * @param line the line, without its newline
+     * @return the change
+     * @throws IOException if the line is not a valid change
+     */
+    static JournalChange parse(String line) throws IOException {
+        final List<String> fields = fields(line);
+
+        if (fields.size() != 6 && fields.size() != 7) {
+            throw new IOException("Expected 6 or 7 fields in journal change, found " + fields.size() + ": " + line);
+        }
+
+        try {
+            final String issns = fields.get(5);
+            final String pmcParticipation = fields.size() > 6 ? fields.get(6) : "";
+            return new JournalChange(Long.parseLong(fields.get(0)),
+                                     JournalChange.Type.valueOf(fields.get(1)),
+                                     fields.get(2),
+                                     emptyToNull(fields.get(3)),
+                                     emptyToNull(fields.get(4)),
+                                     issns.isEmpty() ? null : Arrays.asList(issns.split(",")),
+                                     pmcParticipation.isEmpty() ? null : PmcParticipation.valueOf(pmcParticipation));
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Invalid journal change: " + line, e);
+        }
+    }
+
+    /**
+     * Split a line of tab separated fields, unescaping each field.
+     *
+     * @param line the line, without its newline
+     * @return the fields
+     */
+    static List<String> fields(String line) {
+        final List<String> fields = new ArrayList<>(8);
+        final StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                final char escaped = line.charAt(++i);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped);
+            } else if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Format a change as a line of the file.
+     *
+     * @param change the change
+     * @return the line, without a newline
+     */
+    static String format(JournalChange change) {
+        return change.sequence + "\t" + change.type + "\t" + escape(change.uri) + "\t" + escape(change.name) + "\t" +
+               escape(change.nlmta) + "\t" + escape(String.join(",", change.issns)) + "\t" +
+               (change.pmcParticipation != null ? change.pmcParticipation.name() : "");
+    }
+
+    /**
+     * @param value a field, or null
+     * @return the field escaped for a line of tab separated fields, empty if null
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Append changes to a file.
+     *
+     * @param file    the file, created if it does not exist
+     * @param changes the changes
+     * @throws IOException if the file cannot be written
+     */
+    static void append(Path file, JournalChange... changes) throws IOException {
+        final StringBuilder lines = new StringBuilder();
+        for (final JournalChange change : changes) {
+            lines.append(format(change)).append('\n');
+        }
+        Files.write(file, lines.toString().getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
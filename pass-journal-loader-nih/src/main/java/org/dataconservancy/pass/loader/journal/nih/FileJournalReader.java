@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * A journal reader that can read directly from a file, rather than a stream.
+ *
+ * @author apb@jhu.edu
+ */
+public interface FileJournalReader extends JournalReader {
+
+    /**
+     * Read journals from a file. The stream must be closed in order to release the file.
+     *
+     * @param file the file
+     * @return stream of journals
+     * @throws IOException if the file cannot be opened
+     */
+    Stream<Journal> readJournals(Path file) throws IOException;
+
+    /**
+     * Read journal records from a file. The stream must be closed in order to release the file.
+     *
+     * @param file the file
+     * @return stream of records
+     * @throws IOException if the file cannot be opened
+     */
+    default Stream<JournalRecord> readRecords(Path file) throws IOException {
+        return readJournals(file).map(JournalRecord::of);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+/**
+ * A compact set of 64-bit fingerprints, stored in an open-addressed table of longs.
+ *
+ * @author apb@jhu.edu
+ */
+final class FingerprintSet {
+
+    /* Stands in for a fingerprint of zero, which marks an empty slot */
+    private static final long ZERO = 0x9E3779B97F4A7C15L;
+
+    private long[] table;
+
+    private int size;
+
+    FingerprintSet() {
+        this(1024);
+    }
+
+    FingerprintSet(int capacity) {
+        table = new long[Integer.highestOneBit(Math.max(capacity, 16) * 2 - 1)];
+    }
+
+    /**
+     * Add a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if it was not already present
+     */
+    boolean add(long fingerprint) {
+        final long f = fingerprint == 0 ? ZERO : fingerprint;
+
+        final int mask = table.length - 1;
+        int i = (int) (mix(f) & mask);
+        while (table[i] != 0) {
+            if (table[i] == f) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        table[i] = f;
+        if (++size > table.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @param fingerprint the fingerprint
+     * @return whether the fingerprint is present
+     */
+    boolean contains(long fingerprint) {
+        final long f = fingerprint == 0 ? ZERO : fingerprint;
+
+        final int mask = table.length - 1;
+        for (int i = (int) (mix(f) & mask); table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == f) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] old = table;
+        table = new long[old.length * 2];
+        size = 0;
+        for (final long f : old) {
+            if (f != 0) {
+                add(f);
+            }
+        }
+    }
+
+    /**
+     * Fingerprint a sequence of strings, any of which may be null.
+     *
+     * @param values the strings
+     * @return 64-bit fingerprint
+     */
+    static long fingerprint(String... values) {
+        long h = 0xcbf29ce484222325L;
+        for (final String value : values) {
+            if (value == null) {
+                h = (h ^ 0xffff) * 0x100000001b3L;
+            } else {
+                for (int i = 0; i < value.length(); i++) {
+                    h = (h ^ value.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            // Separator, so that ("ab", "c") and ("a", "bc") differ
+            h = (h ^ 0xfffe) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /* Final mix of MurmurHash3 */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps all postings in hash maps on the heap
+ *
+ * @author apb@jhu.edu
+ */
+public class HeapJournalIndex implements JournalIndex {
+
+    private final Map<Field, Map<String, Set<String>>> postings = new EnumMap<>(Field.class);
+
+    public HeapJournalIndex() {
+        for (final Field field : Field.values()) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    @Override
+    public Set<String> get(Field field, String key) {
+        return postings.get(field).get(key);
+    }
+
+    @Override
+    public void add(Field field, String key, String uri) {
+        postings.get(field).computeIfAbsent(key, k -> new HashSet<>()).add(uri);
+    }
+
+    @Override
+    public void remove(Field field, String key, String uri) {
+        final Set<String> uris = postings.get(field).get(key);
+        if (uris != null && uris.remove(uri) && uris.isEmpty()) {
+            postings.get(field).remove(key);
+        }
+    }
+
+    @Override
+    public int size(Field field) {
+        return postings.get(field).size();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.dataconservancy.pass.client.util.ConfigUtil.getSystemProperty;
+
+import java.net.URI;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.dataconservancy.pass.client.fedora.FedoraConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP client shared by everything the loader sends to Fedora directly.
+ * <p>
+ * Connections are pooled and kept alive between requests, so connection setup is paid once per connection rather
+ * than once per request. Responses compressed with gzip or deflate are decoded, and compression is requested, which
+ * shrinks the very repetitive N-Triples dump of the journals container many times over. Fedora credentials are sent
+ * with every request to Fedora, rather than only after a challenge, saving a round trip per request. Tunable with
+ * system properties or environment variables:
+ * </p>
+ * <dl>
+ * <dt>{@code http.maxConnections}</dt>
+ * <dd>Maximum open connections in total. Defaults to 64</dd>
+ * <dt>{@code http.maxConnectionsPerRoute}</dt>
+ * <dd>Maximum open connections to one host. Defaults to 32</dd>
+ * <dt>{@code http.connectTimeout}</dt>
+ * <dd>Milliseconds to wait for a connection to be established. Defaults to 10000</dd>
+ * <dt>{@code http.socketTimeout}</dt>
+ * <dd>Milliseconds to wait for data. Defaults to 300000, as the container dump may take a while to start</dd>
+ * <dt>{@code http.poolTimeout}</dt>
+ * <dd>Milliseconds to wait for a pooled connection to become free. Defaults to 60000</dd>
+ * <dt>{@code http.keepAlive}</dt>
+ * <dd>Seconds to keep an idle connection open, unless the server asks for less. Defaults to 60</dd>
+ * </dl>
+ *
+ * @author apb@jhu.edu
+ */
+final class HttpTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpTransport.class);
+
+    private static CloseableHttpClient client;
+
+    private HttpTransport() {
+        //never called
+    }
+
+    /**
+     * @return the shared client, which must not be closed
+     */
+    static synchronized CloseableHttpClient client() {
+        if (client == null) {
+            client = create();
+        }
+        return client;
+    }
+
+    private static CloseableHttpClient create() {
+        final int maxConnections = Integer.parseInt(getSystemProperty("http.maxConnections", "64"));
+        final int maxPerRoute = Integer.parseInt(getSystemProperty("http.maxConnectionsPerRoute", "32"));
+        final long keepAliveMillis = TimeUnit.SECONDS.toMillis(
+            Long.parseLong(getSystemProperty("http.keepAlive", "60")));
+
+        final PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(keepAliveMillis,
+                                                                                               TimeUnit.MILLISECONDS);
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(maxPerRoute);
+        pool.setValidateAfterInactivity(2000);
+
+        final RequestConfig config = RequestConfig.custom()
+            .setConnectTimeout(Integer.parseInt(getSystemProperty("http.connectTimeout", "10000")))
+            .setSocketTimeout(Integer.parseInt(getSystemProperty("http.socketTimeout", "300000")))
+            .setConnectionRequestTimeout(Integer.parseInt(getSystemProperty("http.poolTimeout", "60000")))
+            .setContentCompressionEnabled(true)
+            .build();
+
+        LOG.debug("HTTP transport: {} connections, {} per route, keep alive {} ms", maxConnections, maxPerRoute,
+                  keepAliveMillis);
+
+        final HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(pool)
+            .setDefaultRequestConfig(config)
+            .setKeepAliveStrategy((response, context) -> {
+                final long server = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+                                                                                                     context);
+                return server > 0 ? Math.min(server, keepAliveMillis) : keepAliveMillis;
+            })
+            .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS);
+
+        final String user = FedoraConfig.getUserName();
+        if (user != null) {
+            final BasicCredentialsProvider credentials = new BasicCredentialsProvider();
+            credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user,
+                                                                                     FedoraConfig.getPassword()));
+            builder.setDefaultCredentialsProvider(credentials);
+
+            final HttpHost fedora = host(URI.create(FedoraConfig.getBaseUrl()));
+            final String authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (user + ":" + FedoraConfig.getPassword()).getBytes(UTF_8));
+
+            builder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+                if (fedora.equals(HttpClientContext.adapt(context).getTargetHost()) &&
+                    !request.containsHeader("Authorization")) {
+                    request.addHeader("Authorization", authorization);
+                }
+            });
+        }
+
+        return builder.build();
+    }
+
+    private static HttpHost host(URI uri) {
+        final int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+        return new HttpHost(uri.getHost(), port, uri.getScheme());
+    }
+}
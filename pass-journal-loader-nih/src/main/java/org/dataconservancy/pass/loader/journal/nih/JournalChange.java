@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.dataconservancy.pass.model.PmcParticipation;
+
+/**
+ * A change to a journal in the repository, as announced by a {@link JournalChangeSource}.
+ * <p>
+ * Changes are numbered consecutively by their source. A created or updated journal carries its full indexed state
+ * after the change, so applying the same change twice has the same effect as applying it once.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class JournalChange {
+
+    /**
+     * Kinds of change
+     */
+    enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    final long sequence;
+
+    final Type type;
+
+    final String uri;
+
+    final String name;
+
+    final String nlmta;
+
+    final List<String> issns;
+
+    final PmcParticipation pmcParticipation;
+
+    /**
+     * @param sequence         number of the change, one more than the change before it
+     * @param type             kind of change
+     * @param uri              URI of the journal
+     * @param name             name of the journal after the change, null if deleted
+     * @param nlmta            NLMTA of the journal after the change, null if deleted
+     * @param issns            ISSNs of the journal after the change, empty if deleted
+     * @param pmcParticipation PMC participation of the journal after the change, null if none or deleted
+     */
+    JournalChange(long sequence, Type type, String uri, String name, String nlmta, List<String> issns,
+                  PmcParticipation pmcParticipation) {
+        this.sequence = sequence;
+        this.type = type;
+        this.uri = uri;
+        this.name = name;
+        this.nlmta = nlmta;
+        this.issns = issns != null ? issns : Collections.emptyList();
+        this.pmcParticipation = pmcParticipation;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalChange [" + sequence + " " + type + " " + uri + "]";
+    }
+}
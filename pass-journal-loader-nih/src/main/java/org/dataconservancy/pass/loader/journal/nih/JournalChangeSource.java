@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of repository journal changes, e.g. a message broker subscription.
+ *
+ * @author apb@jhu.edu
+ */
+interface JournalChangeSource extends Closeable {
+
+    /**
+     * Wait for the next change.
+     *
+     * @param timeout how long to wait
+     * @param unit    unit of the timeout
+     * @return the change, or null if there was none before the timeout
+     * @throws IOException          if the source cannot be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    JournalChange next(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.List;
+
+/**
+ * Recognizes journal records that repeat ones already seen in a run, so that they need not be matched.
+ * <p>
+ * A record is identified by its NLMTA and name, and each of its ISSNs is associated with that identity. A record is a
+ * duplicate if its identity has been seen with all of its ISSNs, e.g. an exact repeat, or an alias entry listing a
+ * subset of the ISSNs. Only fingerprints are kept, not the records.
+ * </p>
+ * <p>
+ * ISSNs are compared without their {@code Print:} or {@code Online:} type, so an alias giving an ISSN without its type
+ * is a duplicate, and so is a record that only gives an ISSN a different type.
+ * </p>
+ * <p>
+ * A record that brings ISSNs not yet seen for its identity is not a duplicate, and is matched as usual. Its ISSNs are
+ * not merged into the records seen before it: if the journal it matches was already claimed in this run, e.g. by the
+ * record it extends, it is reported as already matched, and its extra ISSNs are not written.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class JournalDeduplicator {
+
+    private final FingerprintSet seen = new FingerprintSet();
+
+    /**
+     * Record a journal as seen.
+     *
+     * @param j the journal record
+     * @return true if it repeats journals already seen
+     */
+    synchronized boolean isDuplicate(JournalRecord j) {
+        final String nlmta = j.nlmta();
+        final String name = j.name();
+
+        final boolean newIdentity = seen.add(FingerprintSet.fingerprint(nlmta, name));
+
+        boolean newIssn = false;
+        final List<String> issns = j.issns();
+        for (int i = 0; i < issns.size(); i++) {
+            newIssn |= seen.add(FingerprintSet.fingerprint(nlmta, name, bare(issns.get(i))));
+        }
+
+        return !newIdentity && !newIssn;
+    }
+
+    int size() {
+        return seen.size();
+    }
+
+    private static String bare(String issn) {
+        final int colon = issn.indexOf(':');
+        return (colon >= 0 ? issn.substring(colon + 1) : issn).trim().toUpperCase();
+    }
+}
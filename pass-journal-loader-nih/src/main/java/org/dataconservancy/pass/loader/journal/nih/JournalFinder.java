@@ -16,7 +16,9 @@
 
 package org.dataconservancy.pass.loader.journal.nih;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.dataconservancy.pass.model.Journal;
 
@@ -28,4 +30,52 @@ public interface JournalFinder {
     String find(String nlmta, String name, List<String> issns);
 
     void add(Journal j);
+
+    /**
+     * Start a new run: journals matched so far may be matched again. Journals that have been added are kept.
+     */
+    void reset();
+
+    /**
+     * Score how well a journal matches incoming journal data, as {@link #find(String, String, List)} would, without
+     * claiming it.
+     *
+     * @param uri   URI of the journal
+     * @param nlmta the NLMTA
+     * @param name  the journal name
+     * @param issns the list of issns
+     * @return the score, or null if the journal does not match at all or the finder does not score matches
+     */
+    default Integer score(String uri, String nlmta, String name, List<String> issns) {
+        return null;
+    }
+
+    /**
+     * Find the journals that incoming journal data matches best, whether or not they have been claimed already,
+     * without claiming them.
+     *
+     * @param nlmta the NLMTA
+     * @param name  the journal name
+     * @param issns the list of issns
+     * @return URIs of the best matching journals, none if no journal qualifies or the finder does not score matches
+     */
+    default Set<String> bestMatches(String nlmta, String name, List<String> issns) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Stop matching a journal, e.g. when it turns out to have been deleted from the repository. Forgetting a journal
+     * the finder does not know has no effect.
+     *
+     * @param uri URI of the journal
+     */
+    default void forget(String uri) {
+    }
+
+    /**
+     * @return URIs of the journals known to have type A PMC participation, or none if the finder does not know
+     */
+    default Set<String> pmcParticipants() {
+        return Collections.emptySet();
+    }
 }
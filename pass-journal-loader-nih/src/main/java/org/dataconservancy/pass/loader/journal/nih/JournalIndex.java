@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Set;
+
+/**
+ * Postings from journal identifiers to the URIs of repository journals having them, used by
+ * {@link BatchJournalFinder} to match incoming journals.
+ *
+ * @author apb@jhu.edu
+ */
+public interface JournalIndex {
+
+    /**
+     * Kinds of journal identifier
+     */
+    enum Field {
+        ISSN,
+        NLMTA,
+        NAME
+    }
+
+    /**
+     * @param field kind of identifier
+     * @param key   identifier
+     * @return URIs of journals with the identifier, or null if there are none
+     */
+    Set<String> get(Field field, String key);
+
+    /**
+     * @param field kind of identifier
+     * @param key   identifier
+     * @param uri   URI of a journal with the identifier
+     */
+    void add(Field field, String key, String uri);
+
+    /**
+     * Remove a posting, if present.
+     *
+     * @param field kind of identifier
+     * @param key   identifier
+     * @param uri   URI of a journal that no longer has the identifier
+     */
+    void remove(Field field, String key, String uri);
+
+    /**
+     * @param field kind of identifier
+     * @return number of distinct identifiers of that kind
+     */
+    int size(Field field);
+
+    /**
+     * Called once the initial contents of the repository have been added, before lookups begin
+     */
+    default void loaded() {
+    }
+}
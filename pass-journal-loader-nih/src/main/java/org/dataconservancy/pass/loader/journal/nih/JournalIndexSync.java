@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a finder's index up to date by applying journal changes as they are announced.
+ * <p>
+ * Changes are applied in sequence order. A change that has already been applied (same or lower sequence number) is
+ * ignored, so redelivered changes are harmless. If a change arrives with a gap before it, changes have been missed,
+ * so the whole index is resynced against the repository instead; the resync includes the effect of the change that
+ * revealed the gap. If the resync fails, the next change tries again.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class JournalIndexSync implements Runnable, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalIndexSync.class);
+
+    /* No change has been seen yet */
+    static final long NONE = -1;
+
+    private final JournalChangeSource source;
+
+    private final BatchJournalFinder finder;
+
+    private final Resync resync;
+
+    private volatile boolean closed;
+
+    private long lastSequence = NONE;
+
+    private long applied;
+
+    private long resyncs;
+
+    /**
+     * Brings the whole index in line with the repository
+     */
+    interface Resync {
+
+        void resync(BatchJournalFinder finder) throws IOException;
+    }
+
+    /**
+     * @param source source of journal changes
+     * @param finder finder to keep up to date, which must be tracking changes
+     * @param resync how to resync the finder when changes have been missed
+     */
+    JournalIndexSync(JournalChangeSource source, BatchJournalFinder finder, Resync resync) {
+        this.source = source;
+        this.finder = finder;
+        this.resync = resync;
+    }
+
+    /**
+     * Apply a change, or resync if changes before it were missed.
+     *
+     * @param change the change
+     */
+    synchronized void accept(JournalChange change) {
+        if (lastSequence != NONE && change.sequence <= lastSequence) {
+            LOG.debug("Ignoring already applied {}", change);
+            return;
+        }
+
+        if (lastSequence != NONE && change.sequence > lastSequence + 1) {
+            LOG.warn("Missed journal changes {} to {}, resyncing index", lastSequence + 1, change.sequence - 1);
+            try {
+                resync.resync(finder);
+                resyncs++;
+            } catch (final Exception e) {
+                LOG.warn("Could not resync journal index, will try again on the next change", e);
+                return;
+            }
+            lastSequence = change.sequence;
+            return;
+        }
+
+        switch (change.type) {
+        case CREATED:
+        case UPDATED:
+            finder.replace(change.uri, change.nlmta, change.name, change.issns, change.pmcParticipation);
+            break;
+        case DELETED:
+            finder.remove(change.uri);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown change type " + change.type);
+        }
+
+        LOG.debug("Applied {}", change);
+        applied++;
+        lastSequence = change.sequence;
+    }
+
+    /**
+     * @return sequence number of the last change applied or covered by a resync, or {@link #NONE}
+     */
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return number of changes applied
+     */
+    synchronized long applied() {
+        return applied;
+    }
+
+    /**
+     * @return number of resyncs performed
+     */
+    synchronized long resyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Apply changes from the source until closed.
+     */
+    @Override
+    public void run() {
+        LOG.info("Syncing journal index with changes");
+        while (!closed) {
+            try {
+                final JournalChange change = source.next(1, TimeUnit.SECONDS);
+                if (change != null) {
+                    accept(change);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final IOException e) {
+                if (closed) {
+                    break;
+                }
+                LOG.warn("Could not read journal change", e);
+            }
+        }
+        LOG.info("Stopped syncing journal index after {} changes and {} resyncs", applied(), resyncs());
+    }
+
+    /**
+     * Stop applying changes, and close the source.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        source.close();
+    }
+}
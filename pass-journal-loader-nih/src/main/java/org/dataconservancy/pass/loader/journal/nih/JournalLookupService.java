@@ -0,0 +1,369 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers journal lookups by ISSN, NLMTA and name over HTTP, from an in-memory journal finder index.
+ * <p>
+ * Lookups score journals the same way as the loader, see {@link BatchJournalFinder#score(String, String, List)}, but
+ * never claim them. The index is built from the repository when the service is created, and rebuilt periodically; a
+ * rebuilt index replaces the old one in a single step, so lookups read an index that is never modified, without
+ * locking. If a rebuild fails, the old index continues to be used.
+ * </p>
+ * <dl>
+ * <dt>{@code GET /journals/lookup?issn=...&issn=...&nlmta=...&name=...&min=...}</dt>
+ * <dd>Journals matching the given ISSNs, NLMTA and name, with a score of at least {@code min} (by default, the score
+ * the loader needs to consider a journal a match), highest scores first: <code>{"matches":[{"uri":"...",
+ * "score":3}]}</code></dd>
+ * <dt>{@code POST /journals/lookup}</dt>
+ * <dd>Batch lookup. The body has one query string per line, as for a single lookup. The response is a JSON array of
+ * results, in the same order</dd>
+ * <dt>{@code GET /journals/status}</dt>
+ * <dd>Index sizes and when the index was last built</dd>
+ * </dl>
+ * <p>
+ * Run the JVM with {@code -Dsun.net.httpserver.nodelay=true}: without TCP_NODELAY, each small response waits on a
+ * delayed acknowledgement, adding ~40 ms per request.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class JournalLookupService implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalLookupService.class);
+
+    static final String LOOKUP_PATH = "/journals/lookup";
+
+    static final String STATUS_PATH = "/journals/status";
+
+    /**
+     * Builds a new index of the repository's journals
+     */
+    interface IndexLoader {
+
+        BatchJournalFinder load() throws Exception;
+    }
+
+    /* An index, and when it was built */
+    private static final class Snapshot {
+
+        final BatchJournalFinder finder;
+
+        final Instant built;
+
+        Snapshot(BatchJournalFinder finder, Instant built) {
+            this.finder = finder;
+            this.built = built;
+        }
+    }
+
+    /**
+     * A journal that matches a lookup
+     */
+    static final class Match {
+
+        final String uri;
+
+        final int score;
+
+        Match(String uri, int score) {
+            this.uri = uri;
+            this.score = score;
+        }
+    }
+
+    private final IndexLoader loader;
+
+    private volatile Snapshot snapshot;
+
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Create a service, and build its index.
+     *
+     * @param loader builds the index, now and on each refresh
+     * @throws Exception if the index cannot be built
+     */
+    JournalLookupService(IndexLoader loader) throws Exception {
+        this.loader = loader;
+        refresh();
+    }
+
+    /**
+     * Rebuild the index, and replace the one in use.
+     *
+     * @throws Exception if the index cannot be built, in which case the old one is kept
+     */
+    void refresh() throws Exception {
+        final long start = System.nanoTime();
+        final BatchJournalFinder finder = loader.load();
+        snapshot = new Snapshot(finder, Instant.now());
+        LOG.info("Indexed {} ISSNs, {} NLMTAs and {} names for lookup in {} ms", finder.size(Field.ISSN),
+                 finder.size(Field.NLMTA), finder.size(Field.NAME),
+                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Start answering lookups.
+     *
+     * @param address        address to listen on
+     * @param threads        number of threads answering requests
+     * @param refreshSeconds how often to rebuild the index, in seconds; never if zero or less
+     * @throws IOException if the server cannot be started
+     */
+    public void start(InetSocketAddress address, int threads, long refreshSeconds) throws IOException {
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "journal-lookup-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        server = HttpServer.create(address, 0);
+        server.createContext(LOOKUP_PATH, this::lookup);
+        server.createContext(STATUS_PATH, this::status);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Answering journal lookups at http://{}:{}{}", address.getHostString(), port(), LOOKUP_PATH);
+
+        if (refreshSeconds > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "journal-lookup-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (final Exception e) {
+                    LOG.warn("Could not refresh the lookup index, continuing with the index built at " +
+                             snapshot.built, e);
+                }
+            }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return port the service is listening on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Wait until the service is closed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Find the journals matching the given data.
+     *
+     * @param nlmta    NLMTA, may be null
+     * @param name     journal name, may be null
+     * @param issns    ISSNs, with or without type
+     * @param minScore minimum score of a match
+     * @return matches, highest score first, then by URI
+     */
+    List<Match> lookup(String nlmta, String name, List<String> issns, int minScore) {
+        final Map<String, Integer> scores = snapshot.finder.score(nlmta, name, issns);
+
+        final List<Match> matches = new ArrayList<>(scores.size());
+        for (final Map.Entry<String, Integer> score : scores.entrySet()) {
+            if (score.getValue() >= minScore) {
+                matches.add(new Match(score.getKey(), score.getValue()));
+            }
+        }
+
+        matches.sort((a, b) -> a.score != b.score ? Integer.compare(b.score, a.score) : a.uri.compareTo(b.uri));
+        return matches;
+    }
+
+    private void lookup(HttpExchange ex) throws IOException {
+        try {
+            final StringBuilder json = new StringBuilder();
+            if (ex.getRequestMethod().equals("GET")) {
+                lookup(ex.getRequestURI().getRawQuery(), json);
+            } else if (ex.getRequestMethod().equals("POST")) {
+                final BufferedReader body = new BufferedReader(new InputStreamReader(ex.getRequestBody(), UTF_8));
+                json.append('[');
+                boolean first = true;
+                for (String line = body.readLine(); line != null; line = body.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        if (!first) {
+                            json.append(',');
+                        }
+                        lookup(line.trim(), json);
+                        first = false;
+                    }
+                }
+                json.append(']');
+            } else {
+                respond(ex, 405, "{\"error\":\"Only GET and POST are supported\"}");
+                return;
+            }
+            respond(ex, 200, json.toString());
+        } catch (final IllegalArgumentException e) {
+            final StringBuilder json = new StringBuilder("{\"error\":");
+            string(json, e.getMessage());
+            respond(ex, 400, json.append('}').toString());
+        } catch (final RuntimeException e) {
+            failed(ex, e);
+        } finally {
+            ex.close();
+        }
+    }
+
+    /* Look up a single query string, appending the result */
+    private void lookup(String query, StringBuilder json) {
+        String nlmta = null;
+        String name = null;
+        final List<String> issns = new ArrayList<>(2);
+        int minScore = BatchJournalFinder.MINIMUM_QUALIFYING_SCORE;
+
+        if (query != null) {
+            for (final String param : query.split("&")) {
+                final int eq = param.indexOf('=');
+                final String key = eq >= 0 ? param.substring(0, eq) : param;
+                final String value = eq >= 0 ? URLDecoder.decode(param.substring(eq + 1), UTF_8) : "";
+                switch (key) {
+                case "issn":
+                    issns.add(value);
+                    break;
+                case "nlmta":
+                    nlmta = value;
+                    break;
+                case "name":
+                    name = value;
+                    break;
+                case "min":
+                    try {
+                        minScore = Integer.parseInt(value);
+                    } catch (final NumberFormatException e) {
+                        throw new IllegalArgumentException("min must be a number: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown parameter: " + key);
+                }
+            }
+        }
+
+        json.append("{\"matches\":[");
+        final List<Match> matches = lookup(nlmta, name, issns, minScore);
+        for (int i = 0; i < matches.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"uri\":");
+            string(json, matches.get(i).uri);
+            json.append(",\"score\":").append(matches.get(i).score).append('}');
+        }
+        json.append("]}");
+    }
+
+    private void status(HttpExchange ex) throws IOException {
+        try {
+            final Snapshot current = snapshot;
+            respond(ex, 200, "{\"issns\":" + current.finder.size(Field.ISSN) +
+                             ",\"nlmtas\":" + current.finder.size(Field.NLMTA) +
+                             ",\"names\":" + current.finder.size(Field.NAME) +
+                             ",\"built\":\"" + current.built + "\"}");
+        } catch (final RuntimeException e) {
+            failed(ex, e);
+        } finally {
+            ex.close();
+        }
+    }
+
+    /* Answer a request that could not be handled; the server would otherwise drop the connection without a reply */
+    private static void failed(HttpExchange ex, RuntimeException e) throws IOException {
+        LOG.warn("Could not answer " + ex.getRequestMethod() + " " + ex.getRequestURI(), e);
+        respond(ex, 500, "{\"error\":\"Internal error\"}");
+    }
+
+    private static void respond(HttpExchange ex, int status, String json) throws IOException {
+        final byte[] body = json.getBytes(UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /* Append a JSON string literal */
+    static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+        closed.countDown();
+    }
+}
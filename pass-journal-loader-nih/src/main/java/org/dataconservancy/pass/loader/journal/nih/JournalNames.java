@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Derives a stable name for a journal from its identifiers, so that the same journal is always created at the same
+ * URI.
+ * <p>
+ * The name is taken from the journal's canonical ISSN, the lowest of its ISSNs without any {@code Print:} or
+ * {@code Online:} prefix, e.g. {@code issn-1234-567x}; malformed ISSNs are digested to keep the name a safe path
+ * segment. Journals without ISSNs are named by a digest of their NLMTA, e.g. {@code nlmta-9f86d081884c7d65}.
+ * </p>
+ * <p>
+ * Names are not guaranteed unique: a journal whose ISSN was reassigned, or a different journal sharing an NLMTA digest,
+ * can have the same name. A journal already at the name is only taken to be the same journal if it matches the record
+ * as the finder would; otherwise the journal is created at a generated URI.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class JournalNames {
+
+    private JournalNames() {
+        //never called
+    }
+
+    /**
+     * @param j a journal record
+     * @return the journal's name, or null if it has neither ISSNs nor an NLMTA
+     */
+    static String name(JournalRecord j) {
+        String canonical = null;
+        for (final String issn : j.issns()) {
+            final String bare = issn.substring(issn.indexOf(':') + 1).trim().toLowerCase(Locale.ROOT);
+            if (!bare.isEmpty() && (canonical == null || bare.compareTo(canonical) < 0)) {
+                canonical = bare;
+            }
+        }
+        if (canonical != null) {
+            return "issn-" + (canonical.matches("[0-9]{4}-[0-9]{3}[0-9x]") ? canonical : digest(canonical));
+        }
+
+        if (j.nlmta() != null && !j.nlmta().isEmpty()) {
+            return "nlmta-" + digest(j.nlmta());
+        }
+        return null;
+    }
+
+    private static String digest(String value) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -29,5 +29,16 @@ public interface JournalReader {
 
     Stream<Journal> readJournals(InputStream source, Charset charset);
 
+    /**
+     * Read journal records, which are lighter than journals. Readers that parse records directly override this.
+     *
+     * @param source  the source
+     * @param charset the source's encoding
+     * @return stream of records
+     */
+    default Stream<JournalRecord> readRecords(InputStream source, Charset charset) {
+        return readJournals(source, charset).map(JournalRecord::of);
+    }
+
     boolean hasPmcParticipation();
 }
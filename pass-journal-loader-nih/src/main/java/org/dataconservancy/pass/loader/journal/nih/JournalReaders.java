@@ -0,0 +1,328 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of journal file formats, which detects the format of files and opens them with the appropriate reader.
+ * <p>
+ * Inputs may be files, directories (all files directly within them), or glob patterns such as
+ * {@code /data/pmc/*.csv.gz}. Formats are detected from the start of each file's (decompressed) content, and are
+ * tried in the order they were registered.
+ * </p>
+ * <p>
+ * Since the first source record to match a repository journal is the one used, sources are put in a deterministic
+ * order: by the priority of their format (lowest first), then by file name, descending, so that the latest of a
+ * series of dated files is matched first.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class JournalReaders {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalReaders.class);
+
+    /* How much of a file is examined to detect its format */
+    private static final int HEAD_SIZE = 8192;
+
+    private final List<Format> formats = new ArrayList<>();
+
+    /**
+     * A format of journal file.
+     */
+    static final class Format {
+
+        final String name;
+
+        final int priority;
+
+        final Predicate<String> detector;
+
+        final Supplier<JournalReader> reader;
+
+        /**
+         * @param name     name of the format
+         * @param priority order in which files of this format are loaded, lowest first
+         * @param detector whether the start of a file is of this format
+         * @param reader   creates readers for this format
+         */
+        Format(String name, int priority, Predicate<String> detector, Supplier<JournalReader> reader) {
+            this.name = name;
+            this.priority = priority;
+            this.detector = detector;
+            this.reader = reader;
+        }
+    }
+
+    /**
+     * Registry of the PMC type A, Medline and NLM Catalog formats, in that priority.
+     *
+     * @param mmap     whether to use memory-mapped readers, where available
+     * @param parallel whether memory-mapped readers parse in parallel
+     * @return the registry
+     */
+    public static JournalReaders defaults(boolean mmap, boolean parallel) {
+        final JournalReaders readers = new JournalReaders();
+
+        readers.register(new Format("nlmCatalog", 2, head -> head.contains("<NLMCatalogRecord"),
+                                    NlmCatalogReader::new));
+
+        readers.register(new Format("medline", 1, head -> firstLine(head).contains("----") ||
+                                                          firstLine(head).startsWith("JrId:"), () -> {
+                                                              if (mmap) {
+                                                                  final MappedMedlineReader mapped =
+                                                                      new MappedMedlineReader();
+                                                                  mapped.setParallel(parallel);
+                                                                  return mapped;
+                                                              }
+                                                              return new MedlineReader();
+                                                          }));
+
+        readers.register(new Format("pmc", 0, head -> firstLine(head).split(",", -1).length >= 4, () -> {
+            if (mmap) {
+                final MappedNihTypeAReader mapped = new MappedNihTypeAReader();
+                mapped.setParallel(parallel);
+                return mapped;
+            }
+            return new NihTypeAReader();
+        }));
+
+        return readers;
+    }
+
+    /**
+     * Add a format. Formats are detected in the order they are registered.
+     *
+     * @param format the format
+     */
+    void register(Format format) {
+        formats.add(format);
+    }
+
+    /**
+     * Create a reader for a named format.
+     *
+     * @param name name of the format
+     * @return a reader
+     */
+    JournalReader reader(String name) {
+        return format(name).reader.get();
+    }
+
+    private Format format(String name) {
+        for (final Format format : formats) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal format: " + name);
+    }
+
+    /**
+     * Detect the format of a file.
+     *
+     * @param file the file
+     * @return the format, or null if it is not recognized
+     * @throws IOException if the file cannot be read
+     */
+    Format detect(Path file) throws IOException {
+        final byte[] head = new byte[HEAD_SIZE];
+        int length = 0;
+        try (InputStream in = SourceStreams.open(file)) {
+            for (int read = 0; read >= 0 && length < head.length; length += read) {
+                read = in.read(head, length, head.length - length);
+                if (read < 0) {
+                    break;
+                }
+            }
+        }
+
+        String text = new String(head, 0, length, UTF_8);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+
+        for (final Format format : formats) {
+            if (format.detector.test(text)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open the files matched by the given inputs, detecting their format. Files are opened lazily, as they are read.
+     *
+     * @param inputs files, directories, or glob patterns
+     * @return sources in load order
+     * @throws IOException if an input cannot be read, or is not of a known format
+     */
+    List<JournalSource> open(List<String> inputs) throws IOException {
+        return open(Collections.emptyMap(), inputs);
+    }
+
+    /**
+     * Open files of known formats together with the files matched by the given inputs, all in one load order, so
+     * that e.g. PMC files found among the inputs are still loaded before a Medline file given by name.
+     *
+     * @param named  files of known format, by file; not detected
+     * @param inputs files, directories, or glob patterns
+     * @return sources in load order
+     * @throws IOException if an input cannot be read, or is not of a known format
+     */
+    List<JournalSource> open(Map<String, String> named, List<String> inputs) throws IOException {
+        final List<Detected> detected = new ArrayList<>();
+        final Set<Path> known = new HashSet<>();
+        for (final Map.Entry<String, String> file : named.entrySet()) {
+            final Path path = Paths.get(file.getKey());
+            if (known.add(path)) {
+                detected.add(new Detected(path, format(file.getValue())));
+            }
+        }
+
+        final List<Path> files = new ArrayList<>();
+        for (final String input : inputs) {
+            final List<Path> matched = resolve(input);
+            if (matched.isEmpty()) {
+                LOG.warn("No files found for input {}", input);
+            }
+            files.addAll(matched);
+        }
+
+        for (final Path file : new LinkedHashSet<>(files)) {
+            if (!known.add(file)) {
+                continue;
+            }
+            final Format format = detect(file);
+            if (format == null) {
+                throw new IOException("Unrecognized journal file format: " + file);
+            }
+            LOG.info("Found {} file {}", format.name, file);
+            detected.add(new Detected(file, format));
+        }
+
+        detected.sort(Comparator.<Detected>comparingInt(d -> d.format.priority)
+                          .thenComparing(d -> d.file.getFileName().toString(), Comparator.reverseOrder())
+                          .thenComparing(d -> d.file.toString()));
+
+        final List<JournalSource> sources = new ArrayList<>();
+        for (final Detected d : detected) {
+            sources.add(JournalSource.open(d.file.toString(), d.format.reader.get()));
+        }
+        return sources;
+    }
+
+    /**
+     * Find the files matched by an input.
+     *
+     * @param input a file, directory, or glob pattern
+     * @return matching regular files, sorted by path
+     * @throws IOException if a directory cannot be listed
+     */
+    static List<Path> resolve(String input) throws IOException {
+        if (!isGlob(input)) {
+            final Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+            }
+            if (!Files.exists(path)) {
+                throw new IOException("No such file or directory: " + input);
+            }
+            return Collections.singletonList(path);
+        }
+
+        // Walk from the deepest directory without glob characters, matching the rest of the pattern
+        final int split = input.lastIndexOf('/', firstGlobChar(input)) + 1;
+        final Path base = Paths.get(split > 0 ? input.substring(0, split) : ".");
+        final String pattern = input.substring(split);
+
+        if (!Files.isDirectory(base)) {
+            return new ArrayList<>();
+        }
+
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final int depth = pattern.contains("**") ? Integer.MAX_VALUE
+                                                 : (int) pattern.chars().filter(c -> c == '/').count() + 1;
+
+        try (Stream<Path> files = Files.walk(base, depth)) {
+            return files.filter(Files::isRegularFile)
+                        .filter(p -> matcher.matches(base.relativize(p)))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isGlob(String input) {
+        return firstGlobChar(input) < input.length();
+    }
+
+    private static int firstGlobChar(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    private static String firstLine(String head) {
+        for (final String line : head.split("\r\n|\r|\n")) {
+            if (!line.trim().isEmpty()) {
+                return line;
+            }
+        }
+        return "";
+    }
+
+    private static final class Detected {
+
+        final Path file;
+
+        final Format format;
+
+        Detected(Path file, Format format) {
+            this.file = file;
+            this.format = format;
+        }
+    }
+}
@@ -16,14 +16,63 @@
 
 package org.dataconservancy.pass.loader.journal.nih;
 
+import java.util.List;
+
 import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
 
 /**
+ * A journal as parsed from a source.
+ * <p>
+ * Readers produce records rather than {@link Journal} model objects, so that matching does not need a full model
+ * object for every row. A {@link Journal} is built by {@link #journal()} only when one is written to the repository.
+ * </p>
+ *
  * @author apb@jhu.edu
  */
 public interface JournalRecord {
 
+    /**
+     * @return the journal name, may be null
+     */
+    String name();
+
+    /**
+     * @return the NLM title abbreviation, may be null
+     */
+    String nlmta();
+
+    /**
+     * @return unmodifiable list of ISSNs, each prefixed with its type (e.g. {@code Print:1234-5678}) if known
+     */
+    List<String> issns();
+
+    /**
+     * Build a journal model object from the record.
+     *
+     * @return a journal with the record's name, NLMTA, ISSNs and PMC participation
+     */
     Journal journal();
 
+    /**
+     * @return true if the journal actively participates in PMC
+     */
     boolean isActive();
+
+    /**
+     * @return the journal's PMC participation, null if none; readers only know whether it is active, type A
+     */
+    default PmcParticipation pmcParticipation() {
+        return isActive() ? PmcParticipation.A : null;
+    }
+
+    /**
+     * Wrap a journal model object as a record.
+     *
+     * @param journal the journal
+     * @return a record whose {@link #journal()} is the given journal
+     */
+    static JournalRecord of(Journal journal) {
+        return new ModelJournalRecord(journal);
+    }
 }
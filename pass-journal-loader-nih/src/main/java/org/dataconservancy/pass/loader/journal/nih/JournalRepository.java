@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.net.URI;
+
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * The repository operations the loader performs on journals.
+ *
+ * @author apb@jhu.edu
+ */
+public interface JournalRepository {
+
+    /**
+     * @param j journal to create
+     * @return URI of the newly created journal
+     */
+    URI create(Journal j);
+
+    /**
+     * @param uri URI of an existing journal
+     * @return the journal, or null if it no longer exists
+     */
+    Journal read(URI uri);
+
+    /**
+     * @param j journal to update, replacing the repository's copy
+     */
+    void update(Journal j);
+
+    /**
+     * @param name name of a journal within the journals container, a valid URI path segment
+     * @return URI of the journal with that name
+     */
+    URI journalUri(String name);
+
+    /**
+     * Create a journal at a given URI, unless a resource already exists there. Repeating a create, or creating the
+     * same journal from several loaders at once, creates it only once.
+     *
+     * @param uri URI from {@link #journalUri(String)}
+     * @param j   journal to create
+     * @return true if the journal was created, false if the URI already existed
+     */
+    boolean createIfAbsent(URI uri, Journal j);
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.dataconservancy.pass.loader.journal.nih.SourceStreams.Compression;
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * A stream of journals parsed from a single input, and whether that input is authoritative for PMC participation.
+ *
+ * @author apb@jhu.edu
+ */
+class JournalSource implements Closeable {
+
+    private final String name;
+
+    private final Opener opener;
+
+    private Stream<JournalRecord> records;
+
+    private final boolean hasPmcParticipation;
+
+    /* Opens the stream of journal records */
+    private interface Opener {
+
+        Stream<JournalRecord> open() throws IOException;
+    }
+
+    JournalSource(String name, Stream<Journal> journals, boolean hasPmcParticipation) {
+        this(name, () -> journals.map(JournalRecord::of), hasPmcParticipation);
+    }
+
+    /**
+     * Create a source for records that have already been parsed.
+     *
+     * @param name                name of the source
+     * @param records             the records
+     * @param hasPmcParticipation whether the source is authoritative for PMC participation
+     * @return the source
+     */
+    static JournalSource of(String name, Stream<JournalRecord> records, boolean hasPmcParticipation) {
+        return new JournalSource(name, () -> records, hasPmcParticipation);
+    }
+
+    private JournalSource(String name, Opener opener, boolean hasPmcParticipation) {
+        this.name = name;
+        this.opener = opener;
+        this.hasPmcParticipation = hasPmcParticipation;
+    }
+
+    /**
+     * Create a source for a file, to be parsed with the given reader. The file is not opened until its journals are
+     * first requested, and parsing is lazy, happening as the journals are consumed. Compressed files are decompressed
+     * as they are read. Readers that can read files directly are given uncompressed files.
+     *
+     * @param file   path to the file
+     * @param reader reader for the file's format
+     * @return the source, which closes the file when closed
+     */
+    static JournalSource open(String file, JournalReader reader) {
+        return new JournalSource(file, () -> {
+            final Path path = Paths.get(file);
+            if (reader instanceof FileJournalReader && SourceStreams.detect(path) == Compression.NONE) {
+                return ((FileJournalReader) reader).readRecords(path);
+            }
+
+            final InputStream in = SourceStreams.open(path);
+            return reader.readRecords(in, UTF_8).onClose(() -> {
+                try {
+                    in.close();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }, reader.hasPmcParticipation());
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Open the source, if it has not been already, and return its journal records. If a flight recording is running,
+     * parsing each record is recorded as a {@link LoaderEvents.RecordParse} event.
+     *
+     * @return the records
+     * @throws UncheckedIOException if the source cannot be opened
+     */
+    synchronized Stream<JournalRecord> records() {
+        if (records == null) {
+            try {
+                records = opener.open();
+                if (LoaderEvents.isRecordingParses()) {
+                    final Stream<JournalRecord> parsed = records;
+                    records = StreamSupport.stream(LoaderEvents.recordParsing(name, parsed.spliterator()),
+                                                   parsed.isParallel())
+                                           .onClose(parsed::close);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Could not open " + name, e);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Open the source, if it has not been already, and return its records as journals.
+     *
+     * @return the journals
+     * @throws UncheckedIOException if the source cannot be opened
+     */
+    Stream<Journal> journals() {
+        return records().map(JournalRecord::journal);
+    }
+
+    boolean hasPmcParticipation() {
+        return hasPmcParticipation;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (records != null) {
+            records.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of simulated operation latencies.
+ * <p>
+ * Distributions are specified as strings, with all values in milliseconds:
+ * </p>
+ * <dl>
+ * <dt>{@code none}</dt>
+ * <dd>No latency</dd>
+ * <dt>{@code fixed:MS}</dt>
+ * <dd>Always the given latency</dd>
+ * <dt>{@code uniform:MIN:MAX}</dt>
+ * <dd>Uniformly distributed between min and max</dd>
+ * <dt>{@code exponential:MEAN}</dt>
+ * <dd>Exponentially distributed with the given mean</dd>
+ * <dt>{@code lognormal:MEDIAN:SIGMA}</dt>
+ * <dd>Log-normally distributed with the given median and shape; gives a long tail for large sigma</dd>
+ * </dl>
+ *
+ * @author apb@jhu.edu
+ */
+@FunctionalInterface
+interface LatencyDistribution {
+
+    LatencyDistribution NONE = random -> 0;
+
+    /**
+     * @param random source of randomness
+     * @return a latency, in nanoseconds
+     */
+    long sample(Random random);
+
+    static LatencyDistribution parse(String spec) {
+        if (spec == null || spec.trim().isEmpty() || spec.trim().equals("none")) {
+            return NONE;
+        }
+
+        final String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed": {
+                    final long fixed = nanos(Double.parseDouble(parts[1]));
+                    return random -> fixed;
+                }
+                case "uniform": {
+                    final long min = nanos(Double.parseDouble(parts[1]));
+                    final long max = nanos(Double.parseDouble(parts[2]));
+                    return random -> min + (long) (random.nextDouble() * (max - min));
+                }
+                case "exponential": {
+                    final double mean = Double.parseDouble(parts[1]);
+                    return random -> nanos(-mean * Math.log(1 - random.nextDouble()));
+                }
+                case "lognormal": {
+                    final double mu = Math.log(Double.parseDouble(parts[1]));
+                    final double sigma = Double.parseDouble(parts[2]);
+                    return random -> nanos(Math.exp(mu + sigma * random.nextGaussian()));
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution " + parts[0]);
+            }
+        } catch (final ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed latency distribution " + spec, e);
+        }
+    }
+
+    private static long nanos(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
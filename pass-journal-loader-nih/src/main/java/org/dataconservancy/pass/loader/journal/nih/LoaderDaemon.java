@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the loader resident, loading journal files as they arrive in an inbox directory.
+ * <p>
+ * The repository index held by the journal finder is built once, and kept warm between runs; the loader adds the
+ * journals it creates and updates to it. Each time files arrive, the daemon waits for the inbox to be quiet, then
+ * loads all files in it as one run, in the same order as the {@code inputs} of a single run. Each loaded file is moved
+ * to the {@code done} directory of the inbox, or to {@code failed} if it could not be loaded.
+ * </p>
+ * <p>
+ * Files should be moved into the inbox once complete. Hidden files, and files ending in {@code .part} or {@code .tmp}
+ * are ignored, so may be used while a file is still being written.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class LoaderDaemon implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoaderDaemon.class);
+
+    static final String DONE = "done";
+
+    static final String FAILED = "failed";
+
+    private final Path inbox;
+
+    private final JournalReaders readers;
+
+    private final JournalFinder finder;
+
+    private final Supplier<LoaderEngine> engines;
+
+    private final WatchService watcher;
+
+    private long quietPeriod = 5000;
+
+    private boolean reconcilePmc;
+
+    /**
+     * Watch an inbox.
+     *
+     * @param inbox   the inbox directory, which is created if it does not exist
+     * @param readers readers for the journal files
+     * @param finder  the journal finder, shared by all runs
+     * @param engines creates a configured loader for each run, using the given finder
+     * @throws IOException if the inbox cannot be created or watched
+     */
+    LoaderDaemon(Path inbox, JournalReaders readers, JournalFinder finder, Supplier<LoaderEngine> engines)
+        throws IOException {
+        this.inbox = inbox;
+        this.readers = readers;
+        this.finder = finder;
+        this.engines = engines;
+
+        Files.createDirectories(inbox.resolve(DONE));
+        Files.createDirectories(inbox.resolve(FAILED));
+
+        watcher = inbox.getFileSystem().newWatchService();
+        inbox.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+    }
+
+    /**
+     * @param millis how long the inbox must go without changes before its files are loaded
+     */
+    public void setQuietPeriod(long millis) {
+        this.quietPeriod = millis;
+    }
+
+    /**
+     * @param reconcile whether to clear the PMC participation of journals missing from PMC lists that are loaded, see
+     *                  {@link LoaderEngine#reconcilePmcParticipation()}
+     */
+    public void setReconcilePmc(boolean reconcile) {
+        this.reconcilePmc = reconcile;
+    }
+
+    /**
+     * Load any files already in the inbox, then wait for new files and load them, until closed or interrupted.
+     */
+    public void run() {
+        LOG.info("Watching {} for journal files", inbox);
+        try {
+            processInbox();
+            while (true) {
+                drain(watcher.take());
+                for (WatchKey key = watcher.poll(quietPeriod, TimeUnit.MILLISECONDS); key != null;
+                     key = watcher.poll(quietPeriod, TimeUnit.MILLISECONDS)) {
+                    drain(key);
+                }
+                processInbox();
+            }
+        } catch (final ClosedWatchServiceException e) {
+            LOG.info("Stopped watching {}", inbox);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.info("Interrupted, stopped watching {}", inbox);
+        }
+    }
+
+    /**
+     * Load the files currently in the inbox as one run.
+     *
+     * @return the number of files processed
+     */
+    int processInbox() {
+        final List<Path> files;
+        try {
+            files = ready();
+        } catch (final IOException e) {
+            LOG.warn("Could not list inbox " + inbox, e);
+            return 0;
+        }
+
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        LOG.info("Loading {} files from {}", files.size(), inbox);
+
+        final List<String> known = new ArrayList<>();
+        for (final Path file : files) {
+            try {
+                if (readers.detect(file) != null) {
+                    known.add(file.toString());
+                } else {
+                    LOG.warn("Unrecognized journal file format: {}", file);
+                    move(file, FAILED);
+                }
+            } catch (final IOException e) {
+                LOG.warn("Could not read " + file, e);
+                move(file, FAILED);
+            }
+        }
+
+        if (known.isEmpty()) {
+            return files.size();
+        }
+
+        finder.reset();
+
+        final List<JournalSource> sources;
+        try {
+            sources = readers.open(known);
+        } catch (final IOException e) {
+            LOG.warn("Could not open journal files", e);
+            known.forEach(f -> move(inbox.getFileSystem().getPath(f), FAILED));
+            return files.size();
+        }
+
+        try (LoaderEngine loader = engines.get()) {
+            for (final JournalSource source : sources) {
+                final Path file = inbox.getFileSystem().getPath(source.name());
+                try {
+                    loader.load(Collections.singletonList(source));
+                    move(file, DONE);
+                } catch (final RuntimeException e) {
+                    LOG.warn("Could not load " + file, e);
+                    move(file, FAILED);
+                } finally {
+                    source.close();
+                }
+            }
+
+            if (reconcilePmc) {
+                loader.reconcilePmcParticipation();
+            }
+        }
+
+        return files.size();
+    }
+
+    /* Regular files in the inbox that are not hidden or partial, sorted by name */
+    private List<Path> ready() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(inbox)) {
+            for (final Path file : dir) {
+                final String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && !name.startsWith(".") && !name.endsWith(".part") &&
+                    !name.endsWith(".tmp")) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private void move(Path file, String to) {
+        try {
+            Files.move(file, inbox.resolve(to).resolve(file.getFileName()), REPLACE_EXISTING);
+        } catch (final IOException e) {
+            LOG.error("Could not move " + file + " to " + to + ", it will be loaded again", e);
+        }
+    }
+
+    private void drain(WatchKey key) {
+        key.pollEvents();
+        if (!key.reset()) {
+            throw new IllegalStateException("Inbox is no longer accessible: " + inbox);
+        }
+    }
+
+    /**
+     * Stop watching the inbox. A run in progress is completed.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+}
@@ -16,15 +16,37 @@
 
 package org.dataconservancy.pass.loader.journal.nih;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import org.dataconservancy.pass.client.PassClient;
+import org.dataconservancy.pass.loader.journal.nih.OutcomeReport.Action;
+import org.dataconservancy.pass.loader.journal.nih.OutcomeReport.Outcome;
+import org.dataconservancy.pass.loader.journal.nih.WriteScheduler.Priority;
 import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +57,10 @@ import org.slf4j.LoggerFactory;
  * repository if
  * pmc participation, NLMTA, or ISSNS have changed
  * </p>
+ * <p>
+ * Journals are matched as lightweight {@link JournalRecord}s; journal model objects are built only for records that
+ * are created or updated.
+ * </p>
  *
  * @author apb@jhu.edu
  */
@@ -42,7 +68,7 @@ public class LoaderEngine implements AutoCloseable {
 
     private Executor exe = r -> r.run();
 
-    private final PassClient client;
+    private final JournalRepository repository;
 
     private final JournalFinder finder;
 
@@ -62,36 +88,422 @@ public class LoaderEngine implements AutoCloseable {
 
     private final AtomicInteger numDup = new AtomicInteger(0);
 
+    private final AtomicInteger numCleared = new AtomicInteger(0);
+
+    private final AtomicInteger numOtherShard = new AtomicInteger(0);
+
+    private final AtomicInteger numDeferred = new AtomicInteger(0);
+
+    private final AtomicInteger numGone = new AtomicInteger(0);
+
+    /* Marks the end of a source's buffer of parsed journals */
+    private static final JournalRecord END_OF_SOURCE = JournalRecord.of(new Journal());
+
+    private int bufferSize = 1024;
+
+    private int numParsers = Runtime.getRuntime().availableProcessors();
+
+    private JournalDeduplicator deduplicator = new JournalDeduplicator();
+
+    private final long started = System.nanoTime();
+
+    private OutcomeReport report;
+
+    private ShardFilter shard;
+
+    private boolean namedCreates;
+
+    /* Holds writes back to make them in priority order before a deadline, or null to write as records are matched */
+    private WriteScheduler scheduler;
+
+    /* Matches records against journals waiting to be created by the scheduler */
+    private BatchJournalFinder pendingFinder;
+
+    /* Journals waiting to be created by the scheduler, by their placeholder URIs in the pending finder */
+    private final Map<String, PendingCreate> pendingCreates = new LinkedHashMap<>();
+
+    /* Number of matched journals being read to decide whether, and at what priority, to schedule their update */
+    private int classifying;
+
+    private final Object classifyingLock = new Object();
+
+    /* File of writes deferred by the last run, replaced by the writes this run defers; null for none */
+    private Path deferredFile;
+
+    /* Whether the deferred file was read, so may be replaced */
+    private boolean deferredFileRead;
+
+    /* Whether the writes deferred by the last run have been loaded */
+    private boolean deferredLoaded;
+
+    /* Whether the records being loaded were deferred by the last run */
+    private boolean loadingDeferred;
+
+    /* Writes deferred by this run */
+    private final Queue<DeferredWrites.Entry> deferred = new ConcurrentLinkedQueue<>();
+
+    /* Number of journals whose PMC participation is cleared by each write task when reconciling */
+    private static final int RECONCILE_BATCH_SIZE = 64;
+
+    /* Journals with type A PMC participation before PMC sources were loaded, null if none were loaded */
+    private Set<String> pmcParticipantsBefore;
+
+    /* Journals matched by records from PMC sources */
+    private final Set<String> pmcMatched = ConcurrentHashMap.newKeySet();
+
+    /* Whether every PMC source loaded so far has been read completely */
+    private boolean pmcSourcesComplete;
+
     LoaderEngine(PassClient client, JournalFinder finder) {
-        this.client = client;
+        this(new PassJournalRepository(client), finder);
+    }
+
+    LoaderEngine(JournalRepository repository, JournalFinder finder) {
+        this.repository = new RecordedJournalRepository(repository);
         this.finder = finder;
     }
 
     int numThreads = 1;
 
+    /**
+     * Perform repository reads and writes on a pool of threads.
+     * <p>
+     * Outstanding operations are bounded; when the pool falls behind, matching waits by running the next operation
+     * itself.
+     * </p>
+     *
+     * @param threads number of threads
+     */
     public void setNumThreads(int threads) {
-        exe = Executors.newFixedThreadPool(threads);
+        numThreads = threads;
+        if (threads > 1) {
+            exe = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                         new ArrayBlockingQueue<>(threads * 64),
+                                         new ThreadPoolExecutor.CallerRunsPolicy());
+        }
     }
 
     void load(Stream<Journal> journals, boolean hasPmcParticipation) {
 
+        final AtomicInteger record = new AtomicInteger(0);
         journals
-            .forEach(j -> load(j, hasPmcParticipation));
+            .forEach(j -> load(JournalRecord.of(j), hasPmcParticipation, null, record.incrementAndGet()));
+
+    }
+
+    /**
+     * Load journals from several sources at once.
+     * <p>
+     * Sources are parsed on a bounded pool of threads, each into its own bounded buffer. Parsed journals are matched
+     * and written in source order (all of the first source, then all of the second, ...), so which record claims a
+     * matching journal is the same as if the sources were loaded one after another. Parsing of later sources
+     * overlaps matching and writing of earlier ones. Sources start parsing in order, so the source being matched is
+     * always being parsed.
+     * </p>
+     *
+     * @param sources journal sources, in priority order
+     */
+    void load(List<JournalSource> sources) {
+
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ExecutorService parsers = Executors.newFixedThreadPool(Math.min(numParsers, sources.size()), r -> {
+            final Thread t = new Thread(r, "journal-reader-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        final List<BlockingQueue<JournalRecord>> buffers = new ArrayList<>();
+        final List<AtomicReference<RuntimeException>> failures = new ArrayList<>();
+
+        if (pmcParticipantsBefore == null && sources.stream().anyMatch(JournalSource::hasPmcParticipation)) {
+            pmcParticipantsBefore = finder.pmcParticipants();
+            pmcSourcesComplete = true;
+        }
+
+        try {
+            for (final JournalSource source : sources) {
+                final BlockingQueue<JournalRecord> buffer = new ArrayBlockingQueue<>(bufferSize);
+                final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+                buffers.add(buffer);
+                failures.add(failure);
+
+                parsers.execute(() -> {
+                    try {
+                        source.records().forEachOrdered(j -> put(buffer, j));
+                    } catch (final RuntimeException e) {
+                        failure.set(e);
+                    } finally {
+                        try {
+                            source.close();
+                        } catch (final RuntimeException e) {
+                            LOG.warn("Could not close " + source.name(), e);
+                        }
+                        put(buffer, END_OF_SOURCE);
+                    }
+                });
+            }
+
+            for (int i = 0; i < sources.size(); i++) {
+                final JournalSource source = sources.get(i);
+                LOG.info("Loading journals from {}", source.name());
+
+                long record = 0;
+                for (JournalRecord j = take(buffers.get(i)); j != END_OF_SOURCE; j = take(buffers.get(i))) {
+                    load(j, source.hasPmcParticipation(), source.name(), ++record);
+                }
+
+                if (failures.get(i).get() != null) {
+                    if (source.hasPmcParticipation()) {
+                        pmcSourcesComplete = false;
+                    }
+                    throw new RuntimeException("Error reading journals from " + source.name(),
+                                               failures.get(i).get());
+                }
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
 
+    /**
+     * Clear the PMC participation of every journal that had type A participation, but was not matched by any record
+     * from a PMC source, i.e. journals that have been dropped from the PMC list. Candidates are found in memory, from
+     * the finder's index and the journals matched while loading; the writes are made in batches on the engine's
+     * threads.
+     * <p>
+     * Does nothing unless PMC sources have been loaded, and every one of them was read completely; a partially read
+     * list would otherwise clear journals that are still in it.
+     * </p>
+     * <p>
+     * Any writes deferred by the last run are loaded first, so the participation they carry is decided by this run's
+     * PMC list rather than reapplied after it.
+     * </p>
+     */
+    void reconcilePmcParticipation() {
+        loadDeferred();
+
+        if (pmcParticipantsBefore == null) {
+            LOG.info("No PMC list was loaded, not reconciling PMC participation");
+            return;
+        }
+        if (!pmcSourcesComplete) {
+            LOG.warn("A PMC list could not be read completely, not reconciling PMC participation");
+            return;
+        }
+
+        final List<String> dropped = new ArrayList<>();
+        for (final String uri : pmcParticipantsBefore) {
+            if (!pmcMatched.contains(uri) && (shard == null || shard.ownsJournal(uri))) {
+                dropped.add(uri);
+            }
+        }
+        LOG.info("{} journals with PMC participation are no longer in the PMC list", dropped.size());
+
+        if (isScheduling()) {
+            dropped.forEach(this::scheduleClear);
+            return;
+        }
+
+        for (int i = 0; i < dropped.size(); i += RECONCILE_BATCH_SIZE) {
+            final List<String> batch = dropped.subList(i, Math.min(dropped.size(), i + RECONCILE_BATCH_SIZE));
+            exe.execute(() -> batch.forEach(this::clearPmcParticipation));
+        }
+    }
+
+    private void scheduleClear(String uri) {
+        scheduler.submit(Priority.PARTICIPATION, () -> clearPmcParticipation(uri), () -> {
+            deferred.add(DeferredWrites.Entry.clear(uri));
+            numDeferred.incrementAndGet();
+            if (report != null) {
+                report.record(new Outcome(null, 0, null, Action.DEFERRED, uri, null,
+                                          Collections.singletonList("pmcParticipation: A -> null")));
+            }
+        }, loadingDeferred);
+    }
+
+    private void clearPmcParticipation(String uri) {
+        try {
+            final Journal journal = repository.read(URI.create(uri));
+            if (journal == null) {
+                gone(uri);
+                if (report != null) {
+                    report.record(new Outcome(null, 0, null, Action.GONE, uri, null, null));
+                }
+                return;
+            }
+            if (journal.getPmcParticipation() != PmcParticipation.A) {
+                return;
+            }
+
+            journal.setPmcParticipation(null);
+            if (!dryRun) {
+                repository.update(journal);
+                LOG.debug("Cleared PMC participation of {} at {}", journal.getJournalName(), uri);
+            }
+            addToFinder(journal);
+            numCleared.incrementAndGet();
+            if (report != null) {
+                report.record(new Outcome(null, 0, journal.getJournalName(), Action.PMC_CLEARED, uri, null,
+                                          Collections.singletonList("pmcParticipation: A -> null")));
+            }
+        } catch (final Exception e) {
+            LOG.warn("Could not clear PMC participation of journal " + uri, e);
+            numError.getAndIncrement();
+        }
+    }
+
+    /**
+     * @param parsers maximum number of sources parsed at once
+     */
+    public void setNumParsers(int parsers) {
+        this.numParsers = parsers;
+    }
+
+    /**
+     * Whether to drop records that repeat records already loaded in this run before they are matched. On by
+     * default.
+     *
+     * @param deduplicate whether to drop duplicates
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicator = deduplicate ? new JournalDeduplicator() : null;
+    }
+
+    /**
+     * Report the outcome of each journal record. The report is not closed with the engine.
+     *
+     * @param report the report, or null for none
+     */
+    void setReport(OutcomeReport report) {
+        this.report = report;
+    }
+
+    /**
+     * Load only the records this process owns, when several processes share the load.
+     *
+     * @param shard decides which records this process owns, or null to load all records
+     */
+    void setShardFilter(ShardFilter shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Create journals at URIs named after their canonical ISSN or NLMTA (see {@link JournalNames}), only if nothing
+     * exists there yet, rather than at URIs the repository assigns. Creates can then be retried, resumed, or made by
+     * several loaders at once without creating duplicates; a journal that turns out to exist already is updated
+     * instead.
+     *
+     * @param namedCreates whether to create journals at named URIs
+     */
+    void setNamedCreates(boolean namedCreates) {
+        this.namedCreates = namedCreates;
+    }
+
+    /**
+     * Hold repository writes back until the engine is closed, then make them in priority order (see
+     * {@link WriteScheduler}), starting none once the deadline has passed. Writes not made are reported as deferred,
+     * and saved to the {@link #setDeferred(Path) deferred file} if there is one. Records are matched against new
+     * journals while they wait to be created, so each is created once. Has no effect on dry runs.
+     *
+     * @param runStarted {@link System#nanoTime()} at the start of the run
+     * @param deadline time from the start of the run by which writes must have started
+     */
+    void setDeadline(long runStarted, Duration deadline) {
+        scheduler = new WriteScheduler(runStarted + deadline.toNanos());
+        pendingFinder = new BatchJournalFinder();
+    }
+
+    /**
+     * Carry deferred writes over from one run to the next. Before PMC participation is reconciled, or when the engine
+     * is closed if it is not, the writes the last run deferred are read from the file and loaded again, ahead of this
+     * run's writes of the same priority; when the engine is closed the file is replaced with the writes this run
+     * deferred. Deferred records are matched after this run's sources, so a journal this run's sources already
+     * matched is not written again with older data, and their PMC participation is ignored if this run read a
+     * complete PMC list.
+     *
+     * @param file the file, which need not exist
+     */
+    void setDeferred(Path file) {
+        this.deferredFile = file;
+    }
+
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    private static void put(BlockingQueue<JournalRecord> buffer, JournalRecord j) {
+        try {
+            buffer.put(j);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading journals", e);
+        }
+    }
+
+    private static JournalRecord take(BlockingQueue<JournalRecord> buffer) {
+        try {
+            return buffer.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading journals", e);
+        }
     }
 
     void setDryRun(boolean dryRun) {
         this.dryRun = dryRun;
     }
 
+    /**
+     * Load any writes deferred by the last run, make any writes held for the deadline, wait for outstanding creates
+     * and updates to finish, save the writes deferred by this run, then log statistics.
+     */
     @Override
     public void close() {
+        loadDeferred();
+        if (isScheduling()) {
+            drainScheduler();
+        }
+
+        if (exe instanceof ExecutorService) {
+            final ExecutorService pool = (ExecutorService) exe;
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.info("Waiting for outstanding repository operations to complete");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while waiting for repository operations to complete");
+            }
+        }
+
+        if (deferredFileRead && !dryRun) {
+            try {
+                DeferredWrites.write(deferredFile, deferred);
+            } catch (final IOException e) {
+                LOG.error("Could not save deferred writes to " + deferredFile, e);
+            }
+        }
+
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        final int processed = numCreated.get() + numUpdated.get() + numOk.get() + numSkipped.get() + numDup.get() +
+                              numError.get() + numOtherShard.get() + numDeferred.get() + numGone.get();
+        LOG.info("Processed {} journals in {} ms ({} journals/s)", processed, elapsed,
+                 elapsed > 0 ? processed * 1000L / elapsed : processed);
+
         if (dryRun) {
             LOG.info("Dry run: would have created {} new journals", numCreated);
             LOG.info("Dry run: would have updated {} journals", numUpdated);
             LOG.info("Dry run: {} journals did not need updating", numOk);
             LOG.info("Dry run: Skipped {} journals due to lack of ISSN and NLMTA", numSkipped);
             LOG.info("Dry run: Skipped {} journals due to suspected duplication", numDup);
+            LOG.info("Dry run: would have cleared PMC participation of {} journals", numCleared);
+            LOG.info("Dry run: Left {} journals to other shards", numOtherShard);
+            LOG.info("Dry run: Skipped {} journals no longer in the repository", numGone);
             LOG.info("Dry run: Could not load or update {} journals due to an error", numError);
         } else {
             LOG.info("Created {} new journals", numCreated);
@@ -99,87 +511,396 @@ public class LoaderEngine implements AutoCloseable {
             LOG.info("{} journals did not need updating", numOk);
             LOG.info("Skipped {} journals due to lack of ISSN and NLMTA", numSkipped);
             LOG.info("Skipped {} journals due to suspected duplication", numDup);
+            LOG.info("Cleared PMC participation of {} journals", numCleared);
+            LOG.info("Left {} journals to other shards", numOtherShard);
+            LOG.info("Deferred {} writes to the next run", numDeferred);
+            LOG.info("Skipped {} journals no longer in the repository", numGone);
             LOG.info("Could not load or update {} journals due to an error", numError);
         }
     }
 
-    private void load(Journal j, boolean hasPmcParticipation) {
+    private void load(JournalRecord j, boolean hasPmcParticipation, String source, long record) {
 
-        if (j.getIssns().isEmpty() && (j.getNlmta() == null || j.getNlmta().isEmpty())) {
-            LOG.debug("Journal has no ISSNs or NLMTA: {}", j.getJournalName());
+        if (shard != null && !shard.owns(j)) {
+            numOtherShard.incrementAndGet();
+            return;
+        }
+
+        if (j.issns().isEmpty() && (j.nlmta() == null || j.nlmta().isEmpty())) {
+            LOG.debug("Journal has no ISSNs or NLMTA: {}", j.name());
             numSkipped.incrementAndGet();
+            report(source, record, j, Action.NO_ISSN_OR_NLMTA, null, null, null);
+            return;
+        }
+
+        if (hasPmcParticipation && pmcParticipantsBefore != null) {
+            //the journal is in the PMC list even if another record claims it, or this record is skipped below
+            pmcMatched.addAll(finder.bestMatches(j.nlmta(), j.name(), j.issns()));
+        }
+
+        if (deduplicator != null && deduplicator.isDuplicate(j)) {
+            LOG.debug("Journal repeats one already loaded, skipping: {}", j.name());
+            numDup.incrementAndGet();
+            report(source, record, j, Action.DUPLICATE, null, null, null);
             return;
         }
 
-        String found = finder.find(j.getNlmta(), j.getJournalName(), j.getIssns());
+        String found = find(j);
 
         if (found == null) { //create a new journal
-            try {
-                if (!dryRun) {
-                    exe.execute(() -> {
-                        final URI uri = client.createResource(j);
-
-                        j.setId(uri);
-                        finder.add(j);
-                        LOG.debug("Loaded journal {} at {}", j.getJournalName(), uri);
-                        numCreated.incrementAndGet();
-                    });
-                } else {
-                    j.setId(URI.create(UUID.randomUUID().toString()));
-                    finder.add(j);
-                    numCreated.incrementAndGet();
-                }
-            } catch (final Exception e) {
-                LOG.warn("Could not load journal " + j.getJournalName(), e);
-                numError.getAndIncrement();
+            final String name = namedCreates ? JournalNames.name(j) : null;
+            if (isScheduling()) {
+                schedulePendingCreate(j, name, hasPmcParticipation, source, record);
+            } else if (!dryRun) {
+                exe.execute(() -> create(j.journal(), name, source, record, j, hasPmcParticipation));
+            } else {
+                final Journal journal = j.journal();
+                journal.setId(name != null ? repository.journalUri(name) : URI.create(UUID.randomUUID().toString()));
+                addToFinder(journal);
+                numCreated.incrementAndGet();
+                report(source, record, j, Action.CREATED, journal.getId().toString(), null, null);
             }
         } else if (found.equals("SKIP")) { //this matched something that was already processed
             numDup.getAndIncrement();
-            LOG.info("We have already processed this journal, skipping: {}", j.getJournalName());
+            LOG.info("We have already processed this journal, skipping: {}", j.name());
+            report(source, record, j, Action.ALREADY_MATCHED, null, null, null);
         } else { //update this journal
+            if (hasPmcParticipation) {
+                pmcMatched.add(found);
+            }
+            final Integer score = report != null ? finder.score(found, j.nlmta(), j.name(), j.issns()) : null;
+            if (isScheduling()) {
+                scheduleUpdate(j, URI.create(found), hasPmcParticipation, source, record, score);
+            } else {
+                exe.execute(() -> update(j, URI.create(found), hasPmcParticipation, source, record, score));
+            }
+        }
+    }
 
-            try {
-                URI uri = URI.create(found);
-                boolean update = false;
-                final Journal toUpdate = client.readResource(uri, Journal.class);
+    private boolean isScheduling() {
+        return scheduler != null && !dryRun;
+    }
 
-                if (hasPmcParticipation && toUpdate.getPmcParticipation() != j.getPmcParticipation()) {
-                    toUpdate.setPmcParticipation(j.getPmcParticipation());
-                    update = true;
+    /*
+     * Read a matched journal straight away, on the engine's threads, and schedule its update only if the record
+     * changes it, so that matches needing no change neither wait for the scheduler nor are deferred
+     */
+    private void scheduleUpdate(JournalRecord j, URI uri, boolean hasPmcParticipation, String source, long record,
+                                Integer score) {
+        final boolean isCarriedOver = loadingDeferred;
+        synchronized (classifyingLock) {
+            classifying++;
+        }
+        exe.execute(() -> {
+            try {
+                final Journal toUpdate = repository.read(uri);
+                if (toUpdate == null) {
+                    gone(uri.toString());
+                    report(source, record, j, Action.GONE, uri.toString(), score, null);
+                    return;
                 }
-
-                if (j.getIssns() != null && (toUpdate.getIssns() == null || !toUpdate.getIssns()
-                                                                                     .containsAll(j.getIssns()))) {
-                    toUpdate.setIssns(j.getIssns());
-                    update = true;
+                final boolean participationChanged =
+                    hasPmcParticipation && toUpdate.getPmcParticipation() != j.pmcParticipation();
+                final List<String> changes = changes(j, toUpdate, hasPmcParticipation);
+                if (changes.isEmpty()) {
+                    write(j, uri, toUpdate, changes, source, record, score);
+                    return;
                 }
 
-                if (toUpdate.getNlmta() == null && j.getNlmta() != null) {
-                    toUpdate.setNlmta(j.getNlmta());
-                    update = true;
+                final Priority priority = participationChanged ? Priority.PARTICIPATION : Priority.ENRICHMENT;
+                scheduler.submit(priority, () -> {
+                    try {
+                        write(j, uri, toUpdate, changes, source, record, score);
+                    } catch (final Exception e) {
+                        updateFailed(j, uri, source, record, score, e);
+                    }
+                }, () -> {
+                    deferred.add(DeferredWrites.Entry.load(priority, j.journal(), hasPmcParticipation));
+                    numDeferred.incrementAndGet();
+                    report(source, record, j, Action.DEFERRED, uri.toString(), score, null);
+                }, isCarriedOver);
+            } catch (final Exception e) {
+                updateFailed(j, uri, source, record, score, e);
+            } finally {
+                synchronized (classifyingLock) {
+                    classifying--;
+                    classifyingLock.notifyAll();
                 }
+            }
+        });
+    }
+
+    /*
+     * Hold a new journal back to be created by the scheduler. As with journals created straight away, later records
+     * matching a journal waiting to be created have already been matched.
+     */
+    private void schedulePendingCreate(JournalRecord j, String name, boolean hasPmcParticipation, String source,
+                                       long record) {
+        if (pendingFinder.find(j.nlmta(), j.name(), j.issns()) != null) {
+            numDup.getAndIncrement();
+            LOG.info("We have already processed this journal, skipping: {}", j.name());
+            report(source, record, j, Action.ALREADY_MATCHED, null, null, null);
+            return;
+        }
+
+        final Journal journal = j.journal();
+        journal.setId(URI.create("pending:" + pendingCreates.size()));
+        pendingFinder.add(journal);
+        pendingCreates.put(journal.getId().toString(),
+                           new PendingCreate(j, name, hasPmcParticipation, source, record, loadingDeferred));
+    }
+
+    /*
+     * Load the writes deferred by the last run, after this run's sources, once. Their PMC participation is stale if
+     * this run read a complete PMC list, so they are then loaded as records from other sources.
+     */
+    private void loadDeferred() {
+        if (deferredFile == null || deferredLoaded) {
+            return;
+        }
+        deferredLoaded = true;
+
+        final List<DeferredWrites.Entry> entries;
+        try {
+            entries = DeferredWrites.read(deferredFile);
+            deferredFileRead = true;
+        } catch (final IOException e) {
+            LOG.error("Could not read deferred writes from " + deferredFile + ", leaving them for the next run", e);
+            return;
+        }
+
+        if (entries.isEmpty()) {
+            return;
+        }
+        LOG.info("Loading {} writes deferred by the last run from {}", entries.size(), deferredFile);
+
+        final boolean pmcListRead = pmcParticipantsBefore != null && pmcSourcesComplete;
 
-                if (!dryRun) {
-                    if (update) {
-                        exe.execute(() -> {
-                            client.updateResource(toUpdate);
-                            numUpdated.incrementAndGet();
-                            LOG.debug("Updated journal {} at {}", j.getJournalName(), j.getId());
-                        });
+        loadingDeferred = true;
+        try {
+            long record = 0;
+            for (final DeferredWrites.Entry entry : entries) {
+                if (entry.clearUri == null) {
+                    if (pmcListRead && entry.hasPmcParticipation) {
+                        entry.journal.setPmcParticipation(null);
+                    }
+                    load(JournalRecord.of(entry.journal), entry.hasPmcParticipation && !pmcListRead,
+                         deferredFile.toString(), ++record);
+                } else if (!pmcMatched.contains(entry.clearUri)) { //a PMC list loaded since decides participation
+                    if (isScheduling()) {
+                        scheduleClear(entry.clearUri);
                     } else {
-                        numOk.incrementAndGet();
+                        exe.execute(() -> clearPmcParticipation(entry.clearUri));
                     }
+                }
+            }
+        } finally {
+            loadingDeferred = false;
+        }
+    }
+
+    /* Make the held writes, in priority order */
+    private void drainScheduler() {
+        synchronized (classifyingLock) {
+            while (classifying > 0) {
+                try {
+                    classifyingLock.wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while reading matched journals", e);
+                }
+            }
+        }
+
+        for (final PendingCreate create : pendingCreates.values()) {
+            final Priority priority = create.hasPmcParticipation && create.j.isActive()
+                                      ? Priority.PARTICIPATION
+                                      : Priority.CREATE;
+            scheduler.submit(priority, () -> create(create.j.journal(), create.name, create.source, create.record,
+                                                    create.j, create.hasPmcParticipation), () -> {
+                deferred.add(DeferredWrites.Entry.load(priority, create.j.journal(), create.hasPmcParticipation));
+                numDeferred.incrementAndGet();
+                report(create.source, create.record, create.j, Action.DEFERRED, null, null, null);
+            }, create.isCarriedOver);
+        }
+        pendingCreates.clear();
+
+        LOG.info("Writing {} participation changes, then {} new journals, then {} other updates",
+                 scheduler.size(Priority.PARTICIPATION), scheduler.size(Priority.CREATE),
+                 scheduler.size(Priority.ENRICHMENT));
+        scheduler.drain(exe);
+    }
+
+    /* A new journal waiting to be created by the scheduler */
+    private static class PendingCreate {
+
+        final JournalRecord j;
+
+        final String name;
+
+        final boolean hasPmcParticipation;
+
+        final String source;
+
+        final long record;
+
+        final boolean isCarriedOver;
+
+        PendingCreate(JournalRecord j, String name, boolean hasPmcParticipation, String source, long record,
+                      boolean isCarriedOver) {
+            this.j = j;
+            this.name = name;
+            this.hasPmcParticipation = hasPmcParticipation;
+            this.source = source;
+            this.record = record;
+            this.isCarriedOver = isCarriedOver;
+        }
+    }
+
+    /* Find a record's journal, recording a flight recorder event */
+    private String find(JournalRecord j) {
+        final LoaderEvents.Find event = new LoaderEvents.Find();
+        event.begin();
+        final String found = finder.find(j.nlmta(), j.name(), j.issns());
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = j.name();
+            event.nlmta = j.nlmta();
+            event.issns = String.join(",", j.issns());
+            event.outcome = found == null ? "NOT_FOUND" : found.equals("SKIP") ? "ALREADY_MATCHED" : "MATCHED";
+            event.uri = found == null || found.equals("SKIP") ? null : found;
+            event.commit();
+        }
+        return found;
+    }
+
+    /* Add a created or updated journal to the finder, recording a flight recorder event */
+    private void addToFinder(Journal j) {
+        final LoaderEvents.FinderAdd event = new LoaderEvents.FinderAdd();
+        event.begin();
+        finder.add(j);
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = j.getJournalName();
+            event.uri = j.getId() != null ? j.getId().toString() : null;
+            event.commit();
+        }
+    }
+
+    private void report(String source, long record, JournalRecord j, Action action, String uri, Integer score,
+                        List<String> changes) {
+        if (report != null) {
+            report.record(new Outcome(source, record, j.name(), action, uri, score, changes));
+        }
+    }
+
+    private void create(Journal j, String name, String source, long record, JournalRecord r,
+                        boolean hasPmcParticipation) {
+        try {
+            URI uri = null;
+            if (name != null) {
+                final URI named = repository.journalUri(name);
+                if (repository.createIfAbsent(named, j)) {
+                    uri = named;
                 } else {
-                    if (update) {
-                        numUpdated.incrementAndGet();
-                    } else {
-                        numOk.getAndIncrement();
+                    //the name is taken; it is this journal only if what is there would have matched the record
+                    final Journal existing = repository.read(named);
+                    final int score = existing != null
+                                      ? BatchJournalFinder.score(existing, r.nlmta(), r.name(), r.issns()) : 0;
+                    if (score >= BatchJournalFinder.MINIMUM_QUALIFYING_SCORE) {
+                        LOG.debug("Journal {} already exists at {}, updating it", j.getJournalName(), named);
+                        j.setId(named);
+                        addToFinder(j);
+                        if (hasPmcParticipation) {
+                            pmcMatched.add(named.toString());
+                        }
+                        update(r, named, hasPmcParticipation, source, record, score);
+                        return;
                     }
+                    LOG.warn("Journal {} is named {}, but the journal at {} does not match it; creating it at a " +
+                             "generated URI instead", j.getJournalName(), name, named);
                 }
-            } catch (final Exception e) {
-                LOG.warn("Could not update journal " + j.getJournalName(), e);
-                numError.getAndIncrement();
             }
+            if (uri == null) {
+                uri = repository.create(j);
+            }
+
+            j.setId(uri);
+            addToFinder(j);
+            LOG.debug("Loaded journal {} at {}", j.getJournalName(), uri);
+            numCreated.incrementAndGet();
+            report(source, record, r, Action.CREATED, uri.toString(), null, null);
+        } catch (final Exception e) {
+            LOG.warn("Could not load journal " + j.getJournalName(), e);
+            numError.getAndIncrement();
+            report(source, record, r, Action.FAILED, null, null, Collections.singletonList(String.valueOf(e)));
+        }
+    }
+
+    private void update(JournalRecord j, URI uri, boolean hasPmcParticipation, String source, long record,
+                        Integer score) {
+        try {
+            final Journal toUpdate = repository.read(uri);
+            if (toUpdate == null) {
+                gone(uri.toString());
+                report(source, record, j, Action.GONE, uri.toString(), score, null);
+                return;
+            }
+            write(j, uri, toUpdate, changes(j, toUpdate, hasPmcParticipation), source, record, score);
+        } catch (final Exception e) {
+            updateFailed(j, uri, source, record, score, e);
+        }
+    }
+
+    /* Apply a record to a journal read from the repository, returning the changes made, as field: old -> new */
+    private static List<String> changes(JournalRecord j, Journal toUpdate, boolean hasPmcParticipation) {
+        final List<String> changes = new ArrayList<>();
+
+        final PmcParticipation pmcParticipation = j.pmcParticipation();
+        if (hasPmcParticipation && toUpdate.getPmcParticipation() != pmcParticipation) {
+            changes.add("pmcParticipation: " + toUpdate.getPmcParticipation() + " -> " + pmcParticipation);
+            toUpdate.setPmcParticipation(pmcParticipation);
+        }
+
+        if (toUpdate.getIssns() == null || !toUpdate.getIssns().containsAll(j.issns())) {
+            changes.add("issns: " + toUpdate.getIssns() + " -> " + j.issns());
+            toUpdate.setIssns(new ArrayList<>(j.issns()));
+        }
+
+        if (toUpdate.getNlmta() == null && j.nlmta() != null) {
+            changes.add("nlmta: null -> " + j.nlmta());
+            toUpdate.setNlmta(j.nlmta());
+        }
+        return changes;
+    }
+
+    /* Write a changed journal, or count it as unchanged */
+    private void write(JournalRecord j, URI uri, Journal toUpdate, List<String> changes, String source, long record,
+                       Integer score) {
+        if (!changes.isEmpty()) {
+            if (!dryRun) {
+                repository.update(toUpdate);
+                LOG.debug("Updated journal {} at {}", j.name(), uri);
+            }
+            addToFinder(toUpdate);
+            numUpdated.incrementAndGet();
+            report(source, record, j, Action.UPDATED, uri.toString(), score, changes);
+        } else {
+            numOk.incrementAndGet();
+            report(source, record, j, Action.UNCHANGED, uri.toString(), score, null);
         }
     }
+
+    /* A matched journal has been deleted from the repository since it was indexed; stop matching it */
+    private void gone(String uri) {
+        LOG.warn("Journal {} no longer exists, skipping it", uri);
+        finder.forget(uri);
+        numGone.incrementAndGet();
+    }
+
+    private void updateFailed(JournalRecord j, URI uri, String source, long record, Integer score, Exception e) {
+        LOG.warn("Could not update journal " + j.name(), e);
+        numError.getAndIncrement();
+        report(source, record, j, Action.FAILED, uri.toString(), score, Collections.singletonList(String.valueOf(e)));
+    }
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventSettings;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Threshold;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Java Flight Recorder events for each stage of a load, so that a recording shows whether a slow run spends its time
+ * reading the repository, parsing, matching or writing.
+ * <p>
+ * Events cost next to nothing unless a recording is running. Events that happen once per record have a threshold of
+ * 1 ms by default, so that only slow records are recorded; a recording started with {@link #startRecording} may
+ * lower it. Time spent waiting for the finder's lock is part of the find and add events, and the JDK's own
+ * {@code jdk.JavaMonitorEnter} events show where it is contended.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class LoaderEvents {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoaderEvents.class);
+
+    private static final String PREFIX = "org.dataconservancy.pass.loader.";
+
+    private LoaderEvents() {
+        //never called
+    }
+
+    @Name(PREFIX + "ContainerFetch")
+    @Label("Container Fetch")
+    @Description("Request for the N-Triples dump of the journals container, until its response headers arrive")
+    @Category({"PASS", "Journal Loader"})
+    static class ContainerFetch extends Event {
+
+        @Label("Container")
+        String container;
+
+        @Label("Status")
+        int status;
+
+        @Label("Compressed")
+        boolean compressed;
+    }
+
+    @Name(PREFIX + "IndexBuild")
+    @Label("Index Build")
+    @Description("Reading a dump of the journals container into the finder's index")
+    @Category({"PASS", "Journal Loader"})
+    static class IndexBuild extends Event {
+
+        @Label("Index")
+        String index;
+
+        @Label("ISSNs")
+        long issns;
+
+        @Label("NLMTAs")
+        long nlmtas;
+
+        @Label("Names")
+        long names;
+    }
+
+    @Name(PREFIX + "RecordParse")
+    @Label("Record Parse")
+    @Description("Parsing a single journal record from a source")
+    @Category({"PASS", "Journal Loader"})
+    @Threshold("1 ms")
+    static class RecordParse extends Event {
+
+        @Label("Source")
+        String source;
+
+        @Label("Name")
+        String name;
+
+        @Label("NLMTA")
+        String nlmta;
+
+        @Label("ISSNs")
+        String issns;
+    }
+
+    @Name(PREFIX + "Find")
+    @Label("Find")
+    @Description("Matching a journal record against the repository's journals, including waiting for the finder")
+    @Category({"PASS", "Journal Loader"})
+    @Threshold("1 ms")
+    static class Find extends Event {
+
+        @Label("Name")
+        String name;
+
+        @Label("NLMTA")
+        String nlmta;
+
+        @Label("ISSNs")
+        String issns;
+
+        @Label("Outcome")
+        @Description("MATCHED, NOT_FOUND, or ALREADY_MATCHED")
+        String outcome;
+
+        @Label("URI")
+        String uri;
+    }
+
+    @Name(PREFIX + "FinderAdd")
+    @Label("Finder Add")
+    @Description("Adding a created or updated journal to the finder, including waiting for the finder")
+    @Category({"PASS", "Journal Loader"})
+    @Threshold("1 ms")
+    static class FinderAdd extends Event {
+
+        @Label("Name")
+        String name;
+
+        @Label("URI")
+        String uri;
+    }
+
+    @Name(PREFIX + "RepositoryOperation")
+    @Label("Repository Operation")
+    @Description("Reading, creating or updating a journal in the repository")
+    @Category({"PASS", "Journal Loader"})
+    static class RepositoryOperation extends Event {
+
+        @Label("Operation")
+        @Description("READ, CREATE, CREATE_IF_ABSENT or UPDATE")
+        String operation;
+
+        @Label("URI")
+        String uri;
+
+        @Label("Outcome")
+        @Description("OK, EXISTS if a named journal was already there, or FAILED")
+        String outcome;
+    }
+
+    /**
+     * Start recording to a file, which is written when the recording is stopped or the JVM exits.
+     *
+     * @param file      file to write the recording to
+     * @param settings  name of a JDK configuration, {@code default} or {@code profile}, or path to a {@code .jfc} file
+     * @param threshold threshold of events that happen once per record, or null to keep 1 ms
+     * @return the recording
+     * @throws IOException    if the configuration or file cannot be read or written
+     * @throws ParseException if the configuration file is malformed
+     */
+    static Recording startRecording(Path file, String settings, Duration threshold) throws IOException,
+        ParseException {
+        final Configuration configuration = settings.endsWith(".jfc")
+                                            ? Configuration.create(Path.of(settings))
+                                            : Configuration.getConfiguration(settings);
+
+        final Recording recording = new Recording(configuration);
+        recording.setName("journal-loader");
+        recording.setDestination(file);
+        recording.setToDisk(true);
+        recording.setDumpOnExit(true);
+
+        for (final Class<? extends Event> event : Arrays.<Class<? extends Event>>asList(
+            ContainerFetch.class, IndexBuild.class, RepositoryOperation.class)) {
+            recording.enable(event);
+        }
+        for (final Class<? extends Event> event : Arrays.<Class<? extends Event>>asList(
+            RecordParse.class, Find.class, FinderAdd.class)) {
+            final EventSettings perRecord = recording.enable(event);
+            if (threshold != null) {
+                perRecord.withThreshold(threshold);
+            }
+        }
+
+        recording.start();
+        LOG.info("Recording flight recorder events to {}", file);
+        return recording;
+    }
+
+    /**
+     * Record parsing each record of a source, if parse events are being recorded.
+     *
+     * @param source     name of the source
+     * @param spliterator records of the source, parsed as they are advanced
+     * @return spliterator that records a {@link RecordParse} event for every record
+     */
+    static Spliterator<JournalRecord> recordParsing(String source, Spliterator<JournalRecord> spliterator) {
+        return new RecordParsing(source, spliterator);
+    }
+
+    /**
+     * @return whether parse events would be recorded now
+     */
+    static boolean isRecordingParses() {
+        return new RecordParse().isEnabled();
+    }
+
+    /* Times each record from the start of an advance until the record is handed on */
+    private static class RecordParsing implements Spliterator<JournalRecord> {
+
+        private final String source;
+
+        private final Spliterator<JournalRecord> records;
+
+        RecordParsing(String source, Spliterator<JournalRecord> records) {
+            this.source = source;
+            this.records = records;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super JournalRecord> action) {
+            final RecordParse event = new RecordParse();
+            event.begin();
+            return records.tryAdvance(record -> {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.source = source;
+                    event.name = record.name();
+                    event.nlmta = record.nlmta();
+                    event.issns = String.join(",", record.issns());
+                    event.commit();
+                }
+                action.accept(record);
+            });
+        }
+
+        @Override
+        public Spliterator<JournalRecord> trySplit() {
+            final Spliterator<JournalRecord> split = records.trySplit();
+            return split != null ? new RecordParsing(source, split) : null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return records.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return records.characteristics();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long to non-negative int, for keeping millions of strings to a few primitive arrays by
+ * looking them up by {@link #hash(String)} rather than keeping them.
+ *
+ * @author apb@jhu.edu
+ */
+final class LongIntMap {
+
+    static final int ABSENT = -1;
+
+    /* 64-bit FNV-1a; the chance of two distinct values colliding is negligible */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private long[] keys = new long[1024];
+
+    private int[] values = new int[1024];
+
+    private int size;
+
+    {
+        Arrays.fill(values, ABSENT);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /* Returns the value, or ABSENT if there is none */
+    int get(long key) {
+        final int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != ABSENT; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return ABSENT;
+    }
+
+    /* Returns the existing value, or ABSENT if the value was added */
+    int putIfAbsent(long key, int value) {
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+
+        final int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == ABSENT) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return ABSENT;
+            }
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+
+        final int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != ABSENT) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != ABSENT) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key ^ (key >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -21,9 +21,24 @@ import static org.dataconservancy.pass.client.util.ConfigUtil.getSystemProperty;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.dataconservancy.pass.client.PassClientFactory;
 import org.dataconservancy.pass.client.fedora.FedoraConfig;
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,34 +56,293 @@ public class Main {
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) throws Exception {
+        final long runStarted = System.nanoTime();
 
         LogUtil.adjustLogLevels();
 
-        final JournalFinder finder = new BatchJournalFinder(FedoraConfig.getBaseUrl() + "journals");
+        final String jfr = getSystemProperty("jfr", null);
+        if (jfr != null) {
+            final String threshold = getSystemProperty("jfr.threshold", null);
+            LoaderEvents.startRecording(Paths.get(jfr), getSystemProperty("jfr.settings", "default"),
+                                        threshold != null ? Duration.ofMillis(Long.parseLong(threshold)) : null);
+        }
+
+        final String simulate = getSystemProperty("simulate", null);
+
+        final String clusters = getSystemProperty("clusters", null);
+        if (clusters != null) {
+            writeClusters(clusters, simulate);
+            return;
+        }
+
+        final String syncEvents = getSystemProperty("sync.events", null);
+        if (syncEvents != null && getSystemProperty("index", "heap").equals("mapped")) {
+            //sync keeps every journal's postings on the heap, which would defeat the mapped index
+            throw new IllegalArgumentException("sync.events cannot be used with a mapped index");
+        }
 
-        try (final LoaderEngine loader = new LoaderEngine(PassClientFactory.getPassClient(), finder)) {
+        final BatchJournalFinder finder;
+        final JournalRepository repository;
+        SimulatedJournalRepository simulated = null;
 
-            if (getSystemProperty("dryRun", null) != null) {
-                loader.setDryRun(true);
+        if (simulate != null) {
+            LOG.info("Simulating the repository with journals from {}", simulate);
+            simulated = SimulatedJournalRepository.fromConfig();
+            simulated.load(new FileInputStream(simulate));
+
+            finder = new BatchJournalFinder(createIndex());
+            if (syncEvents != null) {
+                finder.trackChanges();
+            }
+            finder.load(new FileInputStream(simulate));
+            repository = simulated;
+        } else {
+            finder = new BatchJournalFinder(FedoraConfig.getBaseUrl() + "journals", createIndex(),
+                                            syncEvents != null);
+            if (Boolean.parseBoolean(getSystemProperty("directHttp", "false"))) {
+                repository = new FedoraJournalRepository();
+            } else {
+                repository = new PassJournalRepository(PassClientFactory.getPassClient());
             }
+        }
+
+        if (syncEvents != null) {
+            startSync(syncEvents, finder, simulate);
+        }
 
-            final String pmcFile = getSystemProperty("pmc", null);
-            final String medlineFile = getSystemProperty("medline", null);
+        final JournalLookupService lookup = createLookupService(simulate);
 
-            if (pmcFile != null) {
-                final NihTypeAReader reader = new NihTypeAReader();
-                try (InputStream file = new FileInputStream(pmcFile)) {
-                    loader.load(reader.readJournals(file, UTF_8), reader.hasPmcParticipation());
+        final String reportFile = getSystemProperty("report", null);
+        final OutcomeReport report = reportFile != null ? new OutcomeReport(Paths.get(reportFile)) : null;
+
+        final JournalReaders readers = JournalReaders.defaults(getSystemProperty("mmap", null) != null,
+                                                               getSystemProperty("parallel", null) != null);
+
+        final ShardFilter shard = createShardFilter(simulate, readers);
+
+        try (final LoaderEngine loader = createEngine(repository, finder, report, runStarted)) {
+            loader.setShardFilter(shard);
+
+            final List<JournalSource> sources = openSources(readers);
+            try {
+                loader.load(sources);
+
+                if (Boolean.parseBoolean(getSystemProperty("reconcilePmc", "false"))) {
+                    loader.reconcilePmcParticipation();
                 }
+            } finally {
+                sources.forEach(JournalSource::close);
             }
+        }
 
-            if (medlineFile != null) {
-                final MedlineReader reader = new MedlineReader();
-                try (InputStream file = new FileInputStream(medlineFile)) {
-                    loader.load(reader.readJournals(file, UTF_8), reader.hasPmcParticipation());
+        final String inbox = getSystemProperty("daemon", null);
+        if (inbox != null) {
+            final LoaderDaemon daemon = new LoaderDaemon(Paths.get(inbox), readers, finder,
+                                                         () -> createEngine(repository, finder, report,
+                                                                            System.nanoTime()));
+            daemon.setQuietPeriod(Long.parseLong(getSystemProperty("daemon.quietPeriod", "5000")));
+            daemon.setReconcilePmc(Boolean.parseBoolean(getSystemProperty("reconcilePmc", "false")));
+
+            final Thread main = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                    main.join();
+                } catch (final Exception e) {
+                    LOG.warn("Could not stop daemon", e);
                 }
-            }
+            }));
+
+            daemon.run();
+        }
+
+        if (report != null) {
+            report.close();
+        }
+
+        if (lookup != null) {
+            LOG.info("Answering journal lookups until stopped");
+            lookup.awaitClose();
+        }
+
+        if (simulated != null) {
+            simulated.logStatistics();
         }
         LOG.info("done!");
     }
+
+    private static List<JournalSource> openSources(JournalReaders readers) throws Exception {
+        final String pmcFile = getSystemProperty("pmc", null);
+        final String medlineFile = getSystemProperty("medline", null);
+        final String nlmCatalogFile = getSystemProperty("nlmCatalog", null);
+        final String inputs = getSystemProperty("inputs", null);
+
+        //named files and inputs are ordered together, so PMC files are matched first wherever they are given
+        final Map<String, String> named = new LinkedHashMap<>();
+        if (pmcFile != null) {
+            named.put(pmcFile, "pmc");
+        }
+
+        if (medlineFile != null) {
+            named.put(medlineFile, "medline");
+        }
+
+        if (nlmCatalogFile != null) {
+            named.put(nlmCatalogFile, "nlmCatalog");
+        }
+
+        return readers.open(named, inputs != null ? Arrays.asList(inputs.trim().split("\\s*,\\s*"))
+                                                  : Collections.emptyList());
+    }
+
+    /* Link the keys of all repository journals and input records, so every shard assigns records the same way */
+    private static ShardFilter createShardFilter(String simulate, JournalReaders readers) throws Exception {
+        final String shardCount = getSystemProperty("shardCount", null);
+        if (shardCount == null) {
+            return null;
+        }
+        if (getSystemProperty("daemon", null) != null) {
+            throw new IllegalArgumentException("Shard mode cannot be combined with daemon mode");
+        }
+
+        final int shardIndex = Integer.parseInt(getSystemProperty("shardIndex", "0"));
+        final ShardFilter shard = new ShardFilter(shardIndex, Integer.parseInt(shardCount));
+        LOG.info("Loading shard {} of {}", shardIndex, shardCount);
+
+        if (simulate != null) {
+            BatchJournalFinder.read(new FileInputStream(simulate), shard);
+        } else {
+            try (CloseableHttpResponse response = BatchJournalFinder.download(FedoraConfig.getBaseUrl() + "journals")) {
+                BatchJournalFinder.read(response.getEntity().getContent(), shard);
+            }
+        }
+
+        final List<JournalSource> sources = openSources(readers);
+        try {
+            for (final JournalSource source : sources) {
+                source.records().forEach(shard::add);
+            }
+        } finally {
+            sources.forEach(JournalSource::close);
+        }
+        return shard;
+    }
+
+    private static LoaderEngine createEngine(JournalRepository repository, JournalFinder finder,
+                                             OutcomeReport report, long runStarted) {
+        final LoaderEngine loader = new LoaderEngine(repository, finder);
+        loader.setReport(report);
+
+        if (getSystemProperty("dryRun", null) != null) {
+            loader.setDryRun(true);
+        }
+
+        loader.setNumThreads(Integer.parseInt(getSystemProperty("threads", "1")));
+
+        loader.setDeduplicate(Boolean.parseBoolean(getSystemProperty("dedup", "true")));
+
+        loader.setNamedCreates(Boolean.parseBoolean(getSystemProperty("namedCreates", "false")));
+
+        if (getSystemProperty("deadline", null) != null) {
+            loader.setDeadline(runStarted, Duration.ofSeconds(Long.parseLong(getSystemProperty("deadline", null))));
+        }
+
+        if (getSystemProperty("deferred", null) != null) {
+            loader.setDeferred(Paths.get(getSystemProperty("deferred", null)));
+        }
+
+        if (getSystemProperty("parsers", null) != null) {
+            loader.setNumParsers(Integer.parseInt(getSystemProperty("parsers", null)));
+        }
+
+        return loader;
+    }
+
+    private static void writeClusters(String file, String simulate) throws Exception {
+        final Set<Field> fields = EnumSet.noneOf(Field.class);
+        for (final String field : getSystemProperty("clusters.fields", "ISSN,NLMTA,NAME").trim().split("\\s*,\\s*")) {
+            fields.add(Field.valueOf(field.toUpperCase()));
+        }
+        final DuplicateClusters clusters = new DuplicateClusters(fields);
+
+        final long start = System.nanoTime();
+        if (simulate != null) {
+            BatchJournalFinder.read(new FileInputStream(simulate), clusters);
+        } else {
+            LOG.info("Analyzing journals in {}journals", FedoraConfig.getBaseUrl());
+            try (CloseableHttpResponse response = BatchJournalFinder.download(FedoraConfig.getBaseUrl() + "journals")) {
+                BatchJournalFinder.read(response.getEntity().getContent(), clusters);
+            }
+        }
+
+        try (Writer out = Files.newBufferedWriter(Paths.get(file), UTF_8)) {
+            final int written = clusters.write(out, Integer.parseInt(getSystemProperty("clusters.minSize", "2")));
+            LOG.info("Wrote {} clusters of likely duplicates among {} journals to {} in {} ms", written,
+                     clusters.journals(), file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static void startSync(String events, BatchJournalFinder finder, String simulate) {
+        LOG.info("Applying journal changes from {} to the index", events);
+        final JournalChangeSource source = new FileJournalChangeSource(Paths.get(events));
+        final JournalIndexSync sync = new JournalIndexSync(source, finder, f -> {
+            if (simulate != null) {
+                try (InputStream in = new FileInputStream(simulate)) {
+                    f.resync(in);
+                }
+            } else {
+                f.resync(FedoraConfig.getBaseUrl() + "journals");
+            }
+        });
+
+        final Thread thread = new Thread(sync, "journal-index-sync");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                sync.close();
+            } catch (final Exception e) {
+                LOG.warn("Could not stop journal index sync", e);
+            }
+        }));
+    }
+
+    private static JournalLookupService createLookupService(String simulate) throws Exception {
+        final String port = getSystemProperty("lookup.port", null);
+        if (port == null) {
+            return null;
+        }
+
+        final JournalLookupService lookup = new JournalLookupService(() -> {
+            if (simulate != null) {
+                final BatchJournalFinder finder = new BatchJournalFinder();
+                finder.load(new FileInputStream(simulate));
+                return finder;
+            }
+            return new BatchJournalFinder(FedoraConfig.getBaseUrl() + "journals");
+        });
+
+        lookup.start(new InetSocketAddress(getSystemProperty("lookup.host", "localhost"), Integer.parseInt(port)),
+                     Integer.parseInt(getSystemProperty("lookup.threads",
+                                                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                     Long.parseLong(getSystemProperty("lookup.refresh", "3600")));
+        Runtime.getRuntime().addShutdownHook(new Thread(lookup::close));
+
+        return lookup;
+    }
+
+    private static JournalIndex createIndex() {
+        final String index = getSystemProperty("index", "heap");
+
+        if (index.equals("mapped")) {
+            final String dir = getSystemProperty("index.dir", System.getProperty("java.io.tmpdir"));
+            LOG.info("Indexing repository journals in memory-mapped files in {}", dir);
+            return new MappedJournalIndex(Paths.get(dir),
+                                          Integer.parseInt(getSystemProperty("index.cacheSize", "10000")));
+        } else if (index.equals("heap")) {
+            return new HeapJournalIndex();
+        }
+
+        throw new IllegalArgumentException("Unknown index type: " + index);
+    }
 }
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps postings in a sorted, memory-mapped file off the heap, so that heap use does not grow with the number of
+ * journals in the repository.
+ * <p>
+ * While the repository is being loaded, postings are buffered in small batches, each sorted and spilled to a run
+ * file. Once loaded, the runs are merged into a single file of postings sorted by identifier, along with a file of
+ * offsets to each identifier, and both are memory-mapped. Lookups binary search the mapped offsets. The results of
+ * recent lookups are cached on the heap, and postings added or removed after loading (for journals created, updated
+ * or deleted since) are kept on the heap.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class MappedJournalIndex implements JournalIndex, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedJournalIndex.class);
+
+    private static final Set<String> NONE = Collections.emptySet();
+
+    private final Path dir;
+
+    private final int cacheSize;
+
+    private int runSize = 1 << 18;
+
+    private List<Posting> pending = new ArrayList<>();
+
+    private final List<Path> runs = new ArrayList<>();
+
+    private Path dataFile;
+
+    private Path offsetsFile;
+
+    private MappedFile data;
+
+    private MappedFile offsets;
+
+    private long keyCount;
+
+    private final int[] sizes = new int[Field.values().length];
+
+    private final Map<String, Set<String>> added = new HashMap<>();
+
+    private final Map<String, Set<String>> removed = new HashMap<>();
+
+    private final Map<String, Set<String>> cache;
+
+    /**
+     * @param dir       directory for index files
+     * @param cacheSize number of lookups to cache on the heap
+     */
+    public MappedJournalIndex(Path dir, int cacheSize) {
+        this.dir = dir;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<String, Set<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+                return size() > MappedJournalIndex.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param runSize number of postings sorted in memory at once while loading
+     */
+    void setRunSize(int runSize) {
+        this.runSize = runSize;
+    }
+
+    @Override
+    public synchronized Set<String> get(Field field, String key) {
+        loaded();
+
+        final String cacheKey = cacheKey(field, key);
+        Set<String> uris = cache.get(cacheKey);
+
+        if (uris == null) {
+            uris = search(encode(field, key));
+
+            final Set<String> more = added.get(cacheKey);
+            if (more != null) {
+                if (uris == null) {
+                    uris = new LinkedHashSet<>(more);
+                } else {
+                    uris.addAll(more);
+                }
+            }
+
+            final Set<String> gone = removed.get(cacheKey);
+            if (gone != null && uris != null) {
+                uris.removeAll(gone);
+                if (uris.isEmpty()) {
+                    uris = null;
+                }
+            }
+
+            cache.put(cacheKey, uris != null ? uris : NONE);
+        }
+
+        return uris == NONE ? null : uris;
+    }
+
+    @Override
+    public synchronized void add(Field field, String key, String uri) {
+        if (data == null) {
+            pending.add(new Posting(encode(field, key), uri));
+            if (pending.size() >= runSize) {
+                spill();
+            }
+        } else {
+            final String cacheKey = cacheKey(field, key);
+            final Set<String> uris = added.computeIfAbsent(cacheKey, k -> new LinkedHashSet<>());
+            if (uris.isEmpty() && search(encode(field, key)) == null) {
+                sizes[field.ordinal()]++;
+            }
+            uris.add(uri);
+
+            final Set<String> gone = removed.get(cacheKey);
+            if (gone != null && gone.remove(uri) && gone.isEmpty()) {
+                removed.remove(cacheKey);
+            }
+            cache.remove(cacheKey);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Field field, String key, String uri) {
+        final boolean had = get(field, key) != null;
+
+        final String cacheKey = cacheKey(field, key);
+        final Set<String> more = added.get(cacheKey);
+        if (more != null && more.remove(uri) && more.isEmpty()) {
+            added.remove(cacheKey);
+        }
+        removed.computeIfAbsent(cacheKey, k -> new HashSet<>()).add(uri);
+        cache.remove(cacheKey);
+
+        if (had && get(field, key) == null) {
+            sizes[field.ordinal()]--;
+        }
+    }
+
+    @Override
+    public synchronized int size(Field field) {
+        loaded();
+        return sizes[field.ordinal()];
+    }
+
+    /**
+     * Merge postings added so far into the mapped index file. Postings added afterwards are kept on the heap.
+     */
+    @Override
+    public synchronized void loaded() {
+        if (data != null) {
+            return;
+        }
+
+        try {
+            spill();
+            merge();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not build journal index in " + dir, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data = null;
+        offsets = null;
+        for (final Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        if (dataFile != null) {
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(offsetsFile);
+        }
+    }
+
+    private void spill() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(pending);
+        try {
+            final Path run = Files.createTempFile(dir, "journal-index-run", ".bin");
+            run.toFile().deleteOnExit();
+            try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                for (final Posting posting : pending) {
+                    out.writeInt(posting.key.length);
+                    out.write(posting.key);
+                    out.writeUTF(posting.uri);
+                }
+            }
+            runs.add(run);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write journal index run in " + dir, e);
+        }
+        pending = new ArrayList<>();
+    }
+
+    private void merge() throws IOException {
+        dataFile = Files.createTempFile(dir, "journal-index", ".dat");
+        offsetsFile = Files.createTempFile(dir, "journal-index", ".idx");
+        dataFile.toFile().deleteOnExit();
+        offsetsFile.toFile().deleteOnExit();
+
+        final PriorityQueue<RunReader> readers = new PriorityQueue<>();
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(dataFile), 1 << 16));
+             DataOutputStream index = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(offsetsFile), 1 << 16))) {
+
+            for (final Path run : runs) {
+                final RunReader reader = new RunReader(run);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            long position = 0;
+            while (!readers.isEmpty()) {
+                final byte[] key = readers.peek().posting.key;
+                final Set<String> uris = new LinkedHashSet<>();
+
+                while (!readers.isEmpty() && compare(readers.peek().posting.key, key) == 0) {
+                    final RunReader reader = readers.poll();
+                    uris.add(reader.posting.uri);
+                    if (reader.next()) {
+                        readers.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+
+                index.writeLong(position);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(uris.size());
+                position += 8 + key.length;
+                for (final String uri : uris) {
+                    final byte[] bytes = uri.getBytes(UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    position += 4 + bytes.length;
+                }
+
+                sizes[key[0]]++;
+                keyCount++;
+            }
+        } finally {
+            for (final RunReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        for (final Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+
+        data = new MappedFile(dataFile);
+        offsets = new MappedFile(offsetsFile);
+
+        LOG.info("Indexed {} journal identifiers in {}", keyCount, dataFile);
+    }
+
+    private Set<String> search(byte[] key) {
+        long low = 0;
+        long high = keyCount - 1;
+
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            final long position = offsets.getLong(mid * 8);
+            final int cmp = compare(data, position + 4, data.getInt(position), key);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                long next = position + 4 + data.getInt(position);
+                final int count = data.getInt(next);
+                next += 4;
+
+                final Set<String> uris = new LinkedHashSet<>();
+                for (int i = 0; i < count; i++) {
+                    final int length = data.getInt(next);
+                    uris.add(new String(data.getBytes(next + 4, length), UTF_8));
+                    next += 4 + length;
+                }
+                return uris;
+            }
+        }
+
+        return null;
+    }
+
+    private static String cacheKey(Field field, String key) {
+        return field.ordinal() + key;
+    }
+
+    private static byte[] encode(Field field, String key) {
+        final byte[] bytes = key.getBytes(UTF_8);
+        final byte[] encoded = new byte[bytes.length + 1];
+        encoded[0] = (byte) field.ordinal();
+        System.arraycopy(bytes, 0, encoded, 1, bytes.length);
+        return encoded;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            final int cmp = Byte.toUnsignedInt(a[i]) - Byte.toUnsignedInt(b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int compare(MappedFile file, long position, int length, byte[] b) {
+        final int common = Math.min(length, b.length);
+        for (int i = 0; i < common; i++) {
+            final int cmp = Byte.toUnsignedInt(file.get(position + i)) - Byte.toUnsignedInt(b[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - b.length;
+    }
+
+    /**
+     * An identifier, encoded as its field followed by its UTF-8 bytes, and a URI having it
+     */
+    private static final class Posting implements Comparable<Posting> {
+
+        final byte[] key;
+
+        final String uri;
+
+        Posting(byte[] key, String uri) {
+            this.key = key;
+            this.uri = uri;
+        }
+
+        @Override
+        public int compareTo(Posting other) {
+            return compare(key, other.key);
+        }
+    }
+
+    /**
+     * Reads the postings of a sorted run in order
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+
+        private final DataInputStream in;
+
+        Posting posting;
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                final byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                posting = new Posting(key, in.readUTF());
+                return true;
+            } catch (final EOFException e) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            return posting.compareTo(other.posting);
+        }
+    }
+
+    /**
+     * A read-only file mapped in segments, so it may be larger than a single buffer allows
+     */
+    private static final class MappedFile {
+
+        private static final int SEGMENT_BITS = 30;
+
+        private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+        private final MappedByteBuffer[] segments;
+
+        MappedFile(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final long size = channel.size();
+                segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < segments.length; i++) {
+                    final long start = i * SEGMENT_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                              Math.min(SEGMENT_SIZE, size - start));
+                }
+            }
+        }
+
+        byte get(long position) {
+            return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1)));
+        }
+
+        int getInt(long position) {
+            return (Byte.toUnsignedInt(get(position)) << 24) | (Byte.toUnsignedInt(get(position + 1)) << 16) |
+                   (Byte.toUnsignedInt(get(position + 2)) << 8) | Byte.toUnsignedInt(get(position + 3));
+        }
+
+        long getLong(long position) {
+            return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+        }
+
+        byte[] getBytes(long position, int length) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = get(position + i);
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * Parses Medline journals from a memory-mapped file, scanning bytes rather than decoding lines.
+ * <p>
+ * Produces the same journals as {@link MedlineReader}. Files must be UTF-8 (or ASCII) encoded. Streams that are not
+ * files are read by {@link MedlineReader}. Files may be parsed in parallel, split at record boundaries by
+ * {@link MedlineSpliterator}.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class MappedMedlineReader implements FileJournalReader {
+
+    private boolean parallel = false;
+
+    /**
+     * Parse files in parallel, in the common fork/join pool. Journals are still encountered in file order.
+     *
+     * @param parallel whether to parse in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Override
+    public Stream<Journal> readJournals(InputStream source, Charset charset) {
+        return new MedlineReader().readJournals(source, charset);
+    }
+
+    @Override
+    public Stream<JournalRecord> readRecords(InputStream source, Charset charset) {
+        return new MedlineReader().readRecords(source, charset);
+    }
+
+    @Override
+    public Stream<Journal> readJournals(Path file) throws IOException {
+        return readRecords(file).map(JournalRecord::journal);
+    }
+
+    @Override
+    public Stream<JournalRecord> readRecords(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Medline file is too large to map: " + file);
+            }
+            return readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Stream<Journal> readJournals(ByteBuffer buffer) {
+        return readRecords(buffer).map(JournalRecord::journal);
+    }
+
+    Stream<JournalRecord> readRecords(ByteBuffer buffer) {
+        return StreamSupport.stream(new MedlineSpliterator(buffer), parallel);
+    }
+
+    @Override
+    public boolean hasPmcParticipation() {
+        return false;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses Medline journal records directly from bytes, in the same way as {@link MedlineReader}.
+ * <p>
+ * Parses the range of a buffer between a start and end offset. The range either starts at the beginning of the
+ * file, or at a record boundary line. Bytes are copied from the buffer a window at a time and scanned in place;
+ * strings are only created for field values that are kept.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class MedlineParser {
+
+    private static final byte[] TITLE_FIELD = "JournalTitle".getBytes(US_ASCII);
+
+    private static final byte[] ISSN_FIELD = "ISSN".getBytes(US_ASCII);
+
+    private static final byte[] ABBR_FIELD = "MedAbbr".getBytes(US_ASCII);
+
+    private static final byte[] PRINT = "Print".getBytes(US_ASCII);
+
+    private static final byte[] ONLINE = "Online".getBytes(US_ASCII);
+
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    private final ByteBuffer buffer;
+
+    private final int end;
+
+    /* Bytes of the buffer from windowStart, up to windowLength */
+    private byte[] window = new byte[WINDOW_SIZE];
+
+    private int windowStart;
+
+    private int windowLength;
+
+    /* Offset in the window of the next line */
+    private int position;
+
+    /* Current line */
+    private int lineStart;
+
+    private int lineEnd;
+
+    private boolean boundary;
+
+    private final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
+
+    /**
+     * @param buffer     buffer containing Medline records
+     * @param start      offset of the beginning of the file, or of a boundary line ending a record
+     * @param end        offset of the end of the range to parse
+     * @param atBoundary whether start is at a boundary line, rather than at the beginning of the file
+     */
+    MedlineParser(ByteBuffer buffer, int start, int end, boolean atBoundary) {
+        this.buffer = buffer.duplicate();
+        this.windowStart = start;
+        this.end = end;
+        if (atBoundary && hasMore()) {
+            nextLine();
+        }
+    }
+
+    /**
+     * Parse the next record.
+     *
+     * @return the record, or null if there are no more records in the range
+     */
+    JournalRecord next() {
+        if (!hasMore()) {
+            return null;
+        }
+
+        // Line following a boundary
+        nextLine();
+
+        final CompactJournalRecord.Builder j = builder;
+        while (hasMore()) {
+            nextLine();
+
+            if (boundary) {
+                break;
+            } else if (lineEnd == lineStart) {
+                continue;
+            }
+
+            switch (window[lineStart]) {
+            case 'J':
+                if (startsWith(TITLE_FIELD)) {
+                    j.name(value());
+                }
+                break;
+            case 'I':
+                if (startsWith(ISSN_FIELD)) {
+                    final String issn = value();
+                    final String type = type();
+                    if (issn.length() > 0) {
+                        j.issn(String.join(":", type, issn));
+                    }
+                }
+                break;
+            case 'M':
+                if (startsWith(ABBR_FIELD)) {
+                    j.nlmta(value());
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        return j.build();
+    }
+
+    private boolean hasMore() {
+        return windowStart + position < end;
+    }
+
+    /* Find the bounds of the next line, and whether it is a boundary */
+    private void nextLine() {
+        int i = position;
+
+        while (true) {
+            final byte[] w = window;
+            final int length = windowLength;
+            while (i < length && w[i] != '\n' && w[i] != '\r') {
+                i++;
+            }
+
+            if (i < length) {
+                break;
+            }
+
+            final int shift = fill();
+            if (shift < 0) {
+                break;
+            }
+            i -= shift;
+        }
+
+        lineStart = position;
+        lineEnd = i;
+        boundary = isBoundary();
+
+        if (i < windowLength && window[i] == '\r') {
+            if (i + 1 == windowLength) {
+                final int shift = fill();
+                if (shift >= 0) {
+                    i -= shift;
+                    lineStart -= shift;
+                    lineEnd -= shift;
+                }
+            }
+            position = i + 1 < windowLength && window[i + 1] == '\n' ? i + 2 : i + 1;
+        } else {
+            position = i < windowLength ? i + 1 : i;
+        }
+    }
+
+    /*
+     * Whether the current line contains four dashes. Any run of four dashes covers every fourth byte, so only those
+     * are checked before looking either side.
+     */
+    private boolean isBoundary() {
+        for (int i = lineStart + 3; i < lineEnd; i += 4) {
+            if (window[i] == '-') {
+                int from = i;
+                while (from > lineStart && window[from - 1] == '-') {
+                    from--;
+                }
+                int to = i + 1;
+                while (to < lineEnd && window[to] == '-') {
+                    to++;
+                }
+                if (to - from >= 4) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Move the current line to the start of the window and read more of the buffer after it. Returns how far the line
+     * moved, or -1 if there is nothing more to read.
+     */
+    private int fill() {
+        final int available = end - (windowStart + windowLength);
+        if (available <= 0) {
+            return -1;
+        }
+
+        final int keep = windowLength - position;
+        if (keep == window.length) {
+            final byte[] larger = new byte[window.length * 2];
+            System.arraycopy(window, position, larger, 0, keep);
+            window = larger;
+        } else {
+            System.arraycopy(window, position, window, 0, keep);
+        }
+
+        final int shift = position;
+        windowStart += position;
+        position = 0;
+
+        final int length = Math.min(available, window.length - keep);
+        buffer.position(windowStart + keep);
+        buffer.get(window, keep, length);
+        windowLength = keep + length;
+        return shift;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (window[lineStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Trimmed text following the first colon, or the whole line if there is none */
+    private String value() {
+        int from = lineStart;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (window[i] == ':') {
+                from = i + 1;
+                break;
+            }
+        }
+        return string(from, lineEnd);
+    }
+
+    /* Trimmed text within the first parentheses */
+    private String type() {
+        int open = -1;
+        int close = -1;
+        for (int i = lineStart; i < lineEnd && close == -1; i++) {
+            final byte b = window[i];
+            if (b == '(' && open == -1) {
+                open = i;
+            } else if (b == ')') {
+                close = i;
+            }
+        }
+
+        final int from = open != -1 ? open + 1 : lineStart;
+        if (close < from) {
+            throw new RuntimeException("Error reading journal stream: malformed ISSN field");
+        }
+
+        return string(from, close);
+    }
+
+    private String string(int from, int to) {
+        while (from < to && Byte.toUnsignedInt(window[from]) <= ' ') {
+            from++;
+        }
+        while (to > from && Byte.toUnsignedInt(window[to - 1]) <= ' ') {
+            to--;
+        }
+
+        if (equals(from, to, PRINT)) {
+            return "Print";
+        } else if (equals(from, to, ONLINE)) {
+            return "Online";
+        }
+
+        return new String(window, from, to - from, UTF_8);
+    }
+
+    private boolean equals(int from, int to, byte[] value) {
+        if (to - from != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (window[from + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -44,12 +44,18 @@ public class MedlineReader implements JournalReader {
 
     @Override
     public Stream<Journal> readJournals(InputStream source, Charset charset) {
+        return readRecords(source, charset).map(JournalRecord::journal);
+    }
+
+    @Override
+    public Stream<JournalRecord> readRecords(InputStream source, Charset charset) {
 
         final BufferedReader reader = new BufferedReader(new InputStreamReader(source, charset));
+        final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
 
-        final Iterable<Journal> i = () -> new Iterator<Journal>() {
+        final Iterable<JournalRecord> i = () -> new Iterator<JournalRecord>() {
 
-            Journal next = read(reader);
+            JournalRecord next = read(reader, builder);
 
             @Override
             public boolean hasNext() {
@@ -57,11 +63,11 @@ public class MedlineReader implements JournalReader {
             }
 
             @Override
-            public Journal next() {
+            public JournalRecord next() {
                 try {
                     return next;
                 } finally {
-                    next = read(reader);
+                    next = read(reader, builder);
                 }
             }
         };
@@ -70,27 +76,26 @@ public class MedlineReader implements JournalReader {
 
     }
 
-    private Journal read(BufferedReader reader) {
+    private JournalRecord read(BufferedReader reader, CompactJournalRecord.Builder j) {
         try {
             if (reader.readLine() != null) { // Boundary
-                final Journal j = new Journal();
 
                 for (String line = reader.readLine(); !(line == null || line.contains(BOUNDARY)); line = reader
                     .readLine()) {
                     if (line.startsWith(TITLE_FIELD)) {
-                        j.setJournalName(extract(line));
+                        j.name(extract(line));
                     } else if (line.startsWith(ISSN_FIELD)) {
                         final String issn = extract(line);
                         final String type = extractType(line);
                         if (issn.length() > 0) {
-                            j.getIssns().add(String.join(":", type, issn));
+                            j.issn(String.join(":", type, issn));
                         }
                     } else if (line.startsWith(ABBR_FIELD)) {
-                        j.setNlmta(extract(line));
+                        j.nlmta(extract(line));
                     }
                 }
 
-                return j;
+                return j.build();
             }
         } catch (final IOException e) {
             throw new RuntimeException("Error reading journal stream: ", e);
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits Medline records in a buffer into ranges that can be parsed independently.
+ * <p>
+ * Ranges are split at boundary lines that a sequential parse would treat as the end of a record, so that parsing
+ * the ranges gives exactly the journals of a sequential parse. The encounter order is the order of records in the
+ * file.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class MedlineSpliterator implements Spliterator<JournalRecord> {
+
+    /* Rough size of a record, for estimating the number of journals */
+    private static final int RECORD_SIZE = 256;
+
+    private static final int MIN_SPLIT = 1 << 16;
+
+    private final ByteBuffer buffer;
+
+    private int start;
+
+    private final int end;
+
+    private boolean atBoundary;
+
+    private MedlineParser parser;
+
+    MedlineSpliterator(ByteBuffer buffer) {
+        this(buffer, 0, buffer.limit(), false);
+    }
+
+    private MedlineSpliterator(ByteBuffer buffer, int start, int end, boolean atBoundary) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.atBoundary = atBoundary;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super JournalRecord> action) {
+        if (parser == null) {
+            parser = new MedlineParser(buffer, start, end, atBoundary);
+        }
+
+        final JournalRecord j = parser.next();
+        if (j == null) {
+            return false;
+        }
+
+        action.accept(j);
+        return true;
+    }
+
+    @Override
+    public Spliterator<JournalRecord> trySplit() {
+        if (parser != null || end - start < MIN_SPLIT) {
+            return null;
+        }
+
+        final int split = findBoundary(buffer, start + (end - start) / 2, end);
+        if (split <= start) {
+            return null;
+        }
+
+        final Spliterator<JournalRecord> prefix = new MedlineSpliterator(buffer, start, split, atBoundary);
+        start = split;
+        atBoundary = true;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return (end - start) / RECORD_SIZE + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Find the first line at or after the given offset that a sequential parse would treat as the end of a record.
+     * <p>
+     * A line containing four dashes is a boundary. A boundary following a line that is not a boundary always ends a
+     * record; a boundary following another boundary may instead be skipped as the first line of a record, so it is
+     * passed over.
+     * </p>
+     *
+     * @param buffer buffer containing Medline records
+     * @param from   offset to search from
+     * @param end    offset of the end of the records
+     * @return offset of the start of the line, or -1 if there is none
+     */
+    static int findBoundary(ByteBuffer buffer, int from, int end) {
+        int start = from;
+        while (start > 0 && start < end && !isLineStart(buffer, start)) {
+            start++;
+        }
+        if (start == 0 || start >= end) {
+            return -1;
+        }
+
+        boolean previousBoundary = isBoundary(buffer, previousLineStart(buffer, start), end);
+        while (start < end) {
+            final boolean boundary = isBoundary(buffer, start, end);
+            if (boundary && !previousBoundary) {
+                return start;
+            }
+            previousBoundary = boundary;
+            start = nextLineStart(buffer, start, end);
+        }
+
+        return -1;
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isLineStart(ByteBuffer buffer, int i) {
+        final byte previous = buffer.get(i - 1);
+        return previous == '\n' || (previous == '\r' && buffer.get(i) != '\n');
+    }
+
+    private static boolean isBoundary(ByteBuffer buffer, int start, int end) {
+        int dashes = 0;
+        for (int i = start; i < end && !isLineEnd(buffer.get(i)); i++) {
+            if (buffer.get(i) == '-') {
+                if (++dashes == 4) {
+                    return true;
+                }
+            } else {
+                dashes = 0;
+            }
+        }
+        return false;
+    }
+
+    private static int nextLineStart(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        while (i < end && !isLineEnd(buffer.get(i))) {
+            i++;
+        }
+        if (i + 1 < end && buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+            return i + 2;
+        }
+        return i < end ? i + 1 : i;
+    }
+
+    private static int previousLineStart(ByteBuffer buffer, int start) {
+        int i = start - 1;
+        if (i > 0 && buffer.get(i) == '\n' && buffer.get(i - 1) == '\r') {
+            i--;
+        }
+        while (i > 0 && !isLineEnd(buffer.get(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+
+/**
+ * A record backed by an existing journal model object, for journals that were not produced by a reader.
+ *
+ * @author apb@jhu.edu
+ */
+final class ModelJournalRecord implements JournalRecord {
+
+    private final Journal journal;
+
+    ModelJournalRecord(Journal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public String name() {
+        return journal.getJournalName();
+    }
+
+    @Override
+    public String nlmta() {
+        return journal.getNlmta();
+    }
+
+    @Override
+    public List<String> issns() {
+        return journal.getIssns() != null ? Collections.unmodifiableList(journal.getIssns()) : Collections.emptyList();
+    }
+
+    /**
+     * @return the wrapped journal itself
+     */
+    @Override
+    public Journal journal() {
+        return journal;
+    }
+
+    @Override
+    public boolean isActive() {
+        return journal.getPmcParticipation() == PmcParticipation.A;
+    }
+
+    @Override
+    public PmcParticipation pmcParticipation() {
+        return journal.getPmcParticipation();
+    }
+}
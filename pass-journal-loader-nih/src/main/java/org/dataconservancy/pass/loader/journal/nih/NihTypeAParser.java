@@ -0,0 +1,277 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses NIH type A participation csv records directly from bytes, in the same way as {@link NihTypeAReader}.
+ * <p>
+ * Follows RFC 4180 as commons-csv does: fields may be quoted, with doubled quotes as escapes and line breaks
+ * allowed within quotes; CR, LF and CRLF all end records; fields are not trimmed. Only the columns that become part
+ * of a journal are turned into strings. Bytes are copied from the buffer a window at a time and scanned in place.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class NihTypeAParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NihTypeAParser.class);
+
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    /* Name, NLMTA, print ISSN, online ISSN, start date, end date */
+    private static final int COLUMNS = 6;
+
+    private final ByteBuffer buffer;
+
+    private final int end;
+
+    private byte[] window = new byte[WINDOW_SIZE];
+
+    private int windowStart;
+
+    private int windowLength;
+
+    /* Offset in the window of the next record */
+    private int position;
+
+    /* Fields of the current record */
+    private int fields;
+
+    private final int[] fieldStart = new int[COLUMNS];
+
+    private final int[] fieldEnd = new int[COLUMNS];
+
+    private final boolean[] fieldEscaped = new boolean[COLUMNS];
+
+    private final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
+
+    /**
+     * @param buffer buffer containing csv records
+     * @param start  offset of the start of a record
+     * @param end    offset of the end of the range to parse
+     */
+    NihTypeAParser(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer.duplicate();
+        this.windowStart = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse the next record that can be made into a journal. Records with fewer than four columns are skipped.
+     *
+     * @return the record, or null if there are no more records in the range
+     */
+    JournalRecord next() {
+        while (windowStart + position < end) {
+            int next = parse(position);
+            while (next < 0) {
+                fill();
+                next = parse(position);
+            }
+
+            final JournalRecord j = toRecord();
+            position = next;
+
+            if (j != null) {
+                return j;
+            }
+        }
+        return null;
+    }
+
+    private JournalRecord toRecord() {
+        if (fields < 4) {
+            LOG.warn("Could not create journal record for {}, it has only {} columns",
+                     fields > 0 ? field(0) : null, fields);
+            return null;
+        }
+
+        final CompactJournalRecord.Builder j = builder;
+        j.name(field(0));
+        j.nlmta(field(1));
+
+        if (!isBlank(2)) {
+            j.issn("Print:" + field(2));
+        }
+        if (!isBlank(3)) {
+            j.issn("Online:" + field(3));
+        }
+
+        // Active unless there is an end date
+        j.active(fields <= 5 || isBlank(5));
+
+        return j.build();
+    }
+
+    /*
+     * Parse the record starting at the given offset in the window, returning the offset of the next record, or -1 if
+     * the window ends before the record does and there is more to read.
+     */
+    private int parse(int start) {
+        final byte[] w = window;
+        final int length = windowLength;
+        final boolean eof = windowStart + length >= end;
+
+        fields = 0;
+        int i = start;
+
+        while (true) {
+            if (i == length) {
+                if (!eof) {
+                    return -1;
+                }
+                // Empty field after a trailing delimiter
+                addField(i, i, false);
+                return i;
+            }
+
+            final int from;
+            final int to;
+            boolean escaped = false;
+
+            if (w[i] == '"') {
+                from = ++i;
+                while (true) {
+                    if (i == length) {
+                        if (!eof) {
+                            return -1;
+                        }
+                        throw new IllegalStateException("EOF reached before encapsulated token finished");
+                    }
+                    if (w[i] == '"') {
+                        if (i + 1 == length && !eof) {
+                            return -1;
+                        } else if (i + 1 < length && w[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        i++;
+                    }
+                }
+                to = i++;
+
+                while (i < length && w[i] != ',' && w[i] != '\n' && w[i] != '\r') {
+                    if (!isWhitespace(w[i])) {
+                        throw new IllegalStateException("Invalid char between encapsulated token and delimiter");
+                    }
+                    i++;
+                }
+            } else {
+                from = i;
+                while (i < length && w[i] != ',' && w[i] != '\n' && w[i] != '\r') {
+                    i++;
+                }
+                to = i;
+            }
+
+            if (i == length) {
+                if (!eof) {
+                    return -1;
+                }
+                addField(from, to, escaped);
+                return i;
+            }
+
+            final byte b = w[i];
+            if (b == '\r' && i + 1 == length && !eof) {
+                return -1;
+            }
+
+            addField(from, to, escaped);
+
+            if (b == ',') {
+                i++;
+            } else if (b == '\r' && i + 1 < length && w[i + 1] == '\n') {
+                return i + 2;
+            } else {
+                return i + 1;
+            }
+        }
+    }
+
+    private void addField(int from, int to, boolean escaped) {
+        if (fields < COLUMNS) {
+            fieldStart[fields] = from;
+            fieldEnd[fields] = to;
+            fieldEscaped[fields] = escaped;
+        }
+        fields++;
+    }
+
+    private String field(int column) {
+        final int from = fieldStart[column];
+        final int to = fieldEnd[column];
+
+        if (!fieldEscaped[column]) {
+            return new String(window, from, to - from, UTF_8);
+        }
+
+        final byte[] unescaped = new byte[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            unescaped[length++] = window[i];
+            if (window[i] == '"') {
+                i++;
+            }
+        }
+        return new String(unescaped, 0, length, UTF_8);
+    }
+
+    private boolean isBlank(int column) {
+        for (int i = fieldStart[column]; i < fieldEnd[column]; i++) {
+            if (Byte.toUnsignedInt(window[i]) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Whitespace allowed between a closing quote and a delimiter, as for Character.isWhitespace */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /* Move the current record to the start of the window and read more of the buffer after it */
+    private void fill() {
+        final int keep = windowLength - position;
+        if (keep == window.length) {
+            final byte[] larger = new byte[window.length * 2];
+            System.arraycopy(window, position, larger, 0, keep);
+            window = larger;
+        } else {
+            System.arraycopy(window, position, window, 0, keep);
+        }
+
+        windowStart += position;
+        position = 0;
+
+        final int length = Math.min(end - (windowStart + keep), window.length - keep);
+        buffer.position(windowStart + keep);
+        buffer.get(window, keep, length);
+        windowLength = keep + length;
+    }
+}
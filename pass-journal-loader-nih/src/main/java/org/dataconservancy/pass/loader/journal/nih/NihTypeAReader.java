@@ -29,7 +29,6 @@ import java.util.stream.Stream;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.dataconservancy.pass.model.Journal;
-import org.dataconservancy.pass.model.PmcParticipation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,24 +44,23 @@ public class NihTypeAReader implements JournalReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(NihTypeAReader.class);
 
-    private Stream<Journal> readJournals(Reader csv) throws IOException {
+    private Stream<JournalRecord> readRecords(Reader csv) throws IOException {
+
+        final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
 
         return stream(CSVFormat.RFC4180.parse(csv).spliterator(), false)
-            .map(NihTypeAReader::toJournal)
+            .map(record -> toRecord(record, builder))
             .filter(Objects::nonNull);
     }
 
-    private static Journal toJournal(final CSVRecord record) {
+    private static JournalRecord toRecord(final CSVRecord record, CompactJournalRecord.Builder j) {
 
         LOG.debug("Parsing CSV record..");
 
-        //final Journal j = new PMCSource();
-        final Journal j = new Journal();
-
         try {
 
-            j.setJournalName(record.get(0));
-            j.setNlmta(record.get(1));
+            j.name(record.get(0));
+            j.nlmta(record.get(1));
 
             // columns 2, 3 are issns. column 2 is type "Print" and 3 is type "Online"
             // see https://publicaccess.nih.gov/testsite/field_definitions.htm
@@ -77,28 +75,32 @@ public class NihTypeAReader implements JournalReader {
             }
             final boolean isActive = (endDate == null || endDate.trim().equals(""));
 
-            if (isActive) {
-                j.setPmcParticipation(PmcParticipation.A);
-            }
+            j.active(isActive);
 
-            return j;
+            return j.build();
         } catch (final Exception e) {
-            LOG.warn("Could not create journal record for {}", j.getJournalName(), e);
+            LOG.warn("Could not create journal record for {}", j.name(), e);
+            j.reset();
             return null;
         }
 
     }
 
-    private static void addIssnIfPresent(Journal journal, String issn, String type) {
+    private static void addIssnIfPresent(CompactJournalRecord.Builder journal, String issn, String type) {
         if (issn != null && !issn.trim().equals("")) {
-            journal.getIssns().add(String.join(":", type, issn));
+            journal.issn(String.join(":", type, issn));
         }
     }
 
     @Override
     public Stream<Journal> readJournals(InputStream source, Charset charset) {
+        return readRecords(source, charset).map(JournalRecord::journal);
+    }
+
+    @Override
+    public Stream<JournalRecord> readRecords(InputStream source, Charset charset) {
         try {
-            return readJournals(new InputStreamReader(source, charset));
+            return readRecords(new InputStreamReader(source, charset));
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
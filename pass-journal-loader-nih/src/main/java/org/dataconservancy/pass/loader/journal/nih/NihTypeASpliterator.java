@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits NIH type A csv records in a buffer into ranges that can be parsed independently.
+ * <p>
+ * Ranges are split at the start of a line. Since quoted fields may contain line breaks, whether a line break ends a
+ * record depends on the bytes before it. Scanning from the midpoint of a range, every state the csv could be in there
+ * is followed at once until they agree, which real records force within a few fields of a quote; the first record
+ * start after that is the split point. If they do not agree within a short window, the range is scanned from its
+ * start instead. The encounter order is the order of records in the file.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class NihTypeASpliterator implements Spliterator<JournalRecord> {
+
+    /* Rough size of a record, for estimating the number of journals */
+    private static final int RECORD_SIZE = 64;
+
+    private static final int MIN_SPLIT = 1 << 16;
+
+    private static final int CHUNK_SIZE = 1 << 13;
+
+    /* Bytes after the midpoint of a range within which its csv state must be known */
+    private static final int RESYNC_WINDOW = 1 << 12;
+
+    /* Scanner state: at the start of a field, within a quoted field, just after a quote within one, just after a CR */
+    private static final int FIELD_START = 1;
+
+    private static final int QUOTED = 2;
+
+    private static final int QUOTE = 4;
+
+    private static final int CR = 8;
+
+    private static final int STATE = FIELD_START | QUOTED | QUOTE | CR;
+
+    /* Set by a step if a record starts at the byte, or after it */
+    private static final int START_AT = 16;
+
+    private static final int START_AFTER = 32;
+
+    /* Every state the scanner can be in before an arbitrary byte */
+    private static final int[] ANY_STATE = {0, FIELD_START, FIELD_START | CR, QUOTED, QUOTED | QUOTE};
+
+    private final ByteBuffer buffer;
+
+    private int start;
+
+    private final int end;
+
+    private NihTypeAParser parser;
+
+    NihTypeASpliterator(ByteBuffer buffer) {
+        this(buffer, 0, buffer.limit());
+    }
+
+    private NihTypeASpliterator(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super JournalRecord> action) {
+        if (parser == null) {
+            parser = new NihTypeAParser(buffer, start, end);
+        }
+
+        final JournalRecord j = parser.next();
+        if (j == null) {
+            return false;
+        }
+
+        action.accept(j);
+        return true;
+    }
+
+    @Override
+    public Spliterator<JournalRecord> trySplit() {
+        if (parser != null || end - start < MIN_SPLIT) {
+            return null;
+        }
+
+        final int middle = start + (end - start) / 2;
+        int split = resync(buffer, middle, end);
+        if (split < 0) {
+            split = findRecordStart(buffer, start, middle, end);
+        }
+        if (split <= start || split >= end) {
+            return null;
+        }
+
+        final Spliterator<JournalRecord> prefix = new NihTypeASpliterator(buffer, start, split);
+        start = split;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return (end - start) / RECORD_SIZE + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Find the start of the first record at or after the given offset.
+     *
+     * @param buffer buffer containing csv records
+     * @param start  offset of the start of a record, to scan from
+     * @param from   offset to find a record at or after
+     * @param end    offset of the end of the records
+     * @return offset of the start of a record, or end if there is none
+     */
+    static int findRecordStart(ByteBuffer buffer, int start, int from, int end) {
+        return scan(buffer, start, from, end, FIELD_START);
+    }
+
+    /**
+     * Find the start of a record at or after the given offset without scanning from an earlier record, by following
+     * every state the scanner could be in at the offset until they agree.
+     *
+     * @param buffer buffer containing csv records
+     * @param from   offset to find a record at or after
+     * @param end    offset of the end of the records
+     * @return offset of the start of a record, end if there is none, or -1 if the state at the offset could not be
+     *         told within {@link #RESYNC_WINDOW} bytes of it
+     */
+    static int resync(ByteBuffer buffer, int from, int end) {
+        final ByteBuffer bytes = buffer.duplicate();
+        final int length = Math.min(RESYNC_WINDOW, end - from);
+        final byte[] window = new byte[length];
+        bytes.position(from);
+        bytes.get(window, 0, length);
+
+        final int[] states = ANY_STATE.clone();
+        for (int i = 0; i < length; i++) {
+            boolean agree = true;
+            for (int s = 0; s < states.length; s++) {
+                states[s] = step(states[s], window[i]) & STATE;
+                agree &= states[s] == states[0];
+            }
+            if (agree) {
+                return scan(buffer, from + i + 1, from + i + 1, end, states[0]);
+            }
+        }
+
+        return -1;
+    }
+
+    /* Scan from a known state for the first record start at or after an offset */
+    private static int scan(ByteBuffer buffer, int start, int from, int end, int initial) {
+        final ByteBuffer bytes = buffer.duplicate();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+
+        int state = initial;
+        for (int offset = start; offset < end; offset += CHUNK_SIZE) {
+            final int length = Math.min(CHUNK_SIZE, end - offset);
+            bytes.position(offset);
+            bytes.get(chunk, 0, length);
+
+            for (int i = 0; i < length; i++) {
+                state = step(state, chunk[i]);
+                if ((state & START_AT) != 0 && offset + i >= from) {
+                    return offset + i;
+                } else if ((state & START_AFTER) != 0 && offset + i + 1 >= from) {
+                    return offset + i + 1;
+                }
+                state &= STATE;
+            }
+        }
+
+        return end;
+    }
+
+    /* Advance the scanner state over a byte, flagging where a record starts */
+    private static int step(int state, byte b) {
+        int start = 0;
+        if ((state & CR) != 0) {
+            // Line ended by a CR. The record starts here, unless this is the LF of a CRLF
+            if (b == '\n') {
+                return FIELD_START | START_AFTER;
+            }
+            start = START_AT;
+        }
+
+        if ((state & QUOTED) != 0) {
+            if ((state & QUOTE) == 0) {
+                return (b == '"' ? QUOTED | QUOTE : QUOTED) | start;
+            } else if (b == '"') {
+                // An escaped quote
+                return QUOTED | start;
+            }
+            // The end of the quoted field
+            state = 0;
+        }
+
+        if (b == ',') {
+            return FIELD_START | start;
+        } else if (b == '\n') {
+            return FIELD_START | START_AFTER | start;
+        } else if (b == '\r') {
+            return FIELD_START | CR | start;
+        }
+        return ((state & FIELD_START) != 0 && b == '"' ? QUOTED : 0) | start;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dataconservancy.pass.model.Journal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses journals from the NLM Catalog XML export, see also: https://www.nlm.nih.gov/databases/download/catalog.html
+ * <p>
+ * Reads {@code NLMCatalogRecord} elements one at a time with a streaming parser, so memory use does not depend on
+ * the size of the export. From each record, the title ({@code TitleMain/Title}, without its trailing period, as in
+ * the Medline file), {@code MedlineTA} and ISSNs are read. {@code Electronic} ISSNs are typed {@code Online}, ISSNs
+ * without a type are left untyped, and ISSNs marked invalid are ignored. Journals have no place for the
+ * {@code NlmUniqueID}; it is only used for logging.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class NlmCatalogReader implements JournalReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NlmCatalogReader.class);
+
+    private static final String RECORD = "NLMCatalogRecord";
+
+    private static final String ID = "NlmUniqueID";
+
+    private static final String TITLE_MAIN = "TitleMain";
+
+    private static final String TITLE = "Title";
+
+    private static final String MEDLINE_TA = "MedlineTA";
+
+    private static final String ISSN = "ISSN";
+
+    @Override
+    public Stream<Journal> readJournals(InputStream source, Charset charset) {
+        return readRecords(source, charset).map(JournalRecord::journal);
+    }
+
+    @Override
+    public Stream<JournalRecord> readRecords(InputStream source, Charset charset) {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        final XMLStreamReader reader;
+        try {
+            reader = factory.createXMLStreamReader(source, charset.name());
+        } catch (final XMLStreamException e) {
+            throw new RuntimeException("Error reading NLM Catalog stream: ", e);
+        }
+
+        final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
+
+        final Iterator<JournalRecord> i = new Iterator<JournalRecord>() {
+
+            JournalRecord next = read(reader, builder);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public JournalRecord next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return next;
+                } finally {
+                    next = read(reader, builder);
+                }
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(i, Spliterator.ORDERED | Spliterator.NONNULL),
+                                    false).onClose(() -> {
+                                        try {
+                                            reader.close();
+                                        } catch (final XMLStreamException e) {
+                                            LOG.warn("Could not close NLM Catalog stream", e);
+                                        }
+                                    });
+    }
+
+    /* Read the next record, or return null if there are no more */
+    private static JournalRecord read(XMLStreamReader reader, CompactJournalRecord.Builder builder) {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals(RECORD)) {
+                    return readRecord(reader, builder);
+                }
+            }
+            return null;
+        } catch (final XMLStreamException e) {
+            throw new RuntimeException("Error reading NLM Catalog stream: ", e);
+        }
+    }
+
+    /* Read the children of a record, leaving the reader at the end of the record */
+    private static JournalRecord readRecord(XMLStreamReader reader, CompactJournalRecord.Builder j)
+        throws XMLStreamException {
+        String id = null;
+
+        // Depth below the record element, and whether the current element is within TitleMain
+        int depth = 0;
+        boolean inTitleMain = false;
+
+        while (reader.hasNext()) {
+            final int event = reader.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                if (depth == 1 && reader.getLocalName().equals(TITLE_MAIN)) {
+                    inTitleMain = false;
+                }
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                final String name = reader.getLocalName();
+
+                if (depth == 1) {
+                    if (name.equals(ID)) {
+                        id = reader.getElementText().trim();
+                        depth--;
+                    } else if (name.equals(MEDLINE_TA)) {
+                        j.nlmta(reader.getElementText().trim());
+                        depth--;
+                    } else if (name.equals(ISSN)) {
+                        final String type = reader.getAttributeValue(null, "IssnType");
+                        final boolean valid = !"N".equals(reader.getAttributeValue(null, "ValidYN"));
+                        final String issn = reader.getElementText().trim();
+                        if (valid && issn.length() > 0) {
+                            j.issn(type != null ? String.join(":", issnType(type), issn) : issn);
+                        }
+                        depth--;
+                    } else if (name.equals(TITLE_MAIN)) {
+                        inTitleMain = true;
+                    }
+                } else if (depth == 2 && inTitleMain && name.equals(TITLE) && j.name() == null) {
+                    j.name(title(reader.getElementText()));
+                    depth--;
+                }
+            }
+        }
+
+        if (j.name() == null) {
+            LOG.debug("NLM Catalog record {} has no title", id);
+        }
+
+        return j.build();
+    }
+
+    private static String issnType(String type) {
+        if (type.equals("Electronic")) {
+            return "Online";
+        }
+        return type;
+    }
+
+    private static String title(String title) {
+        final String trimmed = title.trim();
+        return trimmed.endsWith(".") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    @Override
+    public boolean hasPmcParticipation() {
+        return false;
+    }
+}
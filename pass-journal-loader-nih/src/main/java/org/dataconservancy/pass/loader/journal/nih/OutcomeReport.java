@@ -0,0 +1,289 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes what happened to each journal record in a load, one line per record, as JSON lines or CSV.
+ * <p>
+ * Outcomes are handed to a dedicated writer thread through a bounded queue, and written in large batches through a
+ * large buffer, so reporting costs the loader little more than a queue insert. If the writer falls far behind, the
+ * loader waits for it rather than losing outcomes. If the report cannot be written, it is abandoned with a warning,
+ * and the load carries on.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class OutcomeReport implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutcomeReport.class);
+
+    private static final int QUEUE_SIZE = 65536;
+
+    private static final int BATCH_SIZE = 8192;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Outcome END = new Outcome(null, 0, null, null, null, null, null);
+
+    static final String CSV_HEADER = "source,record,name,action,uri,score,changes";
+
+    /**
+     * What was done with a journal record
+     */
+    enum Action {
+        /** Created a new journal */
+        CREATED,
+        /** Updated the matching journal */
+        UPDATED,
+        /** Matched a journal that needed no changes */
+        UNCHANGED,
+        /** Skipped, as the record has no ISSN or NLMTA */
+        NO_ISSN_OR_NLMTA,
+        /** Skipped, as the record repeats one already loaded */
+        DUPLICATE,
+        /** Skipped, as the journals it matches were already matched by other records */
+        ALREADY_MATCHED,
+        /** Could not create or update a journal */
+        FAILED,
+        /** Skipped, as the matching journal no longer exists in the repository */
+        GONE,
+        /** Cleared the PMC participation of a journal no longer in the PMC list */
+        PMC_CLEARED,
+        /** Matched, but the write was left for the next run as the deadline had passed */
+        DEFERRED
+    }
+
+    /**
+     * The outcome of one journal record
+     */
+    static final class Outcome {
+
+        final String source;
+
+        final long record;
+
+        final String name;
+
+        final Action action;
+
+        final String uri;
+
+        final Integer score;
+
+        final List<String> changes;
+
+        /**
+         * @param source  name of the record's source
+         * @param record  position of the record in its source, from 1
+         * @param name    journal name in the record
+         * @param action  what was done
+         * @param uri     URI of the matched or created journal, if any
+         * @param score   match score, if matched
+         * @param changes fields changed, as {@code field: old -> new}, or an error message on failure
+         */
+        Outcome(String source, long record, String name, Action action, String uri, Integer score,
+                List<String> changes) {
+            this.source = source;
+            this.record = record;
+            this.name = name;
+            this.action = action;
+            this.uri = uri;
+            this.score = score;
+            this.changes = changes != null ? changes : Collections.emptyList();
+        }
+    }
+
+    private enum Format {
+        JSON,
+        CSV
+    }
+
+    private final Path file;
+
+    private final Format format;
+
+    private final BlockingQueue<Outcome> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    private final Thread writer;
+
+    private volatile boolean failed;
+
+    private long written;
+
+    /**
+     * Start writing a report. Files ending in {@code .csv} are written as CSV, anything else as JSON lines.
+     *
+     * @param file the report file, replaced if it exists
+     * @throws IOException if the file cannot be created
+     */
+    OutcomeReport(Path file) throws IOException {
+        this.file = file;
+        this.format = file.getFileName().toString().toLowerCase().endsWith(".csv") ? Format.CSV : Format.JSON;
+
+        final Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), UTF_8),
+                                              BUFFER_SIZE);
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+
+        writer = new Thread(() -> write(out), "outcome-report-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Report an outcome.
+     *
+     * @param outcome the outcome
+     */
+    void record(Outcome outcome) {
+        try {
+            while (!failed && !queue.offer(outcome, 100, TimeUnit.MILLISECONDS)) {
+                LOG.debug("Waiting for outcome report writer to catch up");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reporting outcome", e);
+        }
+    }
+
+    private void write(Writer out) {
+        final List<Outcome> batch = new ArrayList<>(BATCH_SIZE);
+        final StringBuilder line = new StringBuilder(256);
+        try (Writer w = out) {
+            boolean done = false;
+            while (!done) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                for (final Outcome outcome : batch) {
+                    if (outcome == END) {
+                        done = true;
+                        break;
+                    }
+                    line.setLength(0);
+                    if (format == Format.CSV) {
+                        csv(outcome, line);
+                    } else {
+                        json(outcome, line);
+                    }
+                    w.append(line).append('\n');
+                    written++;
+                }
+                batch.clear();
+            }
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Could not write outcome report " + file + ", abandoning it", e);
+            failed = true;
+            queue.clear();
+        } catch (final InterruptedException e) {
+            LOG.warn("Interrupted while writing outcome report {}", file);
+            failed = true;
+            queue.clear();
+        }
+    }
+
+    static void json(Outcome o, StringBuilder json) {
+        json.append("{\"source\":");
+        nullable(json, o.source);
+        json.append(",\"record\":").append(o.record);
+        json.append(",\"name\":");
+        nullable(json, o.name);
+        json.append(",\"action\":\"").append(o.action).append('"');
+        json.append(",\"uri\":");
+        nullable(json, o.uri);
+        json.append(",\"score\":").append(o.score);
+        json.append(",\"changes\":[");
+        for (int i = 0; i < o.changes.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            JournalLookupService.string(json, o.changes.get(i));
+        }
+        json.append("]}");
+    }
+
+    private static void nullable(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+        } else {
+            JournalLookupService.string(json, value);
+        }
+    }
+
+    static void csv(Outcome o, StringBuilder csv) {
+        field(csv, o.source).append(',');
+        csv.append(o.record).append(',');
+        field(csv, o.name).append(',');
+        csv.append(o.action).append(',');
+        field(csv, o.uri).append(',');
+        if (o.score != null) {
+            csv.append(o.score);
+        }
+        csv.append(',');
+        field(csv, String.join("; ", o.changes));
+    }
+
+    private static StringBuilder field(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 &&
+            value.indexOf('\r') < 0) {
+            return csv.append(value);
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Write any outstanding outcomes, and close the report.
+     */
+    @Override
+    public void close() {
+        record(END);
+        try {
+            writer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while finishing outcome report {}", file);
+            return;
+        }
+        if (!failed) {
+            LOG.info("Reported the outcome of {} journal records in {}", written, file);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.net.URI;
+
+import org.dataconservancy.pass.client.PassClient;
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * Performs journal operations through a {@link PassClient}
+ * <p>
+ * Journals with a given name are created by a {@link FedoraJournalRepository}, as the client can only create
+ * resources at server-assigned URIs.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class PassJournalRepository implements JournalRepository {
+
+    private final PassClient client;
+
+    private final FedoraJournalRepository fedora = new FedoraJournalRepository();
+
+    public PassJournalRepository(PassClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public URI create(Journal j) {
+        return client.createResource(j);
+    }
+
+    @Override
+    public Journal read(URI uri) {
+        return client.readResource(uri, Journal.class);
+    }
+
+    @Override
+    public void update(Journal j) {
+        client.updateResource(j);
+    }
+
+    @Override
+    public URI journalUri(String name) {
+        return fedora.journalUri(name);
+    }
+
+    @Override
+    public boolean createIfAbsent(URI uri, Journal j) {
+        return fedora.createIfAbsent(uri, j);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads an underlying stream on a separate thread, a chunk at a time, ahead of the consumer.
+ * <p>
+ * Used so that decompression overlaps parsing. The number of chunks read ahead is bounded.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class ReadAheadInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 1 << 18;
+
+    private static final int CHUNKS = 4;
+
+    /* Marks the end of the underlying stream */
+    private static final byte[] END = new byte[0];
+
+    private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+    private final InputStream in;
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(CHUNKS);
+
+    private final Thread reader;
+
+    private volatile IOException failure;
+
+    private byte[] chunk;
+
+    private int chunkLength;
+
+    private int position;
+
+    private boolean done;
+
+    ReadAheadInputStream(InputStream in) {
+        this.in = in;
+        this.reader = new Thread(this::readAhead, "journal-decompressor-" + threadCount.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead() {
+        try {
+            while (true) {
+                final byte[] next = new byte[CHUNK_SIZE];
+                int length = 0;
+                for (int read = 0; read >= 0 && length < next.length; length += read) {
+                    read = in.read(next, length, next.length - length);
+                    if (read < 0) {
+                        break;
+                    }
+                }
+
+                if (length > 0) {
+                    chunks.put(length == next.length ? next : Arrays.copyOf(next, length));
+                }
+                if (length < next.length) {
+                    break;
+                }
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } catch (final RuntimeException | Error e) {
+            failure = new IOException("Could not read ahead", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                chunks.put(END);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean next() throws IOException {
+        if (done) {
+            return false;
+        }
+
+        try {
+            chunk = chunks.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        }
+
+        if (chunk == END) {
+            done = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+
+        chunkLength = chunk.length;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == chunkLength && !next()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == chunkLength && !next()) {
+            return -1;
+        }
+
+        final int length = Math.min(len, chunkLength - position);
+        System.arraycopy(chunk, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.interrupt();
+        in.close();
+    }
+}
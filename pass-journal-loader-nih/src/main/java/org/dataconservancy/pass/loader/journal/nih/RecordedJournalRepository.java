@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.net.URI;
+
+import org.dataconservancy.pass.loader.journal.nih.LoaderEvents.RepositoryOperation;
+import org.dataconservancy.pass.model.Journal;
+
+/**
+ * Records every operation of another repository as a {@link RepositoryOperation} flight recorder event.
+ *
+ * @author apb@jhu.edu
+ */
+class RecordedJournalRepository implements JournalRepository {
+
+    private final JournalRepository repository;
+
+    RecordedJournalRepository(JournalRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public URI create(Journal j) {
+        final RepositoryOperation event = begin();
+        URI uri = null;
+        try {
+            uri = repository.create(j);
+            return uri;
+        } finally {
+            commit(event, "CREATE", uri, uri != null ? "OK" : "FAILED");
+        }
+    }
+
+    @Override
+    public Journal read(URI uri) {
+        final RepositoryOperation event = begin();
+        String outcome = "FAILED";
+        try {
+            final Journal j = repository.read(uri);
+            outcome = "OK";
+            return j;
+        } finally {
+            commit(event, "READ", uri, outcome);
+        }
+    }
+
+    @Override
+    public void update(Journal j) {
+        final RepositoryOperation event = begin();
+        String outcome = "FAILED";
+        try {
+            repository.update(j);
+            outcome = "OK";
+        } finally {
+            commit(event, "UPDATE", j.getId(), outcome);
+        }
+    }
+
+    @Override
+    public URI journalUri(String name) {
+        return repository.journalUri(name);
+    }
+
+    @Override
+    public boolean createIfAbsent(URI uri, Journal j) {
+        final RepositoryOperation event = begin();
+        String outcome = "FAILED";
+        try {
+            final boolean created = repository.createIfAbsent(uri, j);
+            outcome = created ? "OK" : "EXISTS";
+            return created;
+        } finally {
+            commit(event, "CREATE_IF_ABSENT", uri, outcome);
+        }
+    }
+
+    private static RepositoryOperation begin() {
+        final RepositoryOperation event = new RepositoryOperation();
+        event.begin();
+        return event;
+    }
+
+    private static void commit(RepositoryOperation event, String operation, URI uri, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.uri = uri != null ? uri.toString() : null;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.Arrays;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+
+/**
+ * Decides which of several loader processes owns each journal record, so that the processes can load the same inputs
+ * side by side without creating or updating any journal twice.
+ * <p>
+ * A record can only match a journal it shares an ISSN or NLMTA with (a name alone never scores enough), so ownership
+ * follows those keys. ISSNs and NLMTAs are linked into groups with union-find: the keys of each journal in the
+ * repository are linked, as are the keys of each input record. Every record or journal in a group, however its ISSNs
+ * are spread, then belongs to the same shard: the one the group's smallest key hash falls in. ISSNs are compared
+ * without their {@code Print:} or {@code Online:} prefix.
+ * </p>
+ * <p>
+ * Every process must see the same repository journals and the same records, all of them before loading, so that the
+ * groups are the same everywhere. Records with no ISSN or NLMTA, which are never loaded, belong to shard 0.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class ShardFilter implements BatchJournalFinder.PostingSink {
+
+    private final int shardIndex;
+
+    private final int shardCount;
+
+    /* Node of each key, by hash */
+    private final LongIntMap nodes = new LongIntMap();
+
+    /* First key node of each repository journal, by URI hash */
+    private final LongIntMap journals = new LongIntMap();
+
+    private int[] parent = new int[1024];
+
+    private int[] rank = new int[1024];
+
+    /* Smallest key hash in each group, valid at roots */
+    private long[] min = new long[1024];
+
+    private String lastUri;
+
+    private int lastNode;
+
+    /**
+     * @param shardIndex this process's shard, from 0
+     * @param shardCount number of shards
+     */
+    ShardFilter(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard index must be from 0 to the shard count - 1, got " +
+                                               shardIndex + " of " + shardCount);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Link the keys of a repository journal. Postings of a journal must arrive together, as in a dump of the journals
+     * container.
+     */
+    @Override
+    public synchronized void add(Field field, String key, String uri) {
+        if (field == Field.NAME || key == null) {
+            return;
+        }
+
+        final int node = node(field, key);
+        if (uri.equals(lastUri)) {
+            union(lastNode, node);
+        } else {
+            final int first = journals.putIfAbsent(LongIntMap.hash(uri), node);
+            union(first != LongIntMap.ABSENT ? first : node, node);
+            lastUri = uri;
+            lastNode = node;
+        }
+    }
+
+    /**
+     * Link the keys of an input record.
+     *
+     * @param record the record
+     */
+    synchronized void add(JournalRecord record) {
+        final int first = firstNode(record);
+        if (first == LongIntMap.ABSENT) {
+            return;
+        }
+        for (final String issn : record.issns()) {
+            union(first, node(Field.ISSN, issn));
+        }
+    }
+
+    /**
+     * @param record an input record, which should have been {@link #add(JournalRecord) added}
+     * @return whether this process owns the record
+     */
+    synchronized boolean owns(JournalRecord record) {
+        final int first = firstNode(record);
+        return shard(first) == shardIndex;
+    }
+
+    /**
+     * @param uri URI of a repository journal
+     * @return whether this process owns the journal
+     */
+    synchronized boolean ownsJournal(String uri) {
+        return shard(journals.get(LongIntMap.hash(uri))) == shardIndex;
+    }
+
+    private int shard(int node) {
+        if (node == LongIntMap.ABSENT) {
+            return 0;
+        }
+        final long h = min[find(node)];
+        return (int) Long.remainderUnsigned(h ^ (h >>> 32), shardCount);
+    }
+
+    private int firstNode(JournalRecord record) {
+        if (record.nlmta() != null && !record.nlmta().isEmpty()) {
+            return node(Field.NLMTA, record.nlmta());
+        }
+        if (!record.issns().isEmpty()) {
+            return node(Field.ISSN, record.issns().get(0));
+        }
+        return LongIntMap.ABSENT;
+    }
+
+    private int node(Field field, String key) {
+        final long hash = LongIntMap.hash(field == Field.ISSN ? field + " " + bareIssn(key) : field + " " + key);
+        final int id = nodes.size();
+        final int existing = nodes.putIfAbsent(hash, id);
+        if (existing != LongIntMap.ABSENT) {
+            return existing;
+        }
+
+        if (id == parent.length) {
+            parent = Arrays.copyOf(parent, id * 2);
+            rank = Arrays.copyOf(rank, id * 2);
+            min = Arrays.copyOf(min, id * 2);
+        }
+        parent[id] = id;
+        min[id] = hash;
+        return id;
+    }
+
+    private static String bareIssn(String issn) {
+        final int colon = issn.indexOf(':');
+        return colon >= 0 ? issn.substring(colon + 1) : issn;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (rank[rootA] < rank[rootB]) {
+            final int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        if (rank[rootA] == rank[rootB]) {
+            rank[rootA]++;
+        }
+        min[rootA] = Math.min(min[rootA], min[rootB]);
+    }
+}
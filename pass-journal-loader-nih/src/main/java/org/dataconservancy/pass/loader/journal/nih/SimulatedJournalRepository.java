@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.dataconservancy.pass.client.util.ConfigUtil.getSystemProperty;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.ISSNS;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.NAMES;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.NLMTAS;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.PMC_PARTICIPATION;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.ntripLiteral;
+import static org.dataconservancy.pass.loader.journal.nih.BatchJournalFinder.ntripleUri;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process stand-in for the repository, for measuring loader throughput without a real Fedora.
+ * <p>
+ * Journals are held in memory, seeded from an N-Triples dump of the journals container. Each operation waits for a
+ * latency drawn from a configurable distribution, fails at a configurable rate, and is limited to a configurable
+ * number of concurrent operations, so that the loader's response to a slow or flaky repository can be studied.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+public class SimulatedJournalRepository implements JournalRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimulatedJournalRepository.class);
+
+    private static final String BASE_URI = "sim:journals/";
+
+    private final Map<URI, Journal> journals = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    /* Each thread draws from its own generator, so concurrent operations do not contend on one */
+    private final ThreadLocal<Random> random;
+
+    private LatencyDistribution readLatency = LatencyDistribution.NONE;
+
+    private LatencyDistribution createLatency = LatencyDistribution.NONE;
+
+    private LatencyDistribution updateLatency = LatencyDistribution.NONE;
+
+    private double errorRate = 0;
+
+    private Semaphore permits;
+
+    private final LatencyHistogram readTimes = new LatencyHistogram();
+
+    private final LatencyHistogram createTimes = new LatencyHistogram();
+
+    private final LatencyHistogram updateTimes = new LatencyHistogram();
+
+    private final AtomicInteger numErrors = new AtomicInteger();
+
+    SimulatedJournalRepository(long seed) {
+        final AtomicLong threads = new AtomicLong();
+        this.random = ThreadLocal.withInitial(() -> new Random(seed + threads.getAndIncrement()));
+    }
+
+    /**
+     * Create a simulated repository configured from system properties or environment variables:
+     * <dl>
+     * <dt>{@code sim.seed}</dt>
+     * <dd>Random seed, for repeatable runs; each thread's generator is seeded from it in the order threads first
+     * operate</dd>
+     * <dt>{@code sim.latency.read}, {@code sim.latency.create}, {@code sim.latency.update}</dt>
+     * <dd>Latency distribution of each operation, see {@link LatencyDistribution}</dd>
+     * <dt>{@code sim.errorRate}</dt>
+     * <dd>Fraction of operations, between 0 and 1, that fail</dd>
+     * <dt>{@code sim.maxConcurrency}</dt>
+     * <dd>Maximum number of operations in progress at once; more wait their turn</dd>
+     * </dl>
+     *
+     * @return configured repository, with no journals
+     */
+    static SimulatedJournalRepository fromConfig() {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(
+            Long.parseLong(getSystemProperty("sim.seed", "0")));
+        repository.setReadLatency(LatencyDistribution.parse(getSystemProperty("sim.latency.read", null)));
+        repository.setCreateLatency(LatencyDistribution.parse(getSystemProperty("sim.latency.create", null)));
+        repository.setUpdateLatency(LatencyDistribution.parse(getSystemProperty("sim.latency.update", null)));
+        repository.setErrorRate(Double.parseDouble(getSystemProperty("sim.errorRate", "0")));
+        repository.setMaxConcurrency(Integer.parseInt(getSystemProperty("sim.maxConcurrency", "0")));
+        return repository;
+    }
+
+    void setReadLatency(LatencyDistribution readLatency) {
+        this.readLatency = readLatency;
+    }
+
+    void setCreateLatency(LatencyDistribution createLatency) {
+        this.createLatency = createLatency;
+    }
+
+    void setUpdateLatency(LatencyDistribution updateLatency) {
+        this.updateLatency = updateLatency;
+    }
+
+    void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param maxConcurrency maximum number of concurrent operations, or zero for no limit
+     */
+    void setMaxConcurrency(int maxConcurrency) {
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+    }
+
+    /**
+     * Seed the repository with journals from an N-Triples dump of the journals container, as is analyzed by
+     * {@link BatchJournalFinder}
+     *
+     * @param ntriples N-Triples dump
+     * @throws IOException if the dump cannot be read
+     */
+    void load(InputStream ntriples) throws IOException {
+        try (InputStream in = ntriples) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final String[] spo = line.split("\\s+");
+                if (spo.length < 3) {
+                    continue;
+                }
+
+                final String uri = ntripleUri(spo[0]);
+                final String predicate = ntripleUri(spo[1]);
+                if (uri == null || predicate == null) {
+                    continue;
+                }
+
+                final Journal j = journals.computeIfAbsent(URI.create(uri), id -> {
+                    final Journal created = new Journal();
+                    created.setId(id);
+                    return created;
+                });
+
+                if (predicate.equals(ISSNS)) {
+                    j.getIssns().add(ntripLiteral(spo[2]));
+                } else if (predicate.equals(NLMTAS)) {
+                    j.setNlmta(ntripLiteral(line));
+                } else if (predicate.equals(NAMES)) {
+                    j.setJournalName(ntripLiteral(line));
+                } else if (predicate.equals(PMC_PARTICIPATION)) {
+                    j.setPmcParticipation(PmcParticipation.valueOf(ntripLiteral(spo[2])));
+                }
+            }
+        }
+        LOG.info("Simulated repository contains {} journals", journals.size());
+    }
+
+    @Override
+    public URI create(Journal j) {
+        return perform(createTimes, createLatency, () -> {
+            final URI uri = URI.create(BASE_URI + nextId.incrementAndGet());
+            final Journal created = copy(j);
+            created.setId(uri);
+            journals.put(uri, created);
+            return uri;
+        });
+    }
+
+    @Override
+    public URI journalUri(String name) {
+        return URI.create(BASE_URI + name);
+    }
+
+    @Override
+    public boolean createIfAbsent(URI uri, Journal j) {
+        return perform(createTimes, createLatency, () -> {
+            final Journal created = copy(j);
+            created.setId(uri);
+            return journals.putIfAbsent(uri, created) == null;
+        });
+    }
+
+    @Override
+    public Journal read(URI uri) {
+        return perform(readTimes, readLatency, () -> {
+            final Journal j = journals.get(uri);
+            return j != null ? copy(j) : null;
+        });
+    }
+
+    @Override
+    public void update(Journal j) {
+        perform(updateTimes, updateLatency, () -> {
+            if (journals.replace(j.getId(), copy(j)) == null) {
+                throw new RuntimeException("Simulated repository has no journal " + j.getId());
+            }
+            return null;
+        });
+    }
+
+    int size() {
+        return journals.size();
+    }
+
+    void logStatistics() {
+        LOG.info("Simulated reads: {}", readTimes.summary());
+        LOG.info("Simulated creates: {}", createTimes.summary());
+        LOG.info("Simulated updates: {}", updateTimes.summary());
+        LOG.info("Simulated errors: {}", numErrors.get());
+    }
+
+    private <T> T perform(LatencyHistogram times, LatencyDistribution latency, Supplier<T> operation) {
+        final long start = System.nanoTime();
+        try {
+            if (permits != null) {
+                permits.acquireUninterruptibly();
+            }
+            try {
+                final Random threadRandom = random.get();
+                pause(latency.sample(threadRandom));
+                if (errorRate > 0 && threadRandom.nextDouble() < errorRate) {
+                    numErrors.incrementAndGet();
+                    throw new RuntimeException("Simulated repository error");
+                }
+                return operation.get();
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        } finally {
+            times.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void pause(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static Journal copy(Journal j) {
+        final Journal copy = new Journal();
+        copy.setId(j.getId());
+        copy.setJournalName(j.getJournalName());
+        copy.setNlmta(j.getNlmta());
+        copy.setIssns(new ArrayList<>(j.getIssns()));
+        copy.setPmcParticipation(j.getPmcParticipation());
+        copy.setPublisher(j.getPublisher());
+        return copy;
+    }
+}
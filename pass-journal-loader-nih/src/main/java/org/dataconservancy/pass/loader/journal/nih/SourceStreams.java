@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Opens source files, decompressing them as they are read if they are compressed.
+ * <p>
+ * Compression is detected from the first bytes of the file rather than its name. gzip, zip (the first file in the
+ * archive) and xz are supported. Compressed files are decompressed on a separate thread, ahead of the reader.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+final class SourceStreams {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SourceStreams() {
+        //never called
+    }
+
+    enum Compression {
+        NONE,
+        GZIP,
+        ZIP,
+        XZ
+    }
+
+    /**
+     * Detect the compression of a file from its first bytes.
+     *
+     * @param file the file
+     * @return the compression
+     * @throws IOException if the file cannot be read
+     */
+    static Compression detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return detect(in);
+        }
+    }
+
+    /**
+     * Open a file for reading, decompressing it if necessary.
+     *
+     * @param file the file
+     * @return stream of the file's (decompressed) content
+     * @throws IOException if the file cannot be opened
+     */
+    static InputStream open(Path file) throws IOException {
+        final InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            in.mark(6);
+            final Compression compression = detect(in);
+            in.reset();
+
+            switch (compression) {
+            case GZIP:
+                return new ReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+            case ZIP:
+                final ZipInputStream zip = new ZipInputStream(in);
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        return new ReadAheadInputStream(zip);
+                    }
+                }
+                throw new IOException("Zip file contains no files: " + file);
+            case XZ:
+                return new ReadAheadInputStream(new XZInputStream(in));
+            default:
+                return in;
+            }
+        } catch (final IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static Compression detect(InputStream in) throws IOException {
+        final byte[] magic = new byte[6];
+        int length = 0;
+        for (int read = 0; read >= 0 && length < magic.length; length += read) {
+            read = in.read(magic, length, magic.length - length);
+            if (read < 0) {
+                break;
+            }
+        }
+
+        if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Compression.GZIP;
+        } else if (length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return Compression.ZIP;
+        } else if (length >= 6 && (magic[0] & 0xff) == 0xfd && magic[1] == '7' && magic[2] == 'z' &&
+                   magic[3] == 'X' && magic[4] == 'Z' && magic[5] == 0) {
+            return Compression.XZ;
+        }
+        return Compression.NONE;
+    }
+}
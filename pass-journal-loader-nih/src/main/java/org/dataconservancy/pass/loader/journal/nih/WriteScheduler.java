@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds repository writes back while journals are matched, then makes them in priority order until a deadline.
+ * <p>
+ * Writes that affect compliance come first: PMC participation changes, then new journals, then ISSN and NLMTA
+ * enrichments of existing journals. Within a priority, writes carried over from an earlier run come first, then
+ * writes in the order they were submitted. Once the deadline has passed, every write not yet started is deferred
+ * instead of made.
+ * </p>
+ *
+ * @author apb@jhu.edu
+ */
+class WriteScheduler {
+
+    /**
+     * Priority of a write, highest first
+     */
+    enum Priority {
+        /** Changes the PMC participation of a journal, or creates a journal with PMC participation */
+        PARTICIPATION,
+        /** Creates a journal */
+        CREATE,
+        /** Adds ISSNs or an NLMTA to a journal */
+        ENRICHMENT
+    }
+
+    /* A write, and what to do instead if the deadline passes before it starts */
+    private static class Write {
+
+        final Runnable write;
+
+        final Runnable defer;
+
+        Write(Runnable write, Runnable defer) {
+            this.write = write;
+            this.defer = defer;
+        }
+    }
+
+    private final long deadline;
+
+    private final Map<Priority, Queue<Write>> carriedOver = new EnumMap<>(Priority.class);
+
+    private final Map<Priority, Queue<Write>> submitted = new EnumMap<>(Priority.class);
+
+    /**
+     * @param deadline {@link System#nanoTime()} by which writes must have started
+     */
+    WriteScheduler(long deadline) {
+        this.deadline = deadline;
+        for (final Priority priority : Priority.values()) {
+            carriedOver.put(priority, new ArrayDeque<>());
+            submitted.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Hold a write until the scheduler is drained. Writes may be submitted from any thread, but not once draining
+     * has begun.
+     *
+     * @param priority      priority of the write
+     * @param write         makes the write
+     * @param defer         records that the write was deferred
+     * @param isCarriedOver whether the write was deferred by an earlier run
+     */
+    synchronized void submit(Priority priority, Runnable write, Runnable defer, boolean isCarriedOver) {
+        (isCarriedOver ? carriedOver : submitted).get(priority).add(new Write(write, defer));
+    }
+
+    /**
+     * @param priority a priority
+     * @return number of writes of the priority waiting to be drained
+     */
+    synchronized int size(Priority priority) {
+        return carriedOver.get(priority).size() + submitted.get(priority).size();
+    }
+
+    /**
+     * @return whether the deadline has passed
+     */
+    boolean isExpired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Hand every held write to an executor, in priority order. Each write checks the deadline as it starts, and is
+     * deferred if it has passed.
+     *
+     * @param exe executor making the writes
+     */
+    synchronized void drain(Executor exe) {
+        for (final Priority priority : Priority.values()) {
+            for (final Queue<Write> queue : Arrays.asList(carriedOver.get(priority), submitted.get(priority))) {
+                for (Write w = queue.poll(); w != null; w = queue.poll()) {
+                    final Write write = w;
+                    exe.execute(() -> {
+                        if (isExpired()) {
+                            write.defer.run();
+                        } else {
+                            write.write.run();
+                        }
+                    });
+                }
+            }
+        }
+    }
+}
@@ -53,6 +53,23 @@ public class BatchJournalFinderTest {
         }
     }
 
+    @Test
+    public void resetTest() throws Exception {
+        final BatchJournalFinder toTest = new BatchJournalFinder();
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+            toTest.load(in);
+        }
+
+        final String found = toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0002"));
+        assertNotNull(found);
+        assertEquals("SKIP", toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0002")));
+
+        //a new run may match it again
+        toTest.reset();
+        assertEquals(found, toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0002")));
+    }
+
     @Test
     public void journalNotFoundTest() throws Exception {
         final BatchJournalFinder toTest = new BatchJournalFinder();
@@ -208,4 +225,80 @@ public class BatchJournalFinderTest {
 
     }
 
+    @Test
+    public void replaceAndRemoveTest() throws Exception {
+        final BatchJournalFinder toTest = new BatchJournalFinder();
+        toTest.trackChanges();
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+            toTest.load(in);
+        }
+
+        //journal 2 changes its ISSN, so the old one no longer matches
+        toTest.replace("test:2", null, "Test 2 Journal", Collections.singletonList("0000-0009"), null);
+        assertNull(toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0002")));
+        assertEquals("test:2", toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0009")));
+
+        toTest.reset();
+        toTest.remove("test:2");
+        assertNull(toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0009")));
+    }
+
+    @Test
+    public void resyncTest() throws Exception {
+        final BatchJournalFinder toTest = new BatchJournalFinder();
+        toTest.trackChanges();
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+            toTest.load(in);
+        }
+        toTest.replace("test:9", null, "Stale Journal", Collections.singletonList("0000-0009"), null);
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+            toTest.resync(in);
+        }
+
+        assertNull(toTest.find(null, "Stale Journal", Collections.singletonList("0000-0009")));
+        assertEquals("test:2", toTest.find(null, "Test 2 Journal", Collections.singletonList("0000-0002")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replaceWithoutTrackingTest() {
+        new BatchJournalFinder().replace("test:1", null, "Test 1 Journal", Collections.singletonList("0000-0001"),
+                                         null);
+    }
+
+    @Test
+    public void pmcParticipantsTest() throws Exception {
+        final BatchJournalFinder toTest = new BatchJournalFinder();
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+            toTest.load(in);
+        }
+        assertEquals(Collections.singleton("test:2"), toTest.pmcParticipants());
+
+        final Journal dropped = new Journal();
+        dropped.setId(URI.create("test:2"));
+        dropped.setJournalName("Test 2 Journal");
+        toTest.add(dropped);
+        assertEquals(Collections.emptySet(), toTest.pmcParticipants());
+    }
+
+    @Test
+    public void forgetTest() throws Exception {
+        for (final boolean tracking : new boolean[] {true, false}) {
+            final BatchJournalFinder toTest = new BatchJournalFinder();
+            if (tracking) {
+                toTest.trackChanges();
+            }
+
+            try (final InputStream in = this.getClass().getResourceAsStream("/journals.nt")) {
+                toTest.load(in);
+            }
+            toTest.forget("test:2");
+
+            assertNull(toTest.find(null, "Test 2 Journal", Arrays.asList("0000-0002", "0000-0002X")));
+            assertEquals(Collections.emptySet(), toTest.pmcParticipants());
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.dataconservancy.pass.loader.journal.nih.DuplicateClusters.Cluster;
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class DuplicateClustersTest {
+
+    @Test
+    public void clustersTest() throws Exception {
+        final DuplicateClusters toTest = new DuplicateClusters(EnumSet.allOf(Field.class));
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+            BatchJournalFinder.read(in, toTest);
+        }
+
+        assertEquals(5, toTest.journals());
+
+        final List<Cluster> clusters = toTest.clusters(2);
+        assertEquals(1, clusters.size());
+        assertEquals(Arrays.asList("test:3", "test:4", "test:5"), clusters.get(0).uris);
+        assertEquals(Arrays.asList("ISSN 0000-0006", "ISSN 0000-0005"), clusters.get(0).keys);
+
+        assertEquals(3, toTest.clusters(1).size());
+    }
+
+    @Test
+    public void transitiveClustersRankedTest() throws Exception {
+        final DuplicateClusters toTest = new DuplicateClusters(EnumSet.of(Field.ISSN));
+
+        toTest.add(Field.ISSN, "0000-0001", "test:a");
+        toTest.add(Field.ISSN, "0000-0001", "test:b");
+        toTest.add(Field.ISSN, "0000-0009", "test:x");
+        toTest.add(Field.ISSN, "0000-0009", "test:y");
+        toTest.add(Field.ISSN, "0000-0002", "test:b");
+        toTest.add(Field.ISSN, "0000-0002", "test:c");
+        toTest.add(Field.NAME, "Same Name", "test:c");
+        toTest.add(Field.NAME, "Same Name", "test:x");
+
+        final StringWriter out = new StringWriter();
+        assertEquals(2, toTest.write(out, 2));
+        assertEquals("{\"size\":3,\"uris\":[\"test:a\",\"test:b\",\"test:c\"],\"keys\":[\"ISSN 0000-0001\"," +
+                     "\"ISSN 0000-0002\"]}\n" +
+                     "{\"size\":2,\"uris\":[\"test:x\",\"test:y\"],\"keys\":[\"ISSN 0000-0009\"]}\n",
+                     out.toString());
+    }
+
+    @Test
+    public void sameJournalNotDuplicateTest() {
+        final DuplicateClusters toTest = new DuplicateClusters(EnumSet.allOf(Field.class));
+
+        toTest.add(Field.ISSN, "0000-0001", "test:a");
+        toTest.add(Field.ISSN, "0000-0001", "test:a");
+
+        assertEquals(Collections.emptyList(), toTest.clusters(2));
+    }
+
+    @Test
+    public void issnTypeIgnoredTest() {
+        final DuplicateClusters toTest = new DuplicateClusters(EnumSet.of(Field.ISSN));
+
+        toTest.add(Field.ISSN, "Print:0000-0001", "test:a");
+        toTest.add(Field.ISSN, "Online:0000-0001", "test:b");
+
+        final List<Cluster> clusters = toTest.clusters(2);
+        assertEquals(1, clusters.size());
+        assertEquals(Arrays.asList("test:a", "test:b"), clusters.get(0).uris);
+        assertEquals(Collections.singletonList("ISSN 0000-0001"), clusters.get(0).keys);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalChange.Type;
+import org.dataconservancy.pass.model.PmcParticipation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class JournalIndexSyncTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BatchJournalFinder finder;
+
+    private final AtomicInteger resyncs = new AtomicInteger();
+
+    private JournalIndexSync toTest;
+
+    @Before
+    public void setUp() throws Exception {
+        finder = new BatchJournalFinder();
+        finder.trackChanges();
+        toTest = new JournalIndexSync(null, finder, f -> resyncs.incrementAndGet());
+    }
+
+    @Test
+    public void applyChangesTest() {
+        toTest.accept(upsert(1, Type.CREATED, "test:1", "Journal One", "NLMTA1", "0000-0001"));
+        assertEquals("test:1", find("NLMTA1", "Journal One", "0000-0001"));
+
+        toTest.accept(upsert(2, Type.UPDATED, "test:1", "Journal One", "NLMTA1", "0000-0002"));
+        assertNull(find(null, "Journal One", "0000-0001"));
+        assertEquals("test:1", find(null, "Journal One", "0000-0002"));
+
+        toTest.accept(new JournalChange(3, Type.DELETED, "test:1", null, null, null, null));
+        assertNull(find("NLMTA1", "Journal One", "0000-0002"));
+
+        assertEquals(3, toTest.applied());
+        assertEquals(3, toTest.lastSequence());
+        assertEquals(0, resyncs.get());
+    }
+
+    @Test
+    public void pmcParticipationChangesTest() {
+        toTest.accept(new JournalChange(1, Type.CREATED, "test:1", "Journal One", "NLMTA1", singletonList("0000-0001"),
+                                        PmcParticipation.A));
+        assertEquals(singleton("test:1"), finder.pmcParticipants());
+
+        //dropped from the PMC list by another loader
+        toTest.accept(upsert(2, Type.UPDATED, "test:1", "Journal One", "NLMTA1", "0000-0001"));
+        assertTrue(finder.pmcParticipants().isEmpty());
+
+        toTest.accept(new JournalChange(3, Type.UPDATED, "test:1", "Journal One", "NLMTA1", singletonList("0000-0001"),
+                                        PmcParticipation.A));
+        toTest.accept(new JournalChange(4, Type.DELETED, "test:1", null, null, null, null));
+        assertTrue(finder.pmcParticipants().isEmpty());
+    }
+
+    @Test
+    public void duplicateIgnoredTest() {
+        toTest.accept(upsert(5, Type.CREATED, "test:1", "Journal One", "NLMTA1", "0000-0001"));
+        toTest.accept(new JournalChange(6, Type.DELETED, "test:1", null, null, null, null));
+
+        //redelivery of the create must not bring the journal back
+        toTest.accept(upsert(5, Type.CREATED, "test:1", "Journal One", "NLMTA1", "0000-0001"));
+        assertNull(find("NLMTA1", "Journal One", "0000-0001"));
+        assertEquals(2, toTest.applied());
+    }
+
+    @Test
+    public void gapResyncsTest() {
+        toTest.accept(upsert(1, Type.CREATED, "test:1", "Journal One", "NLMTA1", "0000-0001"));
+        toTest.accept(upsert(4, Type.CREATED, "test:2", "Journal Two", "NLMTA2", "0000-0002"));
+
+        assertEquals(1, resyncs.get());
+        assertEquals(4, toTest.lastSequence());
+
+        toTest.accept(new JournalChange(5, Type.DELETED, "test:1", null, null, null, null));
+        assertEquals(1, resyncs.get());
+        assertEquals(5, toTest.lastSequence());
+    }
+
+    @Test
+    public void failedResyncRetriedTest() {
+        toTest = new JournalIndexSync(null, finder, f -> {
+            if (resyncs.incrementAndGet() == 1) {
+                throw new IOException("Repository unavailable");
+            }
+        });
+
+        toTest.accept(new JournalChange(1, Type.DELETED, "test:1", null, null, null, null));
+        toTest.accept(new JournalChange(3, Type.DELETED, "test:1", null, null, null, null));
+        assertEquals(1, toTest.lastSequence());
+
+        toTest.accept(new JournalChange(4, Type.DELETED, "test:1", null, null, null, null));
+        assertEquals(2, resyncs.get());
+        assertEquals(4, toTest.lastSequence());
+    }
+
+    @Test
+    public void fileSourceTest() throws Exception {
+        final Path events = folder.getRoot().toPath().resolve("events.tsv");
+
+        try (FileJournalChangeSource source = new FileJournalChangeSource(events)) {
+            assertNull(source.next(10, TimeUnit.MILLISECONDS));
+
+            FileJournalChangeSource.append(events,
+                                           new JournalChange(1, Type.CREATED, "test:1", "Journal\tOne\\", null,
+                                                             asList("0000-0001", "0000-0002"), PmcParticipation.A));
+            Files.write(events, "2\tDELETED\ttest:1".getBytes(), StandardOpenOption.APPEND);
+
+            final JournalChange created = source.next(1, TimeUnit.SECONDS);
+            assertEquals(1, created.sequence);
+            assertEquals(Type.CREATED, created.type);
+            assertEquals("Journal\tOne\\", created.name);
+            assertNull(created.nlmta);
+            assertEquals(asList("0000-0001", "0000-0002"), created.issns);
+            assertEquals(PmcParticipation.A, created.pmcParticipation);
+
+            //second line is incomplete until its newline arrives
+            assertNull(source.next(10, TimeUnit.MILLISECONDS));
+            Files.write(events, "\t\t\t\n".getBytes(), StandardOpenOption.APPEND);
+
+            final JournalChange deleted = source.next(1, TimeUnit.SECONDS);
+            assertEquals(2, deleted.sequence);
+            assertEquals(Type.DELETED, deleted.type);
+            assertEquals("test:1", deleted.uri);
+            assertNull(deleted.pmcParticipation);
+        }
+    }
+
+    private static JournalChange upsert(long sequence, Type type, String uri, String name, String nlmta,
+                                        String issn) {
+        return new JournalChange(sequence, type, uri, name, nlmta, singletonList(issn), null);
+    }
+
+    private String find(String nlmta, String name, String issn) {
+        finder.reset();
+        return finder.find(nlmta, name, singletonList(issn));
+    }
+}
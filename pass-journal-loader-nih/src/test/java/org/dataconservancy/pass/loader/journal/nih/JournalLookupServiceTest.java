@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class JournalLookupServiceTest {
+
+    private final AtomicReference<String> dump = new AtomicReference<>("/journals.nt");
+
+    private volatile boolean indexBroken;
+
+    private JournalLookupService toTest;
+
+    @Before
+    public void setUp() throws Exception {
+        toTest = new JournalLookupService(() -> {
+            final BatchJournalFinder finder = new BatchJournalFinder() {
+
+                @Override
+                Map<String, Integer> score(String nlmta, String name, List<String> issns) {
+                    if (indexBroken) {
+                        throw new IllegalStateException("Broken index");
+                    }
+                    return super.score(nlmta, name, issns);
+                }
+            };
+            finder.load(JournalLookupServiceTest.class.getResourceAsStream(dump.get()));
+            return finder;
+        });
+        toTest.start(new InetSocketAddress("localhost", 0), 2, 0);
+    }
+
+    @After
+    public void tearDown() {
+        toTest.close();
+    }
+
+    @Test
+    public void lookupTest() throws Exception {
+        assertEquals("{\"matches\":[{\"uri\":\"test:2\",\"score\":3}]}",
+                     get("?issn=0000-0002&issn=Print:0000-0002X&name=Test%202%20Journal"));
+
+        // Lookups do not claim journals
+        assertEquals("{\"matches\":[{\"uri\":\"test:2\",\"score\":3}]}",
+                     get("?issn=0000-0002&issn=Print:0000-0002X&name=Test%202%20Journal"));
+
+        assertEquals("{\"matches\":[]}", get("?issn=0000-0001"));
+        assertEquals("{\"matches\":[{\"uri\":\"test:1\",\"score\":1}]}", get("?issn=0000-0001&min=1"));
+    }
+
+    @Test
+    public void batchLookupTest() throws Exception {
+        final HttpURLConnection post = connect("");
+        post.setRequestMethod("POST");
+        post.setDoOutput(true);
+        try (OutputStream out = post.getOutputStream()) {
+            out.write("issn=0000-0001&name=Test+1+Journal\n\nissn=9999-9999\nissn=0000-0002&min=1\n".getBytes(UTF_8));
+        }
+
+        assertEquals(200, post.getResponseCode());
+        assertEquals("[{\"matches\":[{\"uri\":\"test:1\",\"score\":2}]},{\"matches\":[]}," +
+                     "{\"matches\":[{\"uri\":\"test:2\",\"score\":1}]}]", read(post.getInputStream()));
+    }
+
+    @Test
+    public void badRequestTest() throws Exception {
+        assertEquals(400, connect("?issn=0000-0001&color=blue").getResponseCode());
+        assertEquals(400, connect("?min=lots").getResponseCode());
+    }
+
+    @Test
+    public void internalErrorTest() throws Exception {
+        indexBroken = true;
+        assertEquals(500, connect("?issn=0000-0001").getResponseCode());
+
+        indexBroken = false;
+        assertEquals("{\"matches\":[]}", get("?issn=0000-0001"));
+    }
+
+    @Test
+    public void refreshTest() throws Exception {
+        dump.set("/moreJournals.nt");
+        toTest.refresh();
+
+        assertEquals("test:2", toTest.lookup("NLMTA2", null, Arrays.asList("Print:0000-0003", "Online:0000-0004"), 2)
+                                     .get(0).uri);
+        assertEquals(0, toTest.lookup(null, "Test 2 Journal", Arrays.asList("0000-0002X"), 2).size());
+    }
+
+    @Test
+    public void failedRefreshKeepsIndexTest() throws Exception {
+        dump.set("/missing.nt");
+        try {
+            toTest.refresh();
+        } catch (final Exception e) {
+            // expected
+        }
+
+        assertEquals(1, toTest.lookup(null, "Test 2 Journal", Arrays.asList("0000-0002X"), 2).size());
+    }
+
+    private String get(String query) throws IOException {
+        final HttpURLConnection get = connect(query);
+        assertEquals(200, get.getResponseCode());
+        return read(get.getInputStream());
+    }
+
+    private HttpURLConnection connect(String query) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + toTest.port() + JournalLookupService.LOOKUP_PATH +
+                                           query).openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[4096];
+            for (int n = body.read(buf); n >= 0; n = body.read(buf)) {
+                out.write(buf, 0, n);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class JournalReadersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final JournalReaders toTest = JournalReaders.defaults(false, false);
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = folder.newFolder("feeds").toPath();
+        copy("/data.csv", dir.resolve("pmc-2019-01.csv"));
+        copy("/data.csv", dir.resolve("pmc-2020-01"));
+        copy("/medline.txt", dir.resolve("medline.txt"));
+        copy("/nlmcatalog.xml", dir.resolve("catalog.xml"));
+        Files.createDirectory(dir.resolve("old"));
+        copy("/medline.txt", dir.resolve("old").resolve("medline-2018.txt"));
+
+        try (InputStream in = this.getClass().getResourceAsStream("/data.csv");
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("pmc-2021-01.gz")))) {
+            out.write(in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void detectTest() throws Exception {
+        assertEquals("pmc", toTest.detect(dir.resolve("pmc-2020-01")).name);
+        assertEquals("pmc", toTest.detect(dir.resolve("pmc-2021-01.gz")).name);
+        assertEquals("medline", toTest.detect(dir.resolve("medline.txt")).name);
+        assertEquals("nlmCatalog", toTest.detect(dir.resolve("catalog.xml")).name);
+
+        final Path unknown = folder.newFile("unknown").toPath();
+        Files.write(unknown, Collections.singletonList("not a journal file"));
+        assertNull(toTest.detect(unknown));
+    }
+
+    @Test
+    public void directoryOrderTest() throws Exception {
+        final List<JournalSource> sources = toTest.open(Collections.singletonList(dir.toString()));
+
+        assertEquals(Arrays.asList("pmc-2021-01.gz", "pmc-2020-01", "pmc-2019-01.csv", "medline.txt", "catalog.xml"),
+                     names(sources));
+        assertTrue(sources.get(0).hasPmcParticipation());
+        assertFalse(sources.get(3).hasPmcParticipation());
+
+        assertEquals(2, sources.get(0).journals().count());
+        assertEquals(3, sources.get(3).journals().count());
+        assertEquals(2, sources.get(4).journals().count());
+        sources.forEach(JournalSource::close);
+    }
+
+    @Test
+    public void namedFilesOrderedWithInputsTest() throws Exception {
+        final List<JournalSource> sources = toTest.open(
+            Collections.singletonMap(dir.resolve("old").resolve("medline-2018.txt").toString(), "medline"),
+            Collections.singletonList(dir + "/pmc-*"));
+
+        //a Medline file given by name still loads after PMC files found among the inputs
+        assertEquals(Arrays.asList("pmc-2021-01.gz", "pmc-2020-01", "pmc-2019-01.csv", "medline-2018.txt"),
+                     names(sources));
+        sources.forEach(JournalSource::close);
+    }
+
+    @Test
+    public void globTest() throws Exception {
+        assertEquals(Arrays.asList("pmc-2021-01.gz", "pmc-2019-01.csv"),
+                     names(toTest.open(Arrays.asList(dir + "/pmc-*.*", dir + "/pmc-2019-01.csv"))));
+
+        assertEquals(Arrays.asList("medline.txt", "medline-2018.txt"),
+                     names(toTest.open(Collections.singletonList(dir + "/**medline*"))));
+
+        assertEquals(Collections.emptyList(), names(toTest.open(Collections.singletonList(dir + "/*.none"))));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownFormatTest() throws Exception {
+        final File unknown = folder.newFile("unknown");
+        toTest.open(Collections.singletonList(unknown.toString()));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingFileTest() throws Exception {
+        toTest.open(Collections.singletonList(dir.resolve("missing.csv").toString()));
+    }
+
+    private static List<String> names(List<JournalSource> sources) {
+        return sources.stream().map(s -> s.name().substring(s.name().lastIndexOf('/') + 1))
+                      .collect(Collectors.toList());
+    }
+
+    private void copy(String resource, Path file) throws IOException {
+        try (InputStream in = this.getClass().getResourceAsStream(resource)) {
+            Files.copy(in, file);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class LoaderDaemonTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SimulatedJournalRepository repository = new SimulatedJournalRepository(1);
+
+    private final BatchJournalFinder finder = new BatchJournalFinder();
+
+    private Path inbox;
+
+    private LoaderDaemon toTest;
+
+    @Before
+    public void setUp() throws Exception {
+        inbox = folder.getRoot().toPath().resolve("inbox");
+        toTest = new LoaderDaemon(inbox, JournalReaders.defaults(false, false), finder,
+                                  () -> new LoaderEngine(repository, finder));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        toTest.close();
+    }
+
+    @Test
+    public void processInboxTest() throws Exception {
+        copy("/data.csv", inbox.resolve("pmc.csv"));
+        Files.write(inbox.resolve("notes.txt"), "not a journal file".getBytes(UTF_8));
+        Files.write(inbox.resolve("medline.txt.part"), "----\n".getBytes(UTF_8));
+
+        assertEquals(2, toTest.processInbox());
+
+        assertEquals(2, repository.size());
+        assertTrue(Files.exists(inbox.resolve(LoaderDaemon.DONE).resolve("pmc.csv")));
+        assertTrue(Files.exists(inbox.resolve(LoaderDaemon.FAILED).resolve("notes.txt")));
+        assertTrue(Files.exists(inbox.resolve("medline.txt.part")));
+
+        assertEquals(0, toTest.processInbox());
+    }
+
+    /* Journals created by one run are matched, not created again, by the next */
+    @Test
+    public void indexStaysWarmTest() throws Exception {
+        copy("/data.csv", inbox.resolve("pmc.csv"));
+        toTest.processInbox();
+
+        copy("/data.csv", inbox.resolve("pmc.csv"));
+        toTest.processInbox();
+
+        assertEquals(2, repository.size());
+
+        // Each run may claim each repository journal again
+        finder.reset();
+        assertEquals("sim:journals/1", finder.find("j1", "Journal 1", Collections.emptyList()));
+    }
+
+    @Test
+    public void watchTest() throws Exception {
+        toTest.setQuietPeriod(100);
+        final Thread daemon = new Thread(toTest::run);
+        daemon.start();
+
+        final Path staged = folder.newFile("pmc.csv").toPath();
+        copy("/data.csv", staged);
+        Files.move(staged, inbox.resolve("pmc.csv"), StandardCopyOption.ATOMIC_MOVE);
+
+        final Path done = inbox.resolve(LoaderDaemon.DONE).resolve("pmc.csv");
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!Files.exists(done) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        toTest.close();
+        daemon.join(10000);
+
+        assertTrue(Files.exists(done));
+        assertEquals(2, repository.size());
+    }
+
+    private static void copy(String resource, Path to) throws Exception {
+        try (InputStream in = LoaderDaemonTest.class.getResourceAsStream(resource)) {
+            Files.copy(in, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -16,21 +16,39 @@
 
 package org.dataconservancy.pass.loader.journal.nih;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.dataconservancy.pass.client.PassClient;
+import org.dataconservancy.pass.loader.journal.nih.WriteScheduler.Priority;
 import org.dataconservancy.pass.model.Journal;
 import org.dataconservancy.pass.model.PmcParticipation;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -44,6 +62,9 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class LoaderEngineTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Mock
     PassClient client;
 
@@ -90,6 +111,28 @@ public class LoaderEngineTest {
         assertEquals(updated.getPmcParticipation(), toAdd.getPmcParticipation());
     }
 
+    @Test
+    public void otherPmcParticipationKeptTest() {
+        final Journal existing = new Journal();
+        existing.setId(URI.create("test:otherPmcParticipation"));
+        existing.setJournalName("My Journal");
+        existing.getIssns().add("000-123");
+
+        when(client.readResource(eq(existing.getId()), eq(Journal.class))).thenReturn(existing);
+        when(finder.find(existing.getNlmta(), existing.getJournalName(), existing.getIssns())).thenReturn(
+            existing.getId().toString());
+
+        final Journal toAdd = new Journal();
+        toAdd.setIssns(existing.getIssns());
+        toAdd.setJournalName(existing.getJournalName());
+        toAdd.setPmcParticipation(PmcParticipation.B);
+
+        toTest.load(Stream.of(toAdd), true);
+
+        verify(client).updateResource(journalCaptor.capture());
+        assertEquals(PmcParticipation.B, journalCaptor.getValue().getPmcParticipation());
+    }
+
     @Test
     public void removePmcParticipationTest() {
         final Journal existing = new Journal();
@@ -142,6 +185,9 @@ public class LoaderEngineTest {
     @Test
     public void createSkipDuplicatesTest() {
 
+        //exercise the finder's handling of journals it has already matched
+        toTest.setDeduplicate(false);
+
         final Journal newJournal = new Journal();
 
         newJournal.setJournalName("My Journal");
@@ -161,4 +207,535 @@ public class LoaderEngineTest {
         verify(client, times(1)).createResource(eq(newJournal));
         verify(client, times(0)).updateResource(any());
     }
+
+    @Test
+    public void duplicatesNotMatchedTest() {
+        final Journal newJournal = new Journal();
+        newJournal.setJournalName("My Journal");
+        newJournal.getIssns().add("Print:000-123");
+        newJournal.getIssns().add("Online:000-456");
+
+        final Journal alias = new Journal();
+        alias.setJournalName("My Journal");
+        alias.getIssns().add("000-456");
+
+        final Journal moreIssns = new Journal();
+        moreIssns.setJournalName("My Journal");
+        moreIssns.getIssns().add("Online:000-789");
+
+        when(client.createResource(any(Journal.class))).thenReturn(URI.create("test:duplicatesNotMatched"));
+
+        toTest.load(Stream.of(newJournal, newJournal, alias, moreIssns), true);
+
+        verify(finder, times(1)).find(newJournal.getNlmta(), newJournal.getJournalName(), newJournal.getIssns());
+        verify(finder, times(0)).find(alias.getNlmta(), alias.getJournalName(), alias.getIssns());
+        //not a duplicate, so matched on its own; its ISSN is not merged into the first record's journal
+        verify(finder, times(1)).find(moreIssns.getNlmta(), moreIssns.getJournalName(), moreIssns.getIssns());
+    }
+
+    @Test
+    public void journalsBuiltOnlyForWritesTest() {
+        final Journal existing = new Journal();
+        existing.setId(URI.create("test:journalsBuiltOnlyForWrites"));
+        existing.setJournalName("My Journal");
+        existing.setNlmta("My J");
+        existing.getIssns().add("Print:000-123");
+
+        final CountingRecord unchanged = new CountingRecord(new CompactJournalRecord.Builder()
+            .name("My Journal").nlmta("My J").issn("Print:000-123").build());
+        final CountingRecord added = new CountingRecord(new CompactJournalRecord.Builder()
+            .name("New Journal").issn("Online:000-456").build());
+
+        when(finder.find("My J", "My Journal", Arrays.asList("Print:000-123"))).thenReturn(
+            existing.getId().toString());
+        when(client.readResource(eq(existing.getId()), eq(Journal.class))).thenReturn(existing);
+        when(client.createResource(any(Journal.class))).thenReturn(URI.create("test:added"));
+
+        toTest.load(Collections.singletonList(JournalSource.of("medline", Stream.of(unchanged, added), false)));
+
+        verify(client, times(0)).updateResource(any(Journal.class));
+        verify(client).createResource(journalCaptor.capture());
+        assertEquals("New Journal", journalCaptor.getValue().getJournalName());
+        assertEquals(Arrays.asList("Online:000-456"), journalCaptor.getValue().getIssns());
+
+        assertEquals(0, unchanged.built);
+        assertEquals(1, added.built);
+    }
+
+    @Test
+    public void outcomeReportTest() throws Exception {
+        final Journal existing = new Journal();
+        existing.setId(URI.create("test:outcomeReport"));
+        existing.setJournalName("My Journal");
+        existing.getIssns().add("000-123");
+
+        final Journal update = new Journal();
+        update.setIssns(existing.getIssns());
+        update.setJournalName(existing.getJournalName());
+        update.setPmcParticipation(PmcParticipation.A);
+
+        final Journal noIds = new Journal();
+        noIds.setJournalName("No Identifiers");
+
+        final Journal create = new Journal();
+        create.setJournalName("New, Journal");
+        create.getIssns().add("000-456");
+
+        when(client.readResource(eq(existing.getId()), eq(Journal.class))).thenReturn(existing);
+        when(client.createResource(any(Journal.class))).thenReturn(URI.create("test:created"));
+        when(finder.find(update.getNlmta(), update.getJournalName(), update.getIssns())).thenReturn(
+            existing.getId().toString());
+        when(finder.score(existing.getId().toString(), update.getNlmta(), update.getJournalName(),
+                          update.getIssns())).thenReturn(2);
+
+        final Path file = folder.getRoot().toPath().resolve("report.jsonl");
+        try (OutcomeReport report = new OutcomeReport(file)) {
+            toTest.setReport(report);
+            toTest.load(Collections.singletonList(new JournalSource("pmc.csv", Stream.of(update, noIds, create),
+                                                                    true)));
+        }
+
+        final List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals("{\"source\":\"pmc.csv\",\"record\":1,\"name\":\"My Journal\",\"action\":\"UPDATED\"," +
+                     "\"uri\":\"test:outcomeReport\",\"score\":2,\"changes\":[\"pmcParticipation: null -> A\"]}",
+                     lines.get(0));
+        assertTrue(lines.get(1).contains("\"record\":2,\"name\":\"No Identifiers\",\"action\":\"NO_ISSN_OR_NLMTA\""));
+        assertTrue(lines.get(2).contains("\"action\":\"CREATED\",\"uri\":\"test:created\""));
+    }
+
+    @Test
+    public void concurrentSourcesKeepSourceOrderTest() {
+        final Journal existing = new Journal();
+        existing.setId(URI.create("test:concurrentSources"));
+        existing.setJournalName("My Journal");
+        existing.getIssns().add("000-123");
+
+        when(client.readResource(eq(existing.getId()), eq(Journal.class))).thenReturn(existing);
+        when(finder.find(existing.getNlmta(), existing.getJournalName(), existing.getIssns())).thenReturn(
+            existing.getId().toString()).thenReturn("SKIP");
+
+        final Journal pmc = new Journal();
+        pmc.setIssns(existing.getIssns());
+        pmc.setJournalName(existing.getJournalName());
+        pmc.setPmcParticipation(PmcParticipation.A);
+
+        final Journal medline = new Journal();
+        medline.setIssns(existing.getIssns());
+        medline.setJournalName(existing.getJournalName());
+
+        //the pmc source is first, so it must claim the journal even though both are parsed concurrently
+        toTest.load(Arrays.asList(new JournalSource("pmc", Stream.of(pmc), true),
+                                  new JournalSource("medline", Stream.of(medline), false)));
+
+        verify(client, times(1)).updateResource(journalCaptor.capture());
+        assertEquals(PmcParticipation.A, journalCaptor.getValue().getPmcParticipation());
+    }
+
+    @Test
+    public void boundedParsersTest() {
+        final Journal existing = new Journal();
+        existing.setId(URI.create("test:boundedParsers"));
+        existing.setJournalName("My Journal");
+        existing.getIssns().add("000-123");
+
+        when(client.readResource(eq(existing.getId()), eq(Journal.class))).thenReturn(existing);
+        when(finder.find(existing.getNlmta(), existing.getJournalName(), existing.getIssns())).thenReturn(
+            existing.getId().toString()).thenReturn("SKIP");
+
+        final List<JournalSource> sources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final Journal j = new Journal();
+            j.setIssns(existing.getIssns());
+            j.setJournalName(existing.getJournalName());
+            j.setPmcParticipation(i == 0 ? PmcParticipation.A : null);
+
+            // More journals than fit in a buffer, so parsers block until their source is matched
+            sources.add(new JournalSource("source" + i, Stream.concat(
+                Stream.of(j), Stream.generate(Journal::new).limit(10)), true));
+        }
+
+        toTest.setNumParsers(2);
+        toTest.setBufferSize(2);
+        toTest.load(sources);
+
+        verify(client, times(1)).updateResource(journalCaptor.capture());
+        assertEquals(PmcParticipation.A, journalCaptor.getValue().getPmcParticipation());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void concurrentSourceFailureTest() {
+        final Stream<Journal> failing = Stream.generate(() -> {
+            throw new IllegalStateException("bad record");
+        });
+
+        toTest.load(Collections.singletonList(new JournalSource("bad", failing, true)));
+    }
+
+    @Test
+    public void reconcilePmcParticipationTest() {
+        final Journal kept = new Journal();
+        kept.setId(URI.create("test:kept"));
+        kept.setJournalName("Kept Journal");
+        kept.getIssns().add("000-123");
+        kept.setPmcParticipation(PmcParticipation.A);
+
+        final Journal dropped = new Journal();
+        dropped.setId(URI.create("test:dropped"));
+        dropped.setJournalName("Dropped Journal");
+        dropped.setPmcParticipation(PmcParticipation.A);
+
+        final Journal row = new Journal();
+        row.setIssns(kept.getIssns());
+        row.setJournalName(kept.getJournalName());
+        row.setPmcParticipation(PmcParticipation.A);
+
+        when(finder.pmcParticipants()).thenReturn(new HashSet<>(Arrays.asList("test:kept", "test:dropped")));
+        when(finder.find(row.getNlmta(), row.getJournalName(), row.getIssns())).thenReturn("test:kept");
+        when(client.readResource(eq(kept.getId()), eq(Journal.class))).thenReturn(kept);
+        when(client.readResource(eq(dropped.getId()), eq(Journal.class))).thenReturn(dropped);
+
+        toTest.load(Collections.singletonList(new JournalSource("pmc", Stream.of(row), true)));
+        toTest.reconcilePmcParticipation();
+
+        verify(client, times(1)).updateResource(journalCaptor.capture());
+        assertEquals(dropped.getId(), journalCaptor.getValue().getId());
+        assertNull(journalCaptor.getValue().getPmcParticipation());
+        verify(finder).add(dropped);
+    }
+
+    @Test
+    public void pmcJournalClaimedByOtherRecordNotClearedTest() throws Exception {
+        for (final boolean dedup : new boolean[] {true, false}) {
+            final byte[] ntriples;
+            try (InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+                ntriples = (new String(in.readAllBytes(), UTF_8) +
+                            "<test:2> <http://oapass.org/ns/pass#pmcParticipation> \"A\"^^<xsd:string> .\n")
+                    .getBytes(UTF_8);
+            }
+            final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+            repository.load(new ByteArrayInputStream(ntriples));
+            final BatchJournalFinder finder = new BatchJournalFinder();
+            finder.load(new ByteArrayInputStream(ntriples));
+
+            //a Medline record for test:2 claims it before the PMC record, which is then a duplicate or skipped
+            final Journal medline = participation();
+            medline.setPmcParticipation(null);
+
+            try (LoaderEngine engine = new LoaderEngine(repository, finder)) {
+                engine.setDeduplicate(dedup);
+                engine.load(Arrays.asList(new JournalSource("medline", Stream.of(medline), false),
+                                          new JournalSource("pmc", Stream.of(participation()), true)));
+                engine.reconcilePmcParticipation();
+            }
+
+            assertEquals(PmcParticipation.A, repository.read(URI.create("test:2")).getPmcParticipation());
+        }
+    }
+
+    @Test
+    public void noReconcileAfterFailedPmcSourceTest() {
+        when(finder.pmcParticipants()).thenReturn(Collections.singleton("test:dropped"));
+
+        final Stream<Journal> failing = Stream.generate(() -> {
+            throw new IllegalStateException("bad record");
+        });
+
+        try {
+            toTest.load(Collections.singletonList(new JournalSource("pmc", failing, true)));
+        } catch (final RuntimeException e) {
+            //expected
+        }
+        toTest.reconcilePmcParticipation();
+
+        verify(client, times(0)).readResource(any(), any());
+        verify(client, times(0)).updateResource(any());
+    }
+
+    @Test
+    public void otherShardsNotLoadedTest() {
+        final List<Journal> journals = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final Journal j = new Journal();
+            j.setJournalName("Journal " + i);
+            j.getIssns().add(String.format("0000-%04d", i));
+            journals.add(j);
+        }
+
+        final ShardFilter shard = new ShardFilter(0, 2);
+        journals.forEach(j -> shard.add(JournalRecord.of(j)));
+        toTest.setShardFilter(shard);
+
+        when(client.createResource(any(Journal.class))).thenReturn(URI.create("test:created"));
+
+        toTest.load(journals.stream(), true);
+
+        for (final Journal j : journals) {
+            verify(finder, times(shard.owns(JournalRecord.of(j)) ? 1 : 0)).find(j.getNlmta(), j.getJournalName(),
+                                                                                 j.getIssns());
+        }
+    }
+
+    @Test
+    public void deletedJournalSkippedTest() throws Exception {
+        //the finder still has test:1, but it has been deleted from the repository
+        final BatchJournalFinder seeded = seededFinder();
+        final Journal one = enrichment();
+
+        final Path file = folder.getRoot().toPath().resolve("report.jsonl");
+        try (OutcomeReport report = new OutcomeReport(file);
+             LoaderEngine engine = new LoaderEngine(new SimulatedJournalRepository(0), seeded)) {
+            engine.setReport(report);
+            engine.load(Collections.singletonList(new JournalSource("medline", Stream.of(one), false)));
+        }
+
+        final List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"action\":\"GONE\",\"uri\":\"test:1\""));
+        assertNull(seeded.score("test:1", one.getNlmta(), one.getJournalName(), one.getIssns()));
+    }
+
+    @Test
+    public void scheduledWritesInPriorityOrderTest() throws Exception {
+        final List<String> writes = new ArrayList<>();
+        final SimulatedJournalRepository repository = seededRepository();
+
+        try (LoaderEngine engine = new LoaderEngine(recording(repository, writes), seededFinder())) {
+            engine.setDeadline(System.nanoTime(), Duration.ofHours(1));
+            engine.load(Arrays.asList(new JournalSource("medline", Stream.of(enrichment(), newJournal()), false),
+                                      new JournalSource("pmc", Stream.of(participation()), true)));
+            assertTrue(writes.isEmpty());
+        }
+
+        assertEquals(Arrays.asList("update test:2", "create Journal New", "update test:1"), writes);
+        assertEquals(PmcParticipation.A, repository.read(URI.create("test:2")).getPmcParticipation());
+        assertTrue(repository.read(URI.create("test:1")).getIssns().contains("0000-0009"));
+    }
+
+    @Test
+    public void deadlineMeasuredFromRunStartTest() throws Exception {
+        final List<String> writes = new ArrayList<>();
+        final SimulatedJournalRepository repository = seededRepository();
+
+        //the run started an hour ago, so its ten minute deadline has passed however quickly the engine works
+        final long runStarted = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+        try (LoaderEngine engine = new LoaderEngine(recording(repository, writes), seededFinder())) {
+            engine.setDeadline(runStarted, Duration.ofMinutes(10));
+            engine.load(Collections.singletonList(new JournalSource("pmc", Stream.of(participation()), true)));
+        }
+
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void deferredWritesCarriedOverTest() throws Exception {
+        final Path deferred = folder.getRoot().toPath().resolve("deferred.tsv");
+        final List<String> writes = new ArrayList<>();
+        final SimulatedJournalRepository repository = seededRepository();
+
+        try (LoaderEngine engine = new LoaderEngine(recording(repository, writes), seededFinder())) {
+            engine.setDeadline(System.nanoTime(), Duration.ZERO);
+            engine.setDeferred(deferred);
+            engine.load(Arrays.asList(new JournalSource("medline", Stream.of(enrichment(), newJournal()), false),
+                                      new JournalSource("pmc", Stream.of(participation()), true)));
+        }
+
+        assertTrue(writes.isEmpty());
+        final List<Priority> priorities = new ArrayList<>();
+        DeferredWrites.read(deferred).forEach(entry -> priorities.add(entry.priority));
+        assertEquals(Arrays.asList(Priority.PARTICIPATION, Priority.CREATE, Priority.ENRICHMENT), priorities);
+
+        //the next run has nothing new to load, and no deadline
+        try (LoaderEngine engine = new LoaderEngine(recording(repository, writes), seededFinder())) {
+            engine.setDeferred(deferred);
+            engine.load(Collections.emptyList());
+        }
+
+        assertEquals(3, writes.size());
+        assertEquals(PmcParticipation.A, repository.read(URI.create("test:2")).getPmcParticipation());
+        assertTrue(repository.read(URI.create("test:1")).getIssns().contains("0000-0009"));
+        assertFalse(Files.exists(deferred));
+    }
+
+    @Test
+    public void unchangedMatchesNotDeferredTest() throws Exception {
+        final Path deferred = folder.getRoot().toPath().resolve("deferred.tsv");
+        final List<String> writes = new ArrayList<>();
+
+        //test:1 already has these ISSNs and this NLMTA
+        final Journal unchanged = enrichment();
+        unchanged.getIssns().remove("0000-0009");
+
+        try (LoaderEngine engine = new LoaderEngine(recording(seededRepository(), writes), seededFinder())) {
+            engine.setDeadline(System.nanoTime(), Duration.ZERO);
+            engine.setDeferred(deferred);
+            engine.load(Collections.singletonList(new JournalSource("medline", Stream.of(unchanged), false)));
+        }
+
+        assertTrue(writes.isEmpty());
+        assertFalse(Files.exists(deferred));
+    }
+
+    @Test
+    public void deferredParticipationDecidedByNewPmcListTest() throws Exception {
+        final Path deferred = folder.getRoot().toPath().resolve("deferred.tsv");
+        final SimulatedJournalRepository repository = seededRepository();
+
+        try (LoaderEngine engine = new LoaderEngine(repository, seededFinder())) {
+            engine.setDeadline(System.nanoTime(), Duration.ZERO);
+            engine.setDeferred(deferred);
+            engine.load(Collections.singletonList(new JournalSource("pmc", Stream.of(participation()), true)));
+        }
+
+        //the next PMC list has test:1 but no longer test:2
+        final Journal one = enrichment();
+        one.setPmcParticipation(PmcParticipation.A);
+
+        try (LoaderEngine engine = new LoaderEngine(repository, seededFinder())) {
+            engine.setDeferred(deferred);
+            engine.load(Collections.singletonList(new JournalSource("pmc", Stream.of(one), true)));
+            engine.reconcilePmcParticipation();
+        }
+
+        assertNull(repository.read(URI.create("test:2")).getPmcParticipation());
+        assertEquals(PmcParticipation.A, repository.read(URI.create("test:1")).getPmcParticipation());
+        assertFalse(Files.exists(deferred));
+    }
+
+    @Test
+    public void scheduledCreatesNotDuplicatedTest() {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+
+        final Journal pmc = newJournal();
+        pmc.setPmcParticipation(PmcParticipation.A);
+        final Journal medline = newJournal();
+        medline.getIssns().add("0000-0011");
+
+        try (LoaderEngine engine = new LoaderEngine(repository, new BatchJournalFinder())) {
+            engine.setDeadline(System.nanoTime(), Duration.ofHours(1));
+            engine.load(Arrays.asList(new JournalSource("pmc", Stream.of(pmc), true),
+                                      new JournalSource("medline", Stream.of(medline), false)));
+        }
+
+        //as if the journal had been created straight away, the medline record matches it and is skipped
+        assertEquals(1, repository.size());
+        final Journal created = repository.read(URI.create("sim:journals/1"));
+        assertEquals(Collections.singletonList("0000-0010"), created.getIssns());
+        assertEquals(PmcParticipation.A, created.getPmcParticipation());
+    }
+
+    private SimulatedJournalRepository seededRepository() throws Exception {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+        try (InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+            repository.load(in);
+        }
+        return repository;
+    }
+
+    private BatchJournalFinder seededFinder() throws Exception {
+        final BatchJournalFinder seeded = new BatchJournalFinder();
+        try (InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+            seeded.load(in);
+        }
+        return seeded;
+    }
+
+    /* Adds an ISSN to test:1 */
+    private static Journal enrichment() {
+        final Journal j = new Journal();
+        j.setJournalName("Journal One");
+        j.setNlmta("NLMTA1");
+        j.getIssns().addAll(Arrays.asList("0000-0001", "0000-0002", "0000-0009"));
+        return j;
+    }
+
+    /* Gives test:2 type A participation */
+    private static Journal participation() {
+        final Journal j = new Journal();
+        j.setJournalName("Journal Two");
+        j.setNlmta("NLMTA2");
+        j.getIssns().addAll(Arrays.asList("Print:0000-0003", "Online:0000-0004"));
+        j.setPmcParticipation(PmcParticipation.A);
+        return j;
+    }
+
+    private static Journal newJournal() {
+        final Journal j = new Journal();
+        j.setJournalName("Journal New");
+        j.setNlmta("NEW");
+        j.getIssns().add("0000-0010");
+        return j;
+    }
+
+    /* Records the order of writes to a repository */
+    private static JournalRepository recording(JournalRepository repository, List<String> writes) {
+        return new JournalRepository() {
+
+            @Override
+            public URI create(Journal j) {
+                writes.add("create " + j.getJournalName());
+                return repository.create(j);
+            }
+
+            @Override
+            public Journal read(URI uri) {
+                return repository.read(uri);
+            }
+
+            @Override
+            public void update(Journal j) {
+                writes.add("update " + j.getId());
+                repository.update(j);
+            }
+
+            @Override
+            public URI journalUri(String name) {
+                return repository.journalUri(name);
+            }
+
+            @Override
+            public boolean createIfAbsent(URI uri, Journal j) {
+                writes.add("create " + j.getJournalName());
+                return repository.createIfAbsent(uri, j);
+            }
+        };
+    }
+
+    /* Counts how many times a journal is built from a record */
+    private static class CountingRecord implements JournalRecord {
+
+        final JournalRecord record;
+
+        int built;
+
+        CountingRecord(JournalRecord record) {
+            this.record = record;
+        }
+
+        @Override
+        public String name() {
+            return record.name();
+        }
+
+        @Override
+        public String nlmta() {
+            return record.nlmta();
+        }
+
+        @Override
+        public List<String> issns() {
+            return record.issns();
+        }
+
+        @Override
+        public Journal journal() {
+            built++;
+            return record.journal();
+        }
+
+        @Override
+        public boolean isActive() {
+            return record.isActive();
+        }
+    }
 }
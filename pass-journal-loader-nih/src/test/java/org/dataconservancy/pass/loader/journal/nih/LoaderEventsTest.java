@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class LoaderEventsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadEventsTest() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("load.jfr");
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+        final BatchJournalFinder finder = new BatchJournalFinder();
+
+        final Journal matching = new Journal();
+        matching.setJournalName("Journal One");
+        matching.getIssns().add("0000-0001");
+
+        final Recording recording = LoaderEvents.startRecording(file, "default", Duration.ZERO);
+        try {
+            try (InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+                repository.load(in);
+            }
+            try (InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+                finder.load(in);
+            }
+
+            final String csv = Paths.get(this.getClass().getResource("/data.csv").toURI()).toString();
+            try (LoaderEngine engine = new LoaderEngine(repository, finder)) {
+                engine.load(Arrays.asList(JournalSource.open(csv, new NihTypeAReader()),
+                                          new JournalSource("matching", Stream.of(matching), false)));
+            }
+        } finally {
+            recording.stop();
+            recording.close();
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().startsWith("org.dataconservancy.pass.loader."))
+            .collect(Collectors.toList());
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final RecordedEvent e : events) {
+            counts.merge(e.getEventType().getName().substring("org.dataconservancy.pass.loader.".length()), 1,
+                         Integer::sum);
+        }
+
+        assertEquals(1, (int) counts.get("IndexBuild"));
+        assertEquals(3, (int) counts.get("RecordParse"));
+        assertEquals(3, (int) counts.get("Find"));
+
+        //two journals created from the csv, and one read that needed no update
+        assertEquals(3, (int) counts.get("RepositoryOperation"));
+        assertEquals(2, (int) counts.get("FinderAdd"));
+
+        final RecordedEvent index = events.stream()
+            .filter(e -> e.getEventType().getName().endsWith("IndexBuild"))
+            .findFirst().get();
+        assertEquals("HeapJournalIndex", index.getString("index"));
+        assertTrue(index.getLong("issns") > 0);
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().endsWith("Find") &&
+                                                 "MATCHED".equals(e.getString("outcome")) &&
+                                                 "test:1".equals(e.getString("uri"))));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().endsWith("RepositoryOperation") &&
+                                                 "READ".equals(e.getString("operation")) &&
+                                                 "test:1".equals(e.getString("uri"))));
+    }
+}
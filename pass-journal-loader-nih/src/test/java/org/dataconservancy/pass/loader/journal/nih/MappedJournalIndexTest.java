@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class MappedJournalIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedJournalIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new MappedJournalIndex(folder.getRoot().toPath(), 2);
+
+        // Force several sorted runs to be merged
+        index.setRunSize(3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    public void mergedRunsTest() {
+        index.add(Field.ISSN, "0000-0002", "test:2");
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        index.add(Field.NLMTA, "0000-0001", "test:3");
+        index.add(Field.ISSN, "0000-0001", "test:2");
+        index.add(Field.NAME, "Journal é", "test:4");
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        index.add(Field.ISSN, "0000-0003", "test:3");
+        index.loaded();
+
+        assertEquals(new HashSet<>(Arrays.asList("test:1", "test:2")), index.get(Field.ISSN, "0000-0001"));
+        assertEquals(Collections.singleton("test:2"), index.get(Field.ISSN, "0000-0002"));
+        assertEquals(Collections.singleton("test:3"), index.get(Field.ISSN, "0000-0003"));
+        assertEquals(Collections.singleton("test:3"), index.get(Field.NLMTA, "0000-0001"));
+        assertEquals(Collections.singleton("test:4"), index.get(Field.NAME, "Journal é"));
+        assertNull(index.get(Field.ISSN, "0000-0004"));
+        assertNull(index.get(Field.NAME, "Journal"));
+
+        assertEquals(3, index.size(Field.ISSN));
+        assertEquals(1, index.size(Field.NLMTA));
+        assertEquals(1, index.size(Field.NAME));
+    }
+
+    @Test
+    public void addAfterLoadedTest() {
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        index.loaded();
+
+        // Cache a miss and a hit, then make sure adds are seen
+        assertNull(index.get(Field.ISSN, "0000-0002"));
+        assertEquals(Collections.singleton("test:1"), index.get(Field.ISSN, "0000-0001"));
+
+        index.add(Field.ISSN, "0000-0002", "test:2");
+        index.add(Field.ISSN, "0000-0001", "test:2");
+
+        assertEquals(Collections.singleton("test:2"), index.get(Field.ISSN, "0000-0002"));
+        assertEquals(new HashSet<>(Arrays.asList("test:1", "test:2")), index.get(Field.ISSN, "0000-0001"));
+        assertEquals(2, index.size(Field.ISSN));
+    }
+
+    @Test
+    public void emptyIndexTest() {
+        assertNull(index.get(Field.ISSN, "0000-0001"));
+        assertEquals(0, index.size(Field.ISSN));
+
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        assertEquals(Collections.singleton("test:1"), index.get(Field.ISSN, "0000-0001"));
+    }
+
+    @Test
+    public void removeTest() {
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        index.add(Field.ISSN, "0000-0001", "test:2");
+        index.loaded();
+
+        index.remove(Field.ISSN, "0000-0001", "test:1");
+        assertEquals(Collections.singleton("test:2"), index.get(Field.ISSN, "0000-0001"));
+
+        index.remove(Field.ISSN, "0000-0001", "test:2");
+        assertNull(index.get(Field.ISSN, "0000-0001"));
+
+        //adding back after removal restores the posting
+        index.add(Field.ISSN, "0000-0001", "test:1");
+        assertEquals(Collections.singleton("test:1"), index.get(Field.ISSN, "0000-0001"));
+    }
+
+    @Test
+    public void finderTest() throws Exception {
+        final BatchJournalFinder toTest = new BatchJournalFinder(index);
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+            toTest.load(in);
+        }
+
+        assertNull(toTest.find(null, null, Collections.singletonList("0000-0001")));
+        assertEquals("test:1", toTest.find(null, "Journal One", Collections.singletonList("0000-0001")));
+        assertEquals("SKIP", toTest.find("NLMTA1", "Journal One", Collections.singletonList("0000-0001")));
+        assertEquals("test:3", toTest.find("NLMTA3", "Journal Three", Arrays.asList("0000-0005", "0000-0006")));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class MappedMedlineReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameAsMedlineReaderTest() throws Exception {
+        final Path file = folder.newFile("medline.txt").toPath();
+        try (final InputStream in = this.getClass().getResourceAsStream("/medline.txt")) {
+            Files.write(file, in.readAllBytes());
+        }
+
+        final List<Journal> records;
+        try (Stream<Journal> journals = new MappedMedlineReader().readJournals(file)) {
+            records = journals.collect(Collectors.toList());
+        }
+
+        assertEquals(3, records.size());
+        assertSame(new String(Files.readAllBytes(file), UTF_8), records);
+    }
+
+    @Test
+    public void irregularFormattingTest() {
+        assertSame("----\r\nJrId: 1\r\nJournalTitle: First\r\nISSN ( Print ):  0000-0001 \r\n" +
+                   "----\r\nJrId: 2\r\nMedAbbr:2jr\r\nJournalTitle\r\n----\r\n\r\n");
+        assertSame("----\nJournalTitle: Journal é\n------\n---- ----\nJrId: 3\nISSN (Online):\n" +
+                   "ISSN (Print): 0000-0003\n----\n");
+        assertSame("JournalTitle: No boundary\nMedAbbr: nb");
+        assertSame("");
+    }
+
+    @Test
+    public void largerThanWindowTest() {
+        final StringBuilder medline = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            medline.append("--------------------------------------------------------\r\n")
+                .append("JrId: ").append(i).append("\r\n")
+                .append("JournalTitle: Journal ").append(i).append("\r\n")
+                .append("MedAbbr: J").append(i).append("\r\n")
+                .append("ISSN (Print): 0000-").append(i).append("\r\n")
+                .append("ISSN (Online): 1111-").append(i).append("\r\n");
+        }
+        for (int i = 0; i < 100000; i++) {
+            medline.append("NlmId: long line ");
+        }
+        medline.append("\r\nJournalTitle: Last\r\n");
+
+        assertSame(medline.toString());
+    }
+
+    private static void assertSame(String medline) {
+        assertSame(medline, new MappedMedlineReader().readJournals(ByteBuffer.wrap(medline.getBytes(UTF_8)))
+                                                     .collect(Collectors.toList()));
+    }
+
+    private static void assertSame(String medline, List<Journal> actual) {
+        final List<Journal> expected = new MedlineReader()
+            .readJournals(new ByteArrayInputStream(medline.getBytes(UTF_8)), UTF_8)
+            .collect(Collectors.toList());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getJournalName(), actual.get(i).getJournalName());
+            assertEquals(expected.get(i).getNlmta(), actual.get(i).getNlmta());
+            assertEquals(expected.get(i).getIssns(), actual.get(i).getIssns());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class MappedNihTypeAReaderTest {
+
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\r"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* Records with quoting, embedded line breaks, short rows and irregular separators */
+    private static String csv(int records) {
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            final String nl = SEPARATORS[i % SEPARATORS.length];
+            switch (i % 8) {
+            case 0:
+                csv.append("Journal ").append(i).append(",j").append(i).append(",0000-").append(i)
+                    .append(",1111-").append(i).append(",Jul 2011,").append(nl);
+                break;
+            case 1:
+                csv.append("\"Journal, \"\"Quoted\"\" ").append(i).append("\",j").append(i).append(",,1111-")
+                    .append(i).append(",Sep 2004,Feb 2016").append(nl);
+                break;
+            case 2:
+                csv.append("\"Multi").append(nl).append("line ").append(i).append("\" ,\"j").append(i)
+                    .append("\",\" \",0000-").append(i).append(",Jan 2000").append(nl);
+                break;
+            case 3:
+                csv.append(" Spaced ").append(i).append(" , j ,0000-").append(i).append(", ,Jan 2000, ")
+                    .append(nl);
+                break;
+            case 4:
+                csv.append("Short ").append(i).append(",j").append(i).append(nl);
+                break;
+            case 5:
+                csv.append(nl);
+                break;
+            case 6:
+                csv.append("Revue é").append(i).append(",a\"b,0000-").append(i).append(",,x,y,z,")
+                    .append(nl);
+                break;
+            default:
+                csv.append("Journal ").append(i).append(",\"\",0000-").append(i).append(",\"\"").append(nl);
+                break;
+            }
+        }
+        return csv.toString();
+    }
+
+    @Test
+    public void sameAsNihTypeAReaderTest() throws Exception {
+        final Path file = folder.newFile("data.csv").toPath();
+        try (final InputStream in = this.getClass().getResourceAsStream("/data.csv")) {
+            Files.write(file, in.readAllBytes());
+        }
+
+        final List<Journal> records;
+        try (Stream<Journal> journals = new MappedNihTypeAReader().readJournals(file)) {
+            records = journals.collect(Collectors.toList());
+        }
+
+        assertEquals(2, records.size());
+        assertSame(new String(Files.readAllBytes(file), UTF_8), records);
+    }
+
+    @Test
+    public void irregularFormattingTest() {
+        assertSame(csv(40));
+        assertSame(csv(40) + "Last,j,0000-0001,0000-0002");
+        assertSame(csv(40) + "Last,j,0000-0001,0000-0002,Jan 2000,");
+        assertSame("");
+    }
+
+    @Test
+    public void largerThanWindowTest() {
+        final StringBuilder csv = new StringBuilder(csv(5000));
+        csv.append('"');
+        for (int i = 0; i < 100000; i++) {
+            csv.append("long \"\"field\"\" ");
+        }
+        csv.append("\",j,0000-0001,0000-0002\n");
+
+        assertSame(csv.toString());
+    }
+
+    @Test
+    public void splitsMatchSequentialTest() {
+        final String csv = csv(50000);
+
+        final List<Spliterator<JournalRecord>> leaves = new ArrayList<>();
+        split(new NihTypeASpliterator(ByteBuffer.wrap(csv.getBytes(UTF_8))), leaves);
+        assertTrue(leaves.size() > 8);
+
+        final List<Journal> parsed = new ArrayList<>();
+        leaves.forEach(s -> s.forEachRemaining(r -> parsed.add(r.journal())));
+
+        assertSame(csv, parsed);
+    }
+
+    @Test
+    public void resyncFindsRecordStartsTest() {
+        final ByteBuffer buffer = ByteBuffer.wrap(csv(400).getBytes(UTF_8));
+        final int end = buffer.limit();
+
+        final Set<Integer> starts = new HashSet<>();
+        for (int start = 0; start < end; start = NihTypeASpliterator.findRecordStart(buffer, start, start + 1, end)) {
+            starts.add(start);
+        }
+        starts.add(end);
+
+        int resynced = 0;
+        for (int from = 1; from < end; from++) {
+            final int start = NihTypeASpliterator.resync(buffer, from, end);
+            if (start >= 0) {
+                assertTrue(start >= from);
+                assertTrue("Not a record start: " + start, starts.contains(start));
+                resynced++;
+            }
+        }
+        assertTrue(resynced > end / 2);
+    }
+
+    @Test
+    public void splitWithinLongQuotedFieldTest() {
+        //a quoted field spanning many lines and longer than the resync window, around the middle of the file
+        final StringBuilder csv = new StringBuilder(csv(2000));
+        csv.append('"');
+        for (int i = 0; i < 20000; i++) {
+            csv.append("line, ").append(i).append('\n');
+        }
+        csv.append("\",j,0000-0001,0000-0002\n").append(csv(2000));
+
+        final List<Spliterator<JournalRecord>> leaves = new ArrayList<>();
+        split(new NihTypeASpliterator(ByteBuffer.wrap(csv.toString().getBytes(UTF_8))), leaves);
+        assertTrue(leaves.size() > 2);
+
+        final List<Journal> parsed = new ArrayList<>();
+        leaves.forEach(s -> s.forEachRemaining(r -> parsed.add(r.journal())));
+
+        assertSame(csv.toString(), parsed);
+    }
+
+    @Test
+    public void parallelStreamTest() {
+        final String csv = csv(50000);
+
+        final MappedNihTypeAReader reader = new MappedNihTypeAReader();
+        reader.setParallel(true);
+
+        assertSame(csv, reader.readJournals(ByteBuffer.wrap(csv.getBytes(UTF_8))).collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unterminatedQuoteTest() {
+        new MappedNihTypeAReader().readJournals(ByteBuffer.wrap("\"Journal,j,0000-0001,\n".getBytes(UTF_8)))
+                                  .count();
+    }
+
+    private static void split(Spliterator<JournalRecord> spliterator, List<Spliterator<JournalRecord>> leaves) {
+        final Spliterator<JournalRecord> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            leaves.add(spliterator);
+        } else {
+            split(prefix, leaves);
+            split(spliterator, leaves);
+        }
+    }
+
+    private static void assertSame(String csv) {
+        assertSame(csv, new MappedNihTypeAReader().readJournals(ByteBuffer.wrap(csv.getBytes(UTF_8)))
+                                                  .collect(Collectors.toList()));
+    }
+
+    private static void assertSame(String csv, List<Journal> actual) {
+        final List<Journal> expected = new NihTypeAReader()
+            .readJournals(new ByteArrayInputStream(csv.getBytes(UTF_8)), UTF_8)
+            .collect(Collectors.toList());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getJournalName(), actual.get(i).getJournalName());
+            assertEquals(expected.get(i).getNlmta(), actual.get(i).getNlmta());
+            assertEquals(expected.get(i).getIssns(), actual.get(i).getIssns());
+            assertEquals(expected.get(i).getPmcParticipation(), actual.get(i).getPmcParticipation());
+        }
+    }
+}
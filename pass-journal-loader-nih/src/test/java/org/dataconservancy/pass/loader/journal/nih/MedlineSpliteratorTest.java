@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class MedlineSpliteratorTest {
+
+    private static final String[] SEPARATORS = {"\n", "\r\n", "\r"};
+
+    /* Records with irregular boundaries and separators */
+    private static String medline(int records) {
+        final StringBuilder medline = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            final String nl = SEPARATORS[i % SEPARATORS.length];
+            medline.append("--------------------------------------------------------").append(nl);
+            if (i % 7 == 0) {
+                medline.append("----").append(nl);
+            }
+            if (i % 11 == 0) {
+                medline.append("JournalTitle: Skipped ").append(i).append(nl);
+            }
+            medline.append("JrId: ").append(i).append(nl)
+                .append("JournalTitle: Journal ").append(i).append(nl)
+                .append("MedAbbr: J").append(i).append(nl)
+                .append("ISSN (Print): 0000-").append(i).append(nl)
+                .append("ISSN (Online):").append(nl)
+                .append("NlmId: ").append(i).append(nl);
+        }
+        return medline.toString();
+    }
+
+    @Test
+    public void splitsMatchSequentialTest() {
+        final String medline = medline(20000);
+        final ByteBuffer buffer = ByteBuffer.wrap(medline.getBytes(UTF_8));
+
+        final List<Spliterator<JournalRecord>> leaves = new ArrayList<>();
+        split(new MedlineSpliterator(buffer), leaves);
+        assertTrue(leaves.size() > 8);
+
+        final List<Journal> parsed = new ArrayList<>();
+        leaves.forEach(s -> s.forEachRemaining(r -> parsed.add(r.journal())));
+
+        assertSame(medline, parsed);
+    }
+
+    @Test
+    public void parallelStreamTest() {
+        final String medline = medline(20000);
+
+        final MappedMedlineReader reader = new MappedMedlineReader();
+        reader.setParallel(true);
+
+        assertSame(medline, reader.readJournals(ByteBuffer.wrap(medline.getBytes(UTF_8)))
+                                  .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void noBoundaryTest() {
+        final StringBuilder medline = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            medline.append("JournalTitle: Journal ").append(i).append('\n');
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(medline.toString().getBytes(UTF_8));
+        assertEquals(-1, MedlineSpliterator.findBoundary(buffer, 1, buffer.limit()));
+        assertEquals(null, new MedlineSpliterator(buffer).trySplit());
+    }
+
+    private static void split(Spliterator<JournalRecord> spliterator, List<Spliterator<JournalRecord>> leaves) {
+        final Spliterator<JournalRecord> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            leaves.add(spliterator);
+        } else {
+            split(prefix, leaves);
+            split(spliterator, leaves);
+        }
+    }
+
+    private static void assertSame(String medline, List<Journal> actual) {
+        final List<Journal> expected = new MedlineReader()
+            .readJournals(new ByteArrayInputStream(medline.getBytes(UTF_8)), UTF_8)
+            .collect(Collectors.toList());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getJournalName(), actual.get(i).getJournalName());
+            assertEquals(expected.get(i).getNlmta(), actual.get(i).getNlmta());
+            assertEquals(expected.get(i).getIssns(), actual.get(i).getIssns());
+        }
+    }
+}
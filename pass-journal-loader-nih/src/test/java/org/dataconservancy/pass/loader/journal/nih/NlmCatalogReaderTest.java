@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class NlmCatalogReaderTest {
+
+    @Test
+    public void nlmCatalogTest() throws Exception {
+        try (final InputStream in = this.getClass().getResourceAsStream("/nlmcatalog.xml")) {
+
+            final NlmCatalogReader toTest = new NlmCatalogReader();
+
+            final List<Journal> records = toTest.readJournals(in, UTF_8).collect(Collectors.toList());
+
+            assertEquals(2, records.size());
+
+            assertEquals("First journal & review", records.get(0).getJournalName());
+            assertEquals("First J Rev", records.get(0).getNlmta());
+            assertEquals(Arrays.asList("Print:0000-0001", "Online:0000-0002"), records.get(0).getIssns());
+
+            assertEquals("Second journal", records.get(1).getJournalName());
+            assertNull(records.get(1).getNlmta());
+            assertEquals(Arrays.asList("Undetermined:0000-0003", "0000-0004"), records.get(1).getIssns());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dataconservancy.pass.loader.journal.nih.OutcomeReport.Action;
+import org.dataconservancy.pass.loader.journal.nih.OutcomeReport.Outcome;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class OutcomeReportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void csvTest() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("report.csv");
+
+        try (OutcomeReport report = new OutcomeReport(file)) {
+            report.record(new Outcome("medline.txt", 7, "Journal, \"Quoted\"", Action.UPDATED, "test:1", 3,
+                                      Arrays.asList("issns: [0000-0001] -> [0000-0001, 0000-0002]",
+                                                    "nlmta: null -> J Q")));
+            report.record(new Outcome("medline.txt", 8, "Other", Action.DUPLICATE, null, null, null));
+        }
+
+        final List<String> lines = Files.readAllLines(file);
+        assertEquals(Arrays.asList(OutcomeReport.CSV_HEADER,
+                                   "medline.txt,7,\"Journal, \"\"Quoted\"\"\",UPDATED,test:1,3," +
+                                   "\"issns: [0000-0001] -> [0000-0001, 0000-0002]; nlmta: null -> J Q\"",
+                                   "medline.txt,8,Other,DUPLICATE,,,"),
+                     lines);
+    }
+
+    @Test
+    public void manyOutcomesTest() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("report.jsonl");
+        final int count = 100000;
+
+        try (OutcomeReport report = new OutcomeReport(file)) {
+            for (int i = 1; i <= count; i++) {
+                report.record(new Outcome("pmc.csv", i, "Journal " + i, Action.CREATED, "test:" + i, null, null));
+            }
+        }
+
+        final List<String> lines = Files.readAllLines(file);
+        assertEquals(count, lines.size());
+        assertEquals("{\"source\":\"pmc.csv\",\"record\":100000,\"name\":\"Journal 100000\",\"action\":\"CREATED\"," +
+                     "\"uri\":\"test:100000\",\"score\":null,\"changes\":[]}", lines.get(count - 1));
+    }
+
+    @Test(timeout = 30000)
+    public void writerFailureTest() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("report.jsonl");
+
+        //a null change cannot be written, so the writer gives up; reporting must not then block
+        try (OutcomeReport report = new OutcomeReport(file)) {
+            report.record(new Outcome("pmc.csv", 1, "Journal", Action.UPDATED, "test:1", null,
+                                      Arrays.asList((String) null)));
+            for (int i = 2; i <= 200000; i++) {
+                report.record(new Outcome("pmc.csv", i, "Journal " + i, Action.CREATED, "test:" + i, null, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class ReadAheadInputStreamTest {
+
+    @Test
+    public void readAheadTest() throws Exception {
+        final byte[] bytes = new byte[1 << 20 | 17];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(bytes))) {
+            final byte[] read = in.readAllBytes();
+            assertEquals(bytes.length, read.length);
+            for (int i = 0; i < bytes.length; i++) {
+                assertEquals(bytes[i], read[i]);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void runtimeExceptionTest() throws Exception {
+        final InputStream failing = new InputStream() {
+
+            @Override
+            public int read() {
+                throw new IllegalStateException("corrupt");
+            }
+        };
+
+        try (InputStream in = new ReadAheadInputStream(failing)) {
+            in.read();
+            fail("Expected the failure to reach the reader");
+        } catch (final IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dataconservancy.pass.loader.journal.nih.JournalIndex.Field;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class ShardFilterTest {
+
+    private static final int SHARDS = 4;
+
+    @Test
+    public void spanningIssnsShareOwnerTest() {
+        final JournalRecord both = record(null, "Print:0000-0001", "Online:0000-0002");
+        final JournalRecord online = record(null, "0000-0002");
+        final JournalRecord print = record("J One", "0000-0001");
+        final List<JournalRecord> records = Arrays.asList(both, online, print);
+
+        final List<ShardFilter> shards = shards();
+        for (final ShardFilter shard : shards) {
+            records.forEach(shard::add);
+        }
+
+        for (final JournalRecord r : records) {
+            assertEquals(1, owners(shards, r));
+            for (final ShardFilter shard : shards) {
+                assertEquals(shard.owns(both), shard.owns(r));
+            }
+        }
+    }
+
+    @Test
+    public void repositoryJournalLinksRecordsTest() {
+        final JournalRecord first = record(null, "0000-0001");
+        final JournalRecord second = record("J One", "Print:0000-0009");
+
+        final List<ShardFilter> shards = shards();
+        for (final ShardFilter shard : shards) {
+            shard.add(Field.NAME, "Journal One", "test:1");
+            shard.add(Field.ISSN, "0000-0001", "test:1");
+            shard.add(Field.ISSN, "0000-0009", "test:1");
+            shard.add(first);
+            shard.add(second);
+        }
+
+        for (final ShardFilter shard : shards) {
+            assertEquals(shard.owns(first), shard.owns(second));
+            assertEquals(shard.owns(first), shard.ownsJournal("test:1"));
+        }
+        assertEquals(1, owners(shards, first));
+    }
+
+    @Test
+    public void recordsSpreadAcrossShardsTest() {
+        final List<ShardFilter> shards = shards();
+        final List<JournalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add(record(null, String.format("%04d-%04d", i, i)));
+        }
+        for (final ShardFilter shard : shards) {
+            records.forEach(shard::add);
+        }
+
+        for (final ShardFilter shard : shards) {
+            final long owned = records.stream().filter(shard::owns).count();
+            assertTrue("Shard owns " + owned + " of 1000 records", owned > 150 && owned < 350);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badShardTest() {
+        new ShardFilter(2, 2);
+    }
+
+    private static List<ShardFilter> shards() {
+        final List<ShardFilter> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new ShardFilter(i, SHARDS));
+        }
+        return shards;
+    }
+
+    private static int owners(List<ShardFilter> shards, JournalRecord r) {
+        return (int) shards.stream().filter(s -> s.owns(r)).count();
+    }
+
+    private static JournalRecord record(String nlmta, String... issns) {
+        final CompactJournalRecord.Builder builder = new CompactJournalRecord.Builder();
+        builder.name("Journal").nlmta(nlmta);
+        for (final String issn : issns) {
+            builder.issn(issn);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.dataconservancy.pass.model.Journal;
+import org.dataconservancy.pass.model.PmcParticipation;
+import org.junit.Test;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class SimulatedJournalRepositoryTest {
+
+    @Test
+    public void seedFromDumpTest() throws Exception {
+        final SimulatedJournalRepository toTest = new SimulatedJournalRepository(0);
+
+        try (final InputStream in = this.getClass().getResourceAsStream("/moreJournals.nt")) {
+            toTest.load(in);
+        }
+
+        final Journal j = toTest.read(URI.create("test:1"));
+        assertEquals("Journal One", j.getJournalName());
+        assertEquals("NLMTA1", j.getNlmta());
+        assertEquals(Arrays.asList("0000-0001", "0000-0002"), j.getIssns());
+    }
+
+    @Test
+    public void createAndUpdateTest() {
+        final SimulatedJournalRepository toTest = new SimulatedJournalRepository(0);
+
+        final Journal j = new Journal();
+        j.setJournalName("My Journal");
+        j.getIssns().add("Print:0000-0001");
+
+        final URI uri = toTest.create(j);
+        assertNotNull(uri);
+
+        final Journal created = toTest.read(uri);
+        assertEquals("My Journal", created.getJournalName());
+
+        created.setPmcParticipation(PmcParticipation.A);
+        toTest.update(created);
+        assertEquals(PmcParticipation.A, toTest.read(uri).getPmcParticipation());
+    }
+
+    @Test
+    public void namedCreatesTest() {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+
+        final Journal j = new Journal();
+        j.setJournalName("My Journal");
+        j.getIssns().add("Online:0000-000X");
+        j.getIssns().add("Print:0000-0001");
+
+        //a resumed run starts with no knowledge of what the interrupted run created
+        for (int run = 0; run < 2; run++) {
+            try (LoaderEngine engine = new LoaderEngine(repository, new BatchJournalFinder())) {
+                engine.setNamedCreates(true);
+                engine.load(Stream.of(j), true);
+            }
+        }
+
+        assertEquals(1, repository.size());
+        assertEquals("My Journal", repository.read(URI.create("sim:journals/issn-0000-0001")).getJournalName());
+    }
+
+    @Test
+    public void namedCreateCollisionTest() {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+
+        //a different journal that happens to have the same canonical ISSN already has the name
+        final Journal other = new Journal();
+        other.setJournalName("Other Journal");
+        other.getIssns().add("0000-0001");
+        assertTrue(repository.createIfAbsent(URI.create("sim:journals/issn-0000-0001"), other));
+
+        final Journal j = new Journal();
+        j.setJournalName("My Journal");
+        j.getIssns().add("Print:0000-0001");
+
+        try (LoaderEngine engine = new LoaderEngine(repository, new BatchJournalFinder())) {
+            engine.setNamedCreates(true);
+            engine.load(Stream.of(j), true);
+        }
+
+        assertEquals(2, repository.size());
+        assertEquals("Other Journal", repository.read(URI.create("sim:journals/issn-0000-0001")).getJournalName());
+    }
+
+    @Test
+    public void journalNamesTest() {
+        final Journal j = new Journal();
+        j.setNlmta("J Abbr");
+        assertTrue(JournalNames.name(JournalRecord.of(j)).matches("nlmta-[0-9a-f]{16}"));
+
+        j.getIssns().add("Print:1234-567X");
+        assertEquals("issn-1234-567x", JournalNames.name(JournalRecord.of(j)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void errorRateTest() {
+        final SimulatedJournalRepository toTest = new SimulatedJournalRepository(0);
+        toTest.setErrorRate(1);
+
+        toTest.create(new Journal());
+    }
+
+    @Test
+    public void engineAgainstSimulatedRepositoryTest() throws Exception {
+        final SimulatedJournalRepository repository = new SimulatedJournalRepository(0);
+        repository.setCreateLatency(LatencyDistribution.parse("uniform:0:2"));
+        repository.setMaxConcurrency(2);
+
+        final Journal j1 = new Journal();
+        j1.setJournalName("Journal 1");
+        j1.getIssns().add("Print:0000-0011");
+
+        final Journal j2 = new Journal();
+        j2.setJournalName("Journal 2");
+        j2.getIssns().add("Print:0000-0012");
+
+        try (LoaderEngine engine = new LoaderEngine(repository, new BatchJournalFinder())) {
+            engine.setNumThreads(4);
+            engine.load(Stream.of(j1, j2), true);
+        }
+
+        assertEquals(2, repository.size());
+    }
+
+    @Test
+    public void latencyDistributionTest() {
+        final Random random = new Random(0);
+
+        assertEquals(0, LatencyDistribution.parse("none").sample(random));
+        assertEquals(5_000_000, LatencyDistribution.parse("fixed:5").sample(random));
+
+        final long uniform = LatencyDistribution.parse("uniform:1:2").sample(random);
+        assertTrue(uniform >= 1_000_000 && uniform <= 2_000_000);
+
+        assertTrue(LatencyDistribution.parse("exponential:10").sample(random) >= 0);
+        assertTrue(LatencyDistribution.parse("lognormal:10:1").sample(random) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badLatencyDistributionTest() {
+        LatencyDistribution.parse("gamma:1");
+    }
+}
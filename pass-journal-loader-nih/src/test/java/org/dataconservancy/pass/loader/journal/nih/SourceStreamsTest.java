@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 Johns Hopkins University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dataconservancy.pass.loader.journal.nih;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.dataconservancy.pass.loader.journal.nih.SourceStreams.Compression;
+import org.dataconservancy.pass.model.Journal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * @author apb@jhu.edu
+ */
+public class SourceStreamsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* Larger than a read ahead chunk, and not very compressible */
+    private static byte[] content() {
+        final byte[] content = new byte[3 << 18];
+        final Random random = new Random(0);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return content;
+    }
+
+    @Test
+    public void uncompressedTest() throws Exception {
+        final Path file = folder.newFile("plain.gz").toPath();
+        Files.write(file, content());
+
+        assertEquals(Compression.NONE, SourceStreams.detect(file));
+        assertArrayEquals(content(), read(file));
+    }
+
+    @Test
+    public void gzipTest() throws Exception {
+        // Named without an extension, and with two gzip members
+        final Path file = folder.newFile("gzip").toPath();
+        final byte[] content = content();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(new NonClosing(out))) {
+                gzip.write(content, 0, 1000);
+            }
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(content, 1000, content.length - 1000);
+            }
+        }
+
+        assertEquals(Compression.GZIP, SourceStreams.detect(file));
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    public void zipTest() throws Exception {
+        final Path file = folder.newFile("data.csv").toPath();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("dir/data.csv"));
+            zip.write(content());
+            zip.closeEntry();
+        }
+
+        assertEquals(Compression.ZIP, SourceStreams.detect(file));
+        assertArrayEquals(content(), read(file));
+    }
+
+    @Test
+    public void xzTest() throws Exception {
+        final Path file = folder.newFile("data.txt").toPath();
+        try (XZOutputStream xz = new XZOutputStream(Files.newOutputStream(file), new LZMA2Options())) {
+            xz.write(content());
+        }
+
+        assertEquals(Compression.XZ, SourceStreams.detect(file));
+        assertArrayEquals(content(), read(file));
+    }
+
+    @Test
+    public void emptyTest() throws Exception {
+        final Path file = folder.newFile("empty").toPath();
+
+        assertEquals(Compression.NONE, SourceStreams.detect(file));
+        assertArrayEquals(new byte[0], read(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptTest() throws Exception {
+        final Path file = folder.newFile("corrupt.gz").toPath();
+        final byte[] content = content();
+        content[0] = (byte) 0x1f;
+        content[1] = (byte) 0x8b;
+        content[2] = 8;
+        Files.write(file, content);
+
+        read(file);
+    }
+
+    @Test
+    public void compressedSourceTest() throws Exception {
+        final Path file = folder.newFile("medline.txt").toPath();
+        try (InputStream in = this.getClass().getResourceAsStream("/medline.txt");
+             GZIPOutputStream gzip = new GZIPOutputStream(Files.newOutputStream(file))) {
+            gzip.write(in.readAllBytes());
+        }
+
+        final List<Journal> journals;
+        try (JournalSource source = JournalSource.open(file.toString(), new MappedMedlineReader())) {
+            journals = source.journals().collect(Collectors.toList());
+        }
+
+        assertEquals(3, journals.size());
+        assertEquals("Third Journal", journals.get(2).getJournalName());
+        assertEquals("First Journal", journals.get(0).getJournalName());
+    }
+
+    private static byte[] read(Path file) throws IOException {
+        try (InputStream in = SourceStreams.open(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /* Leaves the underlying stream open when closed */
+    private static class NonClosing extends FilterOutputStream {
+
+        NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}